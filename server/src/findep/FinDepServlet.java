@@ -1,6 +1,7 @@
 package findep;
 
 import java.io.BufferedReader;
+import java.io.BufferedWriter;
 import java.io.File;
 import java.io.FileReader;
 import java.io.FileWriter;
@@ -13,7 +14,7 @@ import java.nio.file.Path;
 import java.util.ArrayList;
 import java.util.List;
 import java.util.Map;
-import java.util.concurrent.Semaphore;
+import java.util.concurrent.Callable;
 import java.util.concurrent.TimeUnit;
 
 import javax.servlet.ServletException;
@@ -23,11 +24,14 @@ import javax.servlet.http.HttpServletResponse;
 
 import org.apache.commons.io.FileUtils;
 
+import findep.pipeline.RequestExecutor;
+import findep.pipeline.SentenceSplitter;
+import findep.pipeline.SentenceStream;
+import findep.pipeline.WorkerPool;
+import findep.utils.RequestBody;
+import findep.utils.ServerConfig;
 import findep.utils.SimpleStats;
-import opennlp.tools.sentdetect.SentenceDetectorME;
 import opennlp.tools.sentdetect.SentenceModel;
-import opennlp.tools.tokenize.Tokenizer;
-import opennlp.tools.tokenize.TokenizerME;
 import opennlp.tools.tokenize.TokenizerModel;
 
 public class FinDepServlet extends HttpServlet {
@@ -35,8 +39,11 @@ public class FinDepServlet extends HttpServlet {
 	private final static String SENTENCE_MODEL_FILE = "model/fi-sent.bin";
 	private final static String TOKEN_MODEL_FILE = "model/fi-token.bin";
 
-	private SentenceDetectorME sentenceDetector = null;
-	private Tokenizer tokenizer = null;
+	// each worker has own sentence detector and tokenizer and runs
+	// its own parser process in its own temp dir
+	private WorkerPool<SentenceSplitter> workers = null;
+	private long maxBodySize = -1;
+	private RequestExecutor<SentenceSplitter> executor = null;
 
 	private String workDirName = "/Finnish-dep-parser";
 	private Path workDir;
@@ -48,9 +55,6 @@ public class FinDepServlet extends HttpServlet {
 	private int waitTimeForLockInSeconds = 3600 * 4;// four hours in case there
 													// are huge amount of
 													// requests incoming
-	// Hfst may run into problems is accessing many times
-	// workaround to make it singlethreaded
-	private final static Semaphore lock = new Semaphore(1, true);
 
 	private SimpleStats SIMPLE_STATS= SimpleStats.getInstance();
 
@@ -66,13 +70,21 @@ public class FinDepServlet extends HttpServlet {
 		workDir = FileSystems.getDefault().getPath(workDirName);
 
 		try {
-			SentenceModel sentenceModel = new SentenceModel(new File(SENTENCE_MODEL_FILE));
-			sentenceDetector = new SentenceDetectorME(sentenceModel);
-
-			TokenizerModel model = new TokenizerModel(new File(TOKEN_MODEL_FILE));
-			tokenizer = new TokenizerME(model);
+			final SentenceModel sentenceModel = new SentenceModel(new File(ServerConfig.getInitParameter(this, ServerConfig.MODEL_SENTENCE, SENTENCE_MODEL_FILE)));
+			final TokenizerModel model = new TokenizerModel(new File(ServerConfig.getInitParameter(this, ServerConfig.MODEL_TOKEN, TOKEN_MODEL_FILE)));
+
+			int size = WorkerPool.parseSize(getInitParameter(PipelineServlet.WORKERS_PARAMETER));
+			workers = new WorkerPool<SentenceSplitter>(size, new Callable<SentenceSplitter>() {
+				@Override
+				public SentenceSplitter call() {
+					return new SentenceSplitter(sentenceModel, model);
+				}
+			});
+			log("Workers: " + workers.getSize());
+			executor = RequestExecutor.create(this, workers, waitTimeForLockInSeconds);
+			maxBodySize = RequestBody.getMaxBodySize(this);
 
-		} catch (IOException e) {
+		} catch (Exception e) {
 			System.err.println("Sentence model load failed.");
 			throw new ServletException(e);
 		}
@@ -92,6 +104,24 @@ public class FinDepServlet extends HttpServlet {
 
 	@Override
 	protected void doPost(HttpServletRequest req, HttpServletResponse resp) throws ServletException, IOException {
+		// parsed on the threads of the executor, rejected at once when its queue is full
+		executor.execute(req, resp, new RequestExecutor.Handler<SentenceSplitter>() {
+			@Override
+			public void handle(HttpServletRequest req, HttpServletResponse resp, SentenceSplitter splitter, long deadline) throws Exception {
+				parse(req, resp, splitter, deadline);
+			}
+		});
+	}
+
+	@Override
+	public void destroy() {
+		if (executor != null) {
+			executor.shutdown();
+		}
+		super.destroy();
+	}
+
+	private void parse(HttpServletRequest req, HttpServletResponse resp, SentenceSplitter splitter, long deadline) throws ServletException, IOException {
 
 		long startTimeNano = System.nanoTime();
 		long startTimeMsec = System.currentTimeMillis();
@@ -99,78 +129,29 @@ public class FinDepServlet extends HttpServlet {
 		req.setCharacterEncoding(StandardCharsets.UTF_8.name());
 
 		// TODO: convert scripts to this servlet
-		// TODO: use input and outputstreams directly without files
-
-		// read input to string
-		BufferedReader br = req.getReader();
-		String line = br.readLine();
-		StringBuilder sb = new StringBuilder();
-		int inputSize = 0;
-		while (line != null) {
-			log(line);
-			sb.append(line);
-			inputSize = inputSize + line.length();
-			line = br.readLine();
-			// add space after each line
-			// so this removes all new lines from input text
-			// sb.append(" ");
-			// or add new line so that text is like incoming text
-			sb.append("\n");
-		}
-		br.close();
 
 		Path tmpDir = null;
 		int rv = -1;
-		String errorString = "";
+		long inputSize = 0;
 		boolean errorHappened=false;
+
+		// create tmpDir for this request
+		tmpDir = Files.createTempDirectory(workDir, "tmp_data");
+
 		try {
-			// TODO: multithreading
-			if (lock.tryAcquire(1, waitTimeForLockInSeconds, TimeUnit.SECONDS)) {
-				try {
-
-					// detect sentences
-					String[] sentences = sentenceDetector.sentDetect(sb.toString());
-					sb = new StringBuilder();
-					for (String sentence : sentences) {
-
-						// tokenize
-						String[] tokens = tokenizer.tokenize(sentence);
-						// replaces txt_to_09.py
-						for (int i = 0; i < tokens.length; i++) {
-							String token = tokens[i];
-							sb.append(String.format("%d\t%s\t_\t_\t_\t_\t_\t_\t_\t_\t_\t_\t_\t_\n", i + 1, token));
-						}
-						sb.append("\n");
-					}
-
-					String inputText = sb.toString();
-
-					// create tmpDir for this request
-					tmpDir = Files.createTempDirectory(workDir, "tmp_data");
-					// call parser
-					rv = callParserProcess(inputText, tmpDir);
-
-				} finally {
-					lock.release();
-				}
-			}
-		} catch (InterruptedException e) {
-			errorString = e.toString();
-			e.printStackTrace();
-			rv = -234566;
-		}
+			// sentences are written to the input file as soon as they
+			// are detected, the request is never read as a whole
+			SentenceStream sentences = new SentenceStream(RequestBody.getReader(req, maxBodySize), splitter);
+			writeInputFile(sentences, splitter, new File(tmpDir.toFile(), inputFileName));
+			inputSize = sentences.getInputSize();
 
-		resp.setContentType("text/plain");
-		resp.setCharacterEncoding(StandardCharsets.UTF_8.name());
-
-		PrintWriter pw = resp.getWriter();
-		if (rv == -234566) {
-			// error when executing this servlet
-			resp.setStatus(HttpServletResponse.SC_INTERNAL_SERVER_ERROR);
-			pw.println("Waiting for lock interrupted.");
-			pw.println(errorString);
-			errorHappened=true;
-		} else {
+			// call parser
+			rv = callParserProcess(tmpDir, deadline);
+
+			resp.setContentType("text/plain");
+			resp.setCharacterEncoding(StandardCharsets.UTF_8.name());
+
+			PrintWriter pw = resp.getWriter();
 			// read output file
 			File f;
 			if (rv == 0) {
@@ -185,24 +166,22 @@ public class FinDepServlet extends HttpServlet {
 				errorHappened=true;
 			}
 
-			br = new BufferedReader(new FileReader(f));
-			for (line = br.readLine(); line != null; line = br.readLine()) {
+			BufferedReader br = new BufferedReader(new FileReader(f));
+			for (String line = br.readLine(); line != null; line = br.readLine()) {
 				pw.println(line);
 			}
 			br.close();
-
-			// delete temp dir
+		} finally {
+			// the temp dir is deleted also when reading the request or the
+			// parsing fails
 			try {
-				if (tmpDir != null) {
-					FileUtils.deleteDirectory(tmpDir.toFile());
-				}
-
+				FileUtils.deleteDirectory(tmpDir.toFile());
 			} catch (IOException ioe) {
 				// tmpdir delete failed
 				log("Temp dir delete failed: " + ioe.toString());
 			}
-			
 		}
+
 		long endTimeNano = System.nanoTime();
 		long endTimeMsec = System.currentTimeMillis();
 
@@ -214,13 +193,27 @@ public class FinDepServlet extends HttpServlet {
 
 	}
 
-	private int callParserProcess(String inputText, Path tmpDir) throws IOException {
-		// calls my_parser_wrapper.sh script
+	private void writeInputFile(SentenceStream sentences, SentenceSplitter splitter, File f) throws IOException {
+		BufferedWriter fw = new BufferedWriter(new FileWriter(f));
+		try {
+			for (String sentence = sentences.next(); sentence != null; sentence = sentences.next()) {
+
+				// tokenize
+				String[] tokens = splitter.tokens(sentence);
+				// replaces txt_to_09.py
+				for (int i = 0; i < tokens.length; i++) {
+					String token = tokens[i];
+					fw.write(String.format("%d\t%s\t_\t_\t_\t_\t_\t_\t_\t_\t_\t_\t_\t_\n", i + 1, token));
+				}
+				fw.write("\n");
+			}
+		} finally {
+			fw.close();
+		}
+	}
 
-		File f = new File(tmpDir.toFile(), inputFileName);
-		FileWriter fw = new FileWriter(f);
-		fw.write(inputText);
-		fw.close();
+	private int callParserProcess(Path tmpDir, long deadline) throws IOException {
+		// calls my_parser_wrapper.sh script, the input file has been written
 
 		List<String> command = new ArrayList<String>();
 		command.add("./my_parser_wrapper.sh");
@@ -263,10 +256,16 @@ public class FinDepServlet extends HttpServlet {
 		 */
 		int rv = -1;
 		try {
-			rv = p.waitFor();
+			if (p.waitFor(RequestExecutor.remaining(deadline), TimeUnit.MILLISECONDS)) {
+				rv = p.exitValue();
+			} else {
+				log("parser deadline exceeded");
+				p.destroy();
+			}
 		} catch (InterruptedException e) {
-			// TODO Auto-generated catch block
-			e.printStackTrace();
+			// deadline exceeded, the executor answers the request
+			p.destroy();
+			Thread.currentThread().interrupt();
 		}
 		log("parser completed. return value: " + rv);
 
@@ -1,42 +1,131 @@
 package findep;
 
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.eclipse.jetty.server.HttpConfiguration;
+import org.eclipse.jetty.server.HttpConnectionFactory;
 import org.eclipse.jetty.server.Server;
+import org.eclipse.jetty.server.ServerConnector;
 import org.eclipse.jetty.servlet.ServletHandler;
+import org.eclipse.jetty.servlet.ServletHolder;
+import org.eclipse.jetty.util.thread.QueuedThreadPool;
+
+import findep.pipeline.RequestExecutor;
+import findep.utils.RequestBody;
+import findep.utils.ServerConfig;
 
+/*
+ * Jetty server of the servlets, configured with findep.utils.ServerConfig:
+ *
+ * port, host                         listen address (9876)
+ * acceptors, selectors               connector threads (-1, Jetty default)
+ * acceptQueue                        accept backlog (-1, Jetty default)
+ * threads.max, threads.min           request threads (200, 8)
+ * threads.idleTimeout                ms (60000)
+ * http.idleTimeout                   connection idle timeout in ms (30000)
+ * http.requestHeaderSize             bytes (8192)
+ * http.responseHeaderSize            bytes (8192)
+ * servlets                           mounted servlets, comma separated
+ *                                    (annaparser,omorfi,marmot,lemma,pipeline,findep)
+ * servlet.<name>.path                mapping of a servlet
+ *
+ * Servlet init parameters, global or for one servlet as servlet.<name>.<parameter>:
+ * workers, queue, deadline, retryAfter, maxBodySize and the model paths
+ * model.sentence, model.token, model.morphology, model.generation,
+ * model.marmot, model.parser and parser.parallelLength, sentences of this
+ * length and longer are parsed with all cores (20)
+ */
 public class FinDepServletServer {
 
-	public static void main(String[] args) {
-		// Create a basic jetty server object that will listen on port 8080.
-		// Note that if you set this to port 0 then a randomly available port
-		// will be assigned that you can either look in the logs for the port,
-		// or programmatically obtain it for use in test cases.
-		Server server = new Server(9876);
+	private final static List<String> INIT_PARAMETERS = Arrays.asList(PipelineServlet.WORKERS_PARAMETER,
+			RequestExecutor.QUEUE_PARAMETER, RequestExecutor.DEADLINE_PARAMETER,
+			RequestExecutor.RETRY_AFTER_PARAMETER, RequestBody.MAX_BODY_PARAMETER, ServerConfig.MODEL_SENTENCE,
+			ServerConfig.MODEL_TOKEN, ServerConfig.MODEL_MORPHOLOGY, ServerConfig.MODEL_GENERATION,
+			ServerConfig.MODEL_MARMOT, ServerConfig.MODEL_PARSER, ServerConfig.PARSER_PARALLEL_LENGTH);
 
-		// The ServletHandler is a dead simple way to create a context handler
-		// that is backed by an instance of a Servlet.
-		// This handler then needs to be registered with the Server object.
-		ServletHandler handler = new ServletHandler();
-		server.setHandler(handler);
+	/*
+	 * A servlet that can be mounted.
+	 */
+	private static class Mount {
+		final Class<?> servlet;
+		final String path;
+		final int initOrder;
+		final boolean async;
 
+		Mount(Class<?> servlet, String path, int initOrder, boolean async) {
+			this.servlet = servlet;
+			this.path = path;
+			this.initOrder = initOrder;
+			this.async = async;
+		}
+	}
 
+	private final static Map<String, Mount> MOUNTS = new LinkedHashMap<String, Mount>();
+	static {
+		MOUNTS.put("annaparser", new Mount(IS2ParserServlet.class, "/annaparser", 0, false));
+		MOUNTS.put("omorfi", new Mount(OmorfiServlet.class, "/omorfi", 0, false));
+		MOUNTS.put("marmot", new Mount(MarmotServlet.class, "/marmot", 0, false));
+		// these servlets parse on their own threads, see RequestExecutor
+		MOUNTS.put("lemma", new Mount(PortedServlet.class, "/lemma", 1, true));
+		MOUNTS.put("pipeline", new Mount(PipelineServlet.class, "/pipeline", 1, true));
+		MOUNTS.put("findep", new Mount(FinDepServlet.class, "/", 0, true));
+	}
 
+	public static void main(String[] args) {
 		try {
-			// Passing in the class for the Servlet allows jetty to instantiate an
-			// instance of that Servlet and mount it on a given context path.
+			ServerConfig config = new ServerConfig(args, System.getenv());
+
+			QueuedThreadPool threadPool = new QueuedThreadPool(config.getInt("threads.max", 200),
+					config.getInt("threads.min", 8), config.getInt("threads.idleTimeout", 60000));
+			threadPool.setName("findep");
+			Server server = new Server(threadPool);
+			server.setStopAtShutdown(true);
+
+			HttpConfiguration http = new HttpConfiguration();
+			http.setRequestHeaderSize(config.getInt("http.requestHeaderSize", 8192));
+			http.setResponseHeaderSize(config.getInt("http.responseHeaderSize", 8192));
+
+			ServerConnector connector = new ServerConnector(server, config.getInt("acceptors", -1),
+					config.getInt("selectors", -1), new HttpConnectionFactory(http));
+			connector.setPort(config.getInt("port", 9876));
+			connector.setHost(config.getString("host", null));
+			connector.setIdleTimeout(config.getInt("http.idleTimeout", 30000));
+			connector.setAcceptQueueSize(config.getInt("acceptQueue", -1));
+			server.addConnector(connector);
+
+			// The ServletHandler is a dead simple way to create a context handler
+			// that is backed by an instance of a Servlet.
+			// This handler then needs to be registered with the Server object.
+			ServletHandler handler = new ServletHandler();
+			server.setHandler(handler);
 
 			// IMPORTANT:
-			// This is a raw Servlet, not a Servlet that has been configured
+			// These are raw Servlets, not Servlets that have been configured
 			// through a web.xml @WebServlet annotation, or anything similar.
-			handler.addServletWithMapping(IS2ParserServlet.class, "/annaparser").setInitOrder(0);
-			handler.addServletWithMapping(OmorfiServlet.class, "/omorfi").setInitOrder(0);
-			handler.addServletWithMapping(MarmotServlet.class, "/marmot").setInitOrder(0);
-			handler.addServletWithMapping(PortedServlet.class, "/lemma").setInitOrder(1);
-			handler.addServletWithMapping(FinDepServlet.class, "/").setInitOrder(0);
-			
-			// Start things up!			
+			for (String name : config.getList("servlets", "annaparser,omorfi,marmot,lemma,pipeline,findep")) {
+				Mount mount = MOUNTS.get(name);
+				if (mount == null) {
+					throw new IllegalArgumentException("Unknown servlet: " + name + ", known: " + MOUNTS.keySet());
+				}
+				String prefix = "servlet." + name + ".";
+				ServletHolder holder = handler.addServletWithMapping(mount.servlet,
+						config.getString(prefix + "path", mount.path));
+				holder.setInitOrder(mount.initOrder);
+				holder.setAsyncSupported(mount.async);
+				for (String parameter : INIT_PARAMETERS) {
+					String value = config.getString(prefix + parameter, config.getString(parameter, null));
+					if (value != null) {
+						holder.setInitParameter(parameter, value);
+					}
+				}
+			}
+
+			// Start things up!
 			server.start();
-			
-			
+
 			// The use of server.join() the will make the current thread join
 			// and
 			// wait until the server is done executing.
@@ -14,6 +14,8 @@ import javax.servlet.http.HttpServletResponse;
 import org.apache.commons.io.output.StringBuilderWriter;
 
 import findep.is2.Parser;
+import findep.utils.RequestBody;
+import findep.utils.ServerConfig;
 
 public class IS2ParserServlet extends HttpServlet {
 
@@ -25,14 +27,18 @@ public class IS2ParserServlet extends HttpServlet {
 	private final static String MODEL_PARSER = "model/parser.model";
 
 	private Parser parser = null;
+	private long maxBodySize = -1;
 
 	@Override
 	public void init() throws ServletException {
 		super.init();
 		log("Initializing "+getClass().getName());
 
+		maxBodySize = RequestBody.getMaxBodySize(this);
+
 		//init parser
-		parser = new Parser(MODEL_PARSER);
+		parser = new Parser(ServerConfig.getInitParameter(this, ServerConfig.MODEL_PARSER, MODEL_PARSER),
+				Integer.parseInt(ServerConfig.getInitParameter(this, ServerConfig.PARSER_PARALLEL_LENGTH, "-1")));
 		try {
 			//load model
 			parser.loadModel();
@@ -67,10 +73,16 @@ public class IS2ParserServlet extends HttpServlet {
 		
 		try {
 			//reads requst input to parser and parser writes output to response
-			BufferedReader br=req.getReader();
+			BufferedReader br=RequestBody.getReader(req, maxBodySize);
 			BufferedWriter bw=new BufferedWriter(resp.getWriter());
 			parser.parse(br, bw);
+			// the reader of the parser ends the input at an exception
+			RequestBody.check(br);
 				
+		} catch (RequestBody.TooLargeException e) {
+			if (!RequestBody.reject(resp, e)) {
+				resp.getWriter().println(PortedServlet.STREAM_ERROR + e.getMessage());
+			}
 		} catch (Exception e) {
 			log("Parsing failed.",e);
 			resp.setStatus(HttpServletResponse.SC_INTERNAL_SERVER_ERROR);
@@ -9,6 +9,7 @@ import javax.servlet.http.HttpServletRequest;
 import javax.servlet.http.HttpServletResponse;
 
 import findep.marmot.Annotator;
+import findep.utils.ServerConfig;
 
 /*
  * Replaces marmot annotator java subprocess in marmot-tag.py
@@ -32,7 +33,7 @@ public class MarmotServlet  extends HttpServlet {
 		log("Initializing "+getClass().getName());
 
 		//load models
-		annotator=new Annotator(MODEL_MARMOT);
+		annotator=new Annotator(ServerConfig.getInitParameter(this, ServerConfig.MODEL_MARMOT, MODEL_MARMOT));
 	}
 
 	@Override
@@ -55,7 +56,8 @@ public class MarmotServlet  extends HttpServlet {
 		{
 			try
 			{
-				annotator.annotate(predFile, testFile);			
+				// the read-only tagger is shared by the FinDepServlet workers
+				annotator.annotate(predFile, testFile);
 			}
 			catch (IOException ioe)
 			{
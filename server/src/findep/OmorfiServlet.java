@@ -1,18 +1,36 @@
 package findep;
 
+import java.io.BufferedReader;
 import java.io.IOException;
+import java.io.PrintWriter;
 import java.nio.charset.StandardCharsets;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 
 import javax.servlet.ServletException;
 import javax.servlet.http.HttpServlet;
 import javax.servlet.http.HttpServletRequest;
 import javax.servlet.http.HttpServletResponse;
 
+import findep.utils.RequestBody;
+import findep.utils.ServerConfig;
+import findep.utils.SimpleStats;
 import net.sf.hfst.HfstOptimizedLookupObj;
 
 /*
  * Replaces hsft-process in omorfi_wrapper.py
  * 
+ * GET  ?model=M|G&word=...  analyses of one word
+ * POST ?model=M|G           body has one word per line, analyses of each
+ *                           word are written in the same order, each group
+ *                           ends with an empty line like the GET response
  */
 public class OmorfiServlet extends HttpServlet {
 
@@ -27,6 +45,13 @@ public class OmorfiServlet extends HttpServlet {
 	private HfstOptimizedLookupObj hfst_morphology = null;
 	private HfstOptimizedLookupObj hfst_generation = null;
 
+	// batch lookups are split to chunks of this many words
+	private final static int CHUNK_SIZE = 64;
+
+	private int threads = Runtime.getRuntime().availableProcessors();
+	private ExecutorService lookupService = null;
+	private long maxBodySize = -1;
+
 	@Override
 	public void init() throws ServletException {
 		super.init();
@@ -34,13 +59,35 @@ public class OmorfiServlet extends HttpServlet {
 
 		// load models
 		try {
-			hfst_morphology = new HfstOptimizedLookupObj(MODEL_MORPHOLOGY);
-			hfst_generation = new HfstOptimizedLookupObj(MODEL_GENERATION);
+			hfst_morphology = new HfstOptimizedLookupObj(ServerConfig.getInitParameter(this, ServerConfig.MODEL_MORPHOLOGY, MODEL_MORPHOLOGY));
+			hfst_generation = new HfstOptimizedLookupObj(ServerConfig.getInitParameter(this, ServerConfig.MODEL_GENERATION, MODEL_GENERATION));
+			SimpleStats.getInstance().addCache("omorfi M", hfst_morphology.getCache());
+			SimpleStats.getInstance().addCache("omorfi G", hfst_generation.getCache());
 		} catch (Exception e) {
 			System.err.println("Init failed: " + e.toString());
 			throw new ServletException(e);
 
 		}
+		lookupService = Executors.newFixedThreadPool(threads);
+		maxBodySize = RequestBody.getMaxBodySize(this);
+	}
+
+	@Override
+	public void destroy() {
+		if (lookupService != null) {
+			lookupService.shutdownNow();
+		}
+		super.destroy();
+	}
+
+	private HfstOptimizedLookupObj getTransducer(String model) {
+		if ("M".equals(model)) {
+			return hfst_morphology;
+		}
+		if ("G".equals(model)) {
+			return hfst_generation;
+		}
+		return null;
 	}
 
 	@Override
@@ -68,4 +115,85 @@ public class OmorfiServlet extends HttpServlet {
 		resp.getWriter().println(output);
 	}
 
-}
\ No newline at end of file
+	@Override
+	protected void doPost(HttpServletRequest req, HttpServletResponse resp) throws ServletException, IOException {
+		req.setCharacterEncoding(StandardCharsets.UTF_8.name());
+		resp.setContentType("text/plain");
+		resp.setCharacterEncoding(StandardCharsets.UTF_8.name());
+
+		final HfstOptimizedLookupObj transducer = getTransducer(req.getParameter("model"));
+		if (transducer == null) {
+			resp.setStatus(HttpServletResponse.SC_BAD_REQUEST);
+			resp.getWriter().println("Missing or unknown parameter: model (M or G)");
+			return;
+		}
+		resp.setStatus(HttpServletResponse.SC_OK);
+
+		// chunks are looked up in parallel and written in input order,
+		// at most two chunks per thread are waiting at a time
+		BufferedReader br = RequestBody.getReader(req, maxBodySize);
+		PrintWriter pw = resp.getWriter();
+		Deque<Future<String>> pending = new ArrayDeque<Future<String>>();
+		List<String> chunk = new ArrayList<String>(CHUNK_SIZE);
+		try {
+			for (String line = br.readLine(); line != null; line = br.readLine()) {
+				String word = line.trim();
+				if (word.isEmpty()) {
+					continue;
+				}
+				chunk.add(word);
+				if (chunk.size() == CHUNK_SIZE) {
+					pending.add(lookupService.submit(lookup(transducer, chunk)));
+					chunk = new ArrayList<String>(CHUNK_SIZE);
+					if (pending.size() >= 2 * threads) {
+						pw.print(pending.poll().get());
+						pw.flush();
+					}
+				}
+			}
+			if (!chunk.isEmpty()) {
+				pending.add(lookupService.submit(lookup(transducer, chunk)));
+			}
+			while (!pending.isEmpty()) {
+				pw.print(pending.poll().get());
+			}
+		} catch (InterruptedException | ExecutionException e) {
+			if (e instanceof InterruptedException) {
+				Thread.currentThread().interrupt();
+			}
+			log("Batch lookup failed.", e);
+			for (Future<String> f : pending) {
+				f.cancel(true);
+			}
+			if (!resp.isCommitted()) {
+				resp.setStatus(HttpServletResponse.SC_INTERNAL_SERVER_ERROR);
+			} else {
+				// the first chunks are sent with 200 already
+				pw.println(PortedServlet.STREAM_ERROR + e);
+			}
+		} catch (RequestBody.TooLargeException e) {
+			for (Future<String> f : pending) {
+				f.cancel(true);
+			}
+			if (!RequestBody.reject(resp, e)) {
+				pw.println(PortedServlet.STREAM_ERROR + e.getMessage());
+			}
+		}
+		pw.flush();
+	}
+
+	private static Callable<String> lookup(final HfstOptimizedLookupObj transducer, final List<String> words) {
+		return new Callable<String>() {
+			@Override
+			public String call() {
+				StringBuilder sb = new StringBuilder();
+				for (String word : words) {
+					sb.append(transducer.runTransducer(word));
+					sb.append("\n");
+				}
+				return sb.toString();
+			}
+		};
+	}
+
+}
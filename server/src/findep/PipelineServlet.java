@@ -0,0 +1,192 @@
+package findep;
+
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.io.StringReader;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.Callable;
+import java.util.concurrent.TimeUnit;
+
+import javax.servlet.ServletException;
+import javax.servlet.http.HttpServlet;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+
+import org.apache.commons.io.output.StringBuilderWriter;
+
+import findep.is2.Parser;
+import findep.pipeline.Pipeline;
+import findep.pipeline.RequestExecutor;
+import findep.pipeline.SentenceSplitter;
+import findep.pipeline.SentenceStream;
+import findep.pipeline.WorkerPool;
+import findep.ported.ParserLogImpl;
+import findep.utils.RequestBody;
+import findep.utils.ServerConfig;
+import findep.utils.SimpleStats;
+import marmot.morph.MorphTagger;
+import net.sf.hfst.HfstOptimizedLookupObj;
+import opennlp.tools.sentdetect.SentenceModel;
+import opennlp.tools.tokenize.TokenizerModel;
+
+/*
+ * Same as FinDepServlet but the whole pipeline runs inside this JVM,
+ * see findep.pipeline.Pipeline
+ */
+public class PipelineServlet extends HttpServlet {
+
+	private final static String SENTENCE_MODEL_FILE = "model/fi-sent.bin";
+	private final static String TOKEN_MODEL_FILE = "model/fi-token.bin";
+	private final static String MODEL_MORPHOLOGY = "model/morphology.finntreebank.hfstol";
+	private final static String MODEL_GENERATION = "model/generation.finntreebank.hfstol";
+	private final static String MODEL_MARMOT = "model/fin_model.marmot";
+	private final static String MODEL_PARSER = "model/parser.model";
+
+	// servlet init parameter, number of pipeline workers
+	public final static String WORKERS_PARAMETER = "workers";
+
+	private int waitTimeForWorkerInSeconds = 3600 * 4;
+
+	private WorkerPool<Pipeline> workers = null;
+	private long maxBodySize = -1;
+	private RequestExecutor<Pipeline> executor = null;
+
+	private SimpleStats SIMPLE_STATS = SimpleStats.getInstance();
+
+	/**
+	 *
+	 */
+	private static final long serialVersionUID = 1L;
+
+	@Override
+	public void init() throws ServletException {
+		super.init();
+		log("Initializing " + getClass().getName());
+
+		try {
+			// models are loaded once and shared by all workers
+			final SentenceModel sentenceModel = new SentenceModel(new File(ServerConfig.getInitParameter(this, ServerConfig.MODEL_SENTENCE, SENTENCE_MODEL_FILE)));
+			final TokenizerModel tokenizerModel = new TokenizerModel(new File(ServerConfig.getInitParameter(this, ServerConfig.MODEL_TOKEN, TOKEN_MODEL_FILE)));
+			final HfstOptimizedLookupObj hfst_morphology = new HfstOptimizedLookupObj(ServerConfig.getInitParameter(this, ServerConfig.MODEL_MORPHOLOGY, MODEL_MORPHOLOGY));
+			final HfstOptimizedLookupObj hfst_generation = new HfstOptimizedLookupObj(ServerConfig.getInitParameter(this, ServerConfig.MODEL_GENERATION, MODEL_GENERATION));
+			SIMPLE_STATS.addCache("pipeline", hfst_morphology.getCache());
+			SIMPLE_STATS.addCache("pipeline G", hfst_generation.getCache());
+			final MorphTagger tagger = marmot.util.FileUtils.loadFromFile(ServerConfig.getInitParameter(this, ServerConfig.MODEL_MARMOT, MODEL_MARMOT));
+			tagger.setReadOnly(true);
+
+			final Parser parser = new Parser(ServerConfig.getInitParameter(this, ServerConfig.MODEL_PARSER, MODEL_PARSER),
+					Integer.parseInt(ServerConfig.getInitParameter(this, ServerConfig.PARSER_PARALLEL_LENGTH, "-1")));
+			parser.loadModel();
+
+			int size = WorkerPool.parseSize(getInitParameter(WORKERS_PARAMETER));
+			workers = new WorkerPool<Pipeline>(size, new Callable<Pipeline>() {
+				@Override
+				public Pipeline call() {
+					return new Pipeline(new SentenceSplitter(sentenceModel, tokenizerModel), hfst_morphology,
+							hfst_generation, tagger, parser, new ParserLogImpl());
+				}
+			});
+			log("Pipeline workers: " + workers.getSize());
+			executor = RequestExecutor.create(this, workers, waitTimeForWorkerInSeconds);
+			maxBodySize = RequestBody.getMaxBodySize(this);
+
+			// do initial parse to do final init of parser
+			Pipeline pipeline = workers.acquire(0, TimeUnit.SECONDS);
+			try {
+				pipeline.process(new SentenceStream(new StringReader("Hei."), pipeline.getSplitter()),
+						new BufferedWriter(new StringBuilderWriter()));
+			} finally {
+				workers.release(pipeline);
+			}
+
+		} catch (Exception e) {
+			System.err.println("Pipeline model load failed.");
+			throw new ServletException(e);
+		}
+
+	}
+
+	@Override
+	protected void doGet(HttpServletRequest req, HttpServletResponse resp) throws ServletException, IOException {
+		resp.setContentType("text/plain");
+		resp.setStatus(HttpServletResponse.SC_OK);
+		PrintWriter pw = resp.getWriter();
+		pw.println("Hello from finnish-dep-parser server. Post Finnish text to this URL and get CoNLL-U back.");
+
+		pw.println("");
+		pw.println(SIMPLE_STATS.getStatistics());
+	}
+
+	@Override
+	protected void doPost(HttpServletRequest req, HttpServletResponse resp) throws ServletException, IOException {
+		// parsed on the threads of the executor, rejected at once when its queue is full
+		executor.execute(req, resp, new RequestExecutor.Handler<Pipeline>() {
+			@Override
+			public void handle(HttpServletRequest req, HttpServletResponse resp, Pipeline pipeline, long deadline) throws Exception {
+				parse(req, resp, pipeline);
+			}
+		});
+	}
+
+	@Override
+	public void destroy() {
+		if (executor != null) {
+			executor.shutdown();
+		}
+		super.destroy();
+	}
+
+	private void parse(HttpServletRequest req, HttpServletResponse resp, Pipeline pipeline) throws ServletException, IOException {
+
+		long startTimeNano = System.nanoTime();
+		long startTimeMsec = System.currentTimeMillis();
+		log("START");
+		req.setCharacterEncoding(StandardCharsets.UTF_8.name());
+
+		resp.setContentType("text/plain");
+		resp.setCharacterEncoding(StandardCharsets.UTF_8.name());
+		resp.setStatus(HttpServletResponse.SC_OK);
+
+		// the input is read while it is parsed, sentences are written to the
+		// response as soon as they are parsed
+		SentenceStream sentences = null;
+		boolean errorHappened = false;
+		try {
+			sentences = new SentenceStream(RequestBody.getReader(req, maxBodySize), pipeline.getSplitter());
+			BufferedWriter bw = new BufferedWriter(resp.getWriter());
+			int count = pipeline.process(sentences, bw);
+			bw.flush();
+			log("pipeline completed. sentences: " + count);
+		} catch (RequestBody.TooLargeException e) {
+			errorHappened = true;
+			if (!RequestBody.reject(resp, e)) {
+				PrintWriter pw = resp.getWriter();
+				pw.println(PortedServlet.STREAM_ERROR + e.getMessage());
+				pw.flush();
+			}
+		} catch (Exception e) {
+			log("Parsing failed.", e);
+			errorHappened = true;
+			if (!resp.isCommitted()) {
+				resp.setStatus(HttpServletResponse.SC_INTERNAL_SERVER_ERROR);
+			} else {
+				// the parsed sentences are sent with 200 already
+				PrintWriter pw = resp.getWriter();
+				pw.println(PortedServlet.STREAM_ERROR + e);
+				pw.flush();
+			}
+		}
+
+		long endTimeNano = System.nanoTime();
+		long endTimeMsec = System.currentTimeMillis();
+
+		double elapsedTime = (endTimeMsec - startTimeMsec) / 1000.0;
+		log("END " + elapsedTime + " secs");
+
+		long inputSize = (sentences != null) ? sentences.getInputSize() : 0;
+		SIMPLE_STATS.addRequest(startTimeNano, endTimeNano, startTimeMsec, endTimeMsec, inputSize, errorHappened);
+	}
+
+}
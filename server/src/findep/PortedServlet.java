@@ -1,11 +1,15 @@
 package findep;
 
 import java.io.BufferedReader;
+import java.io.BufferedWriter;
 import java.io.File;
 import java.io.FileReader;
 import java.io.FileWriter;
 import java.io.IOException;
+import java.io.InterruptedIOException;
 import java.io.PrintWriter;
+import java.io.StringReader;
+import java.io.Writer;
 import java.nio.charset.StandardCharsets;
 import java.nio.file.FileSystems;
 import java.nio.file.Files;
@@ -14,8 +18,7 @@ import java.util.ArrayList;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
-import java.util.concurrent.Semaphore;
-import java.util.concurrent.TimeUnit;
+import java.util.concurrent.Callable;
 
 import javax.servlet.ServletException;
 import javax.servlet.http.HttpServlet;
@@ -23,14 +26,21 @@ import javax.servlet.http.HttpServletRequest;
 import javax.servlet.http.HttpServletResponse;
 
 import org.apache.commons.io.FileUtils;
+import org.apache.commons.io.output.StringBuilderWriter;
 
 import findep.marmot.Annotator;
+import findep.pipeline.RequestExecutor;
+import findep.pipeline.SentenceSplitter;
+import findep.pipeline.SentenceStream;
+import findep.pipeline.WorkerPool;
 import findep.ported.ParserLog;
 import findep.ported.ParserLogImpl;
 import findep.ported.Tag;
 import findep.ported.TagImpl;
 import findep.ported.UConverter;
 import findep.ported.UConverterImpl;
+import findep.utils.RequestBody;
+import findep.utils.ServerConfig;
 import findep.utils.SimpleStats;
 import marmot.morph.MorphTagger;
 import net.sf.hfst.HfstOptimizedLookupObj;
@@ -53,18 +63,22 @@ public class PortedServlet extends HttpServlet {
 	private final static String MODEL_MARMOT="model/fin_model.marmot";
 	private MorphTagger tagger=null;
 
-	private SentenceDetectorME sentenceDetector = null;
-	private Tokenizer tokenizer = null;
+	// each worker has own sentence detector and tokenizer,
+	// hfst and marmot models are shared
+	private WorkerPool<SentenceSplitter> workers = null;
+	private RequestExecutor<SentenceSplitter> executor = null;
+	private long maxBodySize = -1;
 
 	private String workDirName = "/Finnish-dep-parser";
 
-	// ???
 	private int waitTimeForLockInSeconds = 3600 * 4;// four hours in case there
 	// are huge amount of
 	// requests incoming
-	// Hfst may run into problems is accessing many times
-	// workaround to make it singlethreaded
-	private final static Semaphore lock = new Semaphore(1, true);
+
+	// sentences tagged together while streaming
+	private final static int STREAM_BATCH = 16;
+	// comment line that ends an output cut short by an error
+	public final static String STREAM_ERROR = "# ERROR: ";
 
 	private SimpleStats SIMPLE_STATS= SimpleStats.getInstance();
 
@@ -80,18 +94,28 @@ public class PortedServlet extends HttpServlet {
 
 		try {
 			// Not 100% sure do we have to use this - anyhow....
-			SentenceModel sentenceModel = new SentenceModel(new File(SENTENCE_MODEL_FILE));
-			sentenceDetector = new SentenceDetectorME(sentenceModel);
-
-			TokenizerModel model = new TokenizerModel(new File(TOKEN_MODEL_FILE));
-			tokenizer = new TokenizerME(model);
+			final SentenceModel sentenceModel = new SentenceModel(new File(ServerConfig.getInitParameter(this, ServerConfig.MODEL_SENTENCE, SENTENCE_MODEL_FILE)));
+			final TokenizerModel model = new TokenizerModel(new File(ServerConfig.getInitParameter(this, ServerConfig.MODEL_TOKEN, TOKEN_MODEL_FILE)));
+
+			int size = WorkerPool.parseSize(getInitParameter(PipelineServlet.WORKERS_PARAMETER));
+			workers = new WorkerPool<SentenceSplitter>(size, new Callable<SentenceSplitter>() {
+				@Override
+				public SentenceSplitter call() {
+					return new SentenceSplitter(sentenceModel, model);
+				}
+			});
+			log("Workers: " + workers.getSize());
+			executor = RequestExecutor.create(this, workers, waitTimeForLockInSeconds);
+			maxBodySize = RequestBody.getMaxBodySize(this);
 
 			// this is used to check the tree model
-			hfst_morphology =  new HfstOptimizedLookupObj(MODEL_MORPHOLOGY);
+			hfst_morphology =  new HfstOptimizedLookupObj(ServerConfig.getInitParameter(this, ServerConfig.MODEL_MORPHOLOGY, MODEL_MORPHOLOGY));
+			SIMPLE_STATS.addCache("lemma", hfst_morphology.getCache());
 
 			// this is used to parse the 'POS' for each word,
 			// so comparing the pos from here to the 'treebank' hits - we select the correct lemma
-			tagger= marmot.util.FileUtils.loadFromFile(MODEL_MARMOT);
+			tagger= marmot.util.FileUtils.loadFromFile(ServerConfig.getInitParameter(this, ServerConfig.MODEL_MARMOT, MODEL_MARMOT));
+			tagger.setReadOnly(true);
 
 		} catch (Exception e) {
 			System.err.println("Sentence model load failed.");
@@ -113,68 +137,70 @@ public class PortedServlet extends HttpServlet {
 
 	@Override
 	protected void doPost(HttpServletRequest req, HttpServletResponse resp) throws ServletException, IOException {
+		// parsed on the threads of the executor, rejected at once when its queue is full
+		executor.execute(req, resp, new RequestExecutor.Handler<SentenceSplitter>() {
+			@Override
+			public void handle(HttpServletRequest req, HttpServletResponse resp, SentenceSplitter splitter, long deadline) throws Exception {
+				parse(req, resp, splitter);
+			}
+		});
+	}
+
+	@Override
+	public void destroy() {
+		if (executor != null) {
+			executor.shutdown();
+		}
+		super.destroy();
+	}
+
+	private void parse(HttpServletRequest req, HttpServletResponse resp, SentenceSplitter splitter) throws ServletException, IOException {
 
 		long startTimeNano = System.nanoTime();
 		long startTimeMsec = System.currentTimeMillis();
 		log("START");
 		req.setCharacterEncoding(StandardCharsets.UTF_8.name());
 
-		// read input to string
-		BufferedReader br = req.getReader();
-		String line = br.readLine();
-		StringBuilder sb = new StringBuilder();
-		int inputSize = 0;
-		while (line != null) {
-			//	log(line);
-			sb.append(line);
-			inputSize = inputSize + line.length();
-			line = br.readLine();
-			// add space after each line
-			// so this removes all new lines from input text
-			// sb.append(" ");
-			// or add new line so that text is like incoming text
-			sb.append("\n");
-		}
-		br.close();
-
-		Path tmpDir = null;
-		//int rv = -1;
-		String outputText = "";
+		resp.setContentType("text/plain");
+		resp.setCharacterEncoding(StandardCharsets.UTF_8.name());
 
+		// the input is read, parsed and written sentence batch by sentence batch,
+		// the worker is held while the request is read
+		SentenceStream sentences = null;
+		int count = 0;
 		String errorString = "";
 		boolean errorHappened=false;
-	//	try {
-			// TODO: multithreading ADD HERE OR USE ONLY ONE THREAD + CONFIGURE QUEUE LENGTH TO THE APP SERVER
-			// It is better, if queu length runs out, then requests fail quick. This indicates node corrupt, 
-			// and can be restarted. Thus setting thread pool size 1 for this servlet with configured queue length
-			// makes more sense.
-		//	if (lock.tryAcquire(1, waitTimeForLockInSeconds, TimeUnit.SECONDS)) {
-		//		try {
-
-									outputText = callParserProcess(sb.toString());
-
-		//		} finally {
-		//			lock.release();
-		//		}
-		//	}
-	//	} catch (InterruptedException e) {
-	//		log("InterruptedException:\n"+e);
-	//		outputText=null;
-	//		lock.release(); 
-	//	}
-
-		resp.setContentType("text/plain");
-		resp.setCharacterEncoding(StandardCharsets.UTF_8.name());
+		boolean tooLarge = false;
+		try {
+			sentences = new SentenceStream(RequestBody.getReader(req, maxBodySize), splitter);
+			BufferedWriter bw = new BufferedWriter(resp.getWriter());
+			count = callParserProcess(sentences, splitter, bw);
+			bw.flush();
+			log("parser completed. sentences: " + count);
+		} catch (RequestBody.TooLargeException e) {
+			errorString = e.getMessage();
+			tooLarge = true;
+		} catch (Exception e) {
+			log("Failed to parse", e);
+			errorString = e.toString();
+		}
 
-		PrintWriter pw = resp.getWriter();
-		if (outputText == null || "".equals(outputText)) {
-			// error when executing this servlet
-			resp.setStatus(HttpServletResponse.SC_INTERNAL_SERVER_ERROR);
-			pw.println("Waiting for lock interrupted.");
-			pw.println(errorString);
+		if (count == 0 || !"".equals(errorString)) {
 			errorHappened=true;
-		} else {
-			pw.print(outputText);			
+			if (!resp.isCommitted()) {
+				// error when executing this servlet
+				resp.setStatus(tooLarge ? HttpServletResponse.SC_REQUEST_ENTITY_TOO_LARGE
+						: HttpServletResponse.SC_INTERNAL_SERVER_ERROR);
+				PrintWriter pw = resp.getWriter();
+				pw.println("Parsing failed.");
+				pw.println(errorString);
+			} else if (!"".equals(errorString)) {
+				// the first batches are sent with 200 already, the client
+				// sees the error in the output instead
+				PrintWriter pw = resp.getWriter();
+				pw.println(STREAM_ERROR + errorString);
+				pw.flush();
+			}
 		}
 		long endTimeNano = System.nanoTime();
 		long endTimeMsec = System.currentTimeMillis();
@@ -182,54 +208,81 @@ public class PortedServlet extends HttpServlet {
 		double elapsedTime = (endTimeMsec - startTimeMsec) / 1000.0;
 		log("END " + elapsedTime + " secs");
 
+		long inputSize = (sentences != null) ? sentences.getInputSize() : 0;
 		SIMPLE_STATS.addRequest(startTimeNano, endTimeNano, startTimeMsec, endTimeMsec, inputSize,errorHappened);
 
 	}
 
-	public synchronized String callParserProcess(String in) throws IOException {
-
-		// detect sentences
-		String[] sentences = sentenceDetector.sentDetect(in); //safeSentences(sb.toString()); 
-		StringBuilder sb = new StringBuilder();
-		for (String sentence : sentences) {
-
-			// tokenize NOTE THIS HAS BEEN CHANGED TO JUST PASS CLEAR TEXT IN 
-			String[] tokens = tokenizer.tokenize(sentence); //safeTokens(sentence); 
-			// replaces txt_to_09.py
-			for (int i = 0; i < tokens.length; i++) {
-				String token = tokens[i];
-				//sb.append(String.format("%d\t%s\t_\t_\t_\t_\t_\t_\t_\t_\t_\t_\t_\t_\n", i + 1, token));
-				// This is alternative way - we want to use marmot as the parser
-				// In this case we want to go one sentence at a time.
-				sb.append(token);
-				if(i<tokens.length-1) {
-					sb.append(" ");
-				}
-			}
-			sb.append("\n");
+	public String callParserProcess(String in, SentenceSplitter splitter) throws IOException {
+		StringBuilderWriter out = new StringBuilderWriter();
+		try {
+			callParserProcess(new SentenceStream(new StringReader(in), splitter), splitter, out);
+		} catch (Exception e) {
+			log("Failed to parse", e);
+			return "";
 		}
+		return out.toString();
+	}
 
-		String inputText = sb.toString();
-		// call parser
+	/**
+	 * Parses the sentences of the stream and writes the output of
+	 * TagImpl.quickParse to out. The sentences are tagged in batches of
+	 * STREAM_BATCH, each batch is flushed as soon as it is parsed.
+	 *
+	 * @return number of sentences written
+	 */
+	public int callParserProcess(SentenceStream sentences, SentenceSplitter splitter, Writer out) throws IOException {
 
-		
 		// This is similar to the FinDepServlet, but carrying out operations
 		// without calling the python scripts
 		ParserLog log = new ParserLogImpl();
-		//UConverter uconverter = new UConverterImpl(log);
 		Tag tag = new TagImpl(log,hfst_morphology,tagger);
 
-		String outputText = "";
-
-		try {
-			// log.debug("in:\n"+inputText);
-			outputText = tag.quickParse(inputText);
-		} catch (Exception e) {
-			log.error("Failed to parse", e);
+		StringBuilder batch = new StringBuilder();
+		int batchSize = 0;
+		int count = 0;
+		String next = nextTokens(sentences, splitter);
+		while (next != null) {
+			if (Thread.currentThread().isInterrupted()) {
+				throw new InterruptedIOException("Parsing interrupted.");
+			}
+			batch.append(next);
+			batchSize++;
+			// one sentence ahead, quickParse separates sentences only if more follow
+			next = nextTokens(sentences, splitter);
+			if (batchSize == STREAM_BATCH || next == null) {
+				out.write(tag.quickParse(batch.toString(), next != null));
+				out.flush();
+				count = count + batchSize;
+				batch.setLength(0);
+				batchSize = 0;
+			}
 		}
-		log("parser completed. "); 
+		return count;
+	}
 
-		return outputText;
+	/*
+	 * Next sentence with tokens as one line of space separated tokens,
+	 * replaces txt_to_09.py
+	 */
+	private String nextTokens(SentenceStream sentences, SentenceSplitter splitter) throws IOException {
+		for (String sentence = sentences.next(); sentence != null; sentence = sentences.next()) {
+			// tokenize NOTE THIS HAS BEEN CHANGED TO JUST PASS CLEAR TEXT IN 
+			String[] tokens = splitter.tokens(sentence);
+			if (tokens.length == 0) {
+				continue;
+			}
+			StringBuilder sb = new StringBuilder();
+			for (int i = 0; i < tokens.length; i++) {
+				sb.append(tokens[i]);
+				if(i<tokens.length-1) {
+					sb.append(" ");
+				}
+			}
+			sb.append("\n");
+			return sb.toString();
+		}
+		return null;
 	}
 
 }
\ No newline at end of file
@@ -0,0 +1,83 @@
+package findep.is2;
+
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipOutputStream;
+
+import is2.parser.Edges;
+import is2.parser.Extractor;
+import is2.parser.MFO;
+import is2.parser.ParametersFloat;
+import is2.data.QuantizedWeights;
+import is2.parser.ParametersMapped;
+
+/**
+ * Exports a parser model for mapped weights: the model is written without
+ * weights and the weights are written uncompressed to model + ".weights",
+ * which Parser.readModel maps instead of reading them to the heap. The
+ * weights can be quantized to float16 or int8 with a scale per block of
+ * weights.
+ *
+ * Usage: ModelExporter <parser.model> <exported.model> [float32|float16|int8 [block-size]]
+ */
+public class ModelExporter {
+
+	public static void main(String[] args) throws Exception {
+
+		if (args.length < 2 || args.length > 4) {
+			System.err.println("Usage: ModelExporter <parser.model> <exported.model> [float32|float16|int8 [block-size]]");
+			System.exit(1);
+		}
+
+		int encoding = args.length > 2 ? QuantizedWeights.type(args[2]) : QuantizedWeights.FLOAT32;
+		int blockSize = args.length > 3 ? Integer.parseInt(args[3]) : ParametersMapped.BLOCK_SIZE;
+
+		Parser parser = new Parser(args[0]);
+		parser.loadModel();
+
+		if (!(parser.params instanceof ParametersFloat)) {
+			System.err.println("The model has no weights to export: " + args[0]);
+			System.exit(1);
+		}
+
+		export(parser, ((ParametersFloat) parser.params).parameters, args[1], encoding, blockSize);
+		System.out.println("Wrote " + args[1] + " and " + args[1] + ParametersMapped.EXTENSION);
+	}
+
+	/**
+	 * Writes the model in the format of is2.parser.Parser.writeModell with an
+	 * empty weight vector and the weights to the mapped weights file.
+	 */
+	static void export(Parser parser, float[] parameters, String name, int encoding, int blockSize) throws IOException {
+
+		ParametersMapped.write(parameters, name + ParametersMapped.EXTENSION, encoding, blockSize);
+
+		ZipOutputStream zos = new ZipOutputStream(new BufferedOutputStream(new FileOutputStream(name)));
+		zos.putNextEntry(new ZipEntry("data"));
+		DataOutputStream dos = new DataOutputStream(new BufferedOutputStream(zos));
+
+		MFO.writeData(dos);
+		parser.pipe.cl.write(dos);
+
+		// no weights
+		dos.writeInt(0);
+
+		dos.writeBoolean(parser.pipe.extractor[0].s_stack);
+		dos.writeInt(parser.options.featureCreation);
+
+		Edges.write(dos);
+
+		dos.writeBoolean(parser.options.decodeProjective);
+
+		dos.writeInt(Extractor.maxForm);
+
+		dos.writeInt(1); // Info count
+		dos.writeUTF("Weights       " + name + ParametersMapped.EXTENSION + " " + QuantizedWeights.NAMES[encoding]);
+
+		dos.flush();
+		dos.close();
+	}
+}
@@ -4,9 +4,15 @@ import java.io.BufferedInputStream;
 import java.io.BufferedReader;
 import java.io.BufferedWriter;
 import java.io.DataInputStream;
+import java.io.File;
 import java.io.FileInputStream;
 import java.io.IOException;
 import java.util.Map.Entry;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
 import java.util.zip.ZipInputStream;
 
 import findep.is2.io.CONLLReader09;
@@ -27,6 +33,8 @@ import is2.parser.MFO;
 import is2.parser.Options;
 import is2.parser.Parameters;
 import is2.parser.ParametersFloat;
+import is2.parser.ParametersMapped;
+import is2.parser.ParseContext;
 import is2.parser.Pipe;
 import is2.tools.Tool;
 import is2.util.DB;
@@ -40,17 +48,33 @@ public class Parser implements Tool {
 	public static int THREADS = 4;
 
 	public Long2IntInterface l2i;
-	public ParametersFloat params;
+	public Parameters params;
 	public Pipe pipe;
 	public OptionsSuper options;
 
 	// keep some of the parsing information for later evaluation
 	public Instances is;
-	DataFES d2;
+	float[] scores;
 	public Parse d = null;
 
 	private String[] types;
 
+	// extractors and work queues of the parses running in each thread
+	private final ThreadLocal<ParseContext> contexts = new ThreadLocal<ParseContext>() {
+		@Override
+		protected ParseContext initialValue() {
+			return pipe.newContext();
+		}
+	};
+
+	// contexts of the sentence level parallel mode, each sentence is parsed in one thread
+	private final ThreadLocal<ParseContext> sentenceContexts = new ThreadLocal<ParseContext>() {
+		@Override
+		protected ParseContext initialValue() {
+			return pipe.newContext(1);
+		}
+	};
+
 	/**
 	 * Initialize the parser
 	 * 
@@ -77,9 +101,23 @@ public class Parser implements Tool {
 		this(new Options(new String[] { "-model", modelFileName }));
 	}
 
+	/**
+	 * @param modelFileName
+	 *            The file name of the parsing model
+	 * @param parallelLength
+	 *            sentences of this length and longer are parsed with all
+	 *            threads, negative for the default
+	 */
+	public Parser(String modelFileName, int parallelLength) {
+		this(new Options(new String[] { "-model", modelFileName, "-parallelLength",
+				Integer.toString(parallelLength) }));
+	}
+
 	public void loadModel() throws Exception {
-		// load the model
-		readModel(options, pipe, params);
+		// load the model, the weights are read or mapped
+		ParametersFloat weights = new ParametersFloat(0);
+		params = weights;
+		readModel(options, pipe, weights);
 
 	}
 
@@ -96,7 +134,7 @@ public class Parser implements Tool {
 	 * @param params
 	 * @throws IOException
 	 */
-	public void readModel(OptionsSuper options, Pipe pipe, Parameters params) throws IOException {
+	public void readModel(OptionsSuper options, Pipe pipe, ParametersFloat params) throws IOException {
 
 		DB.println("Reading data started");
 
@@ -110,7 +148,15 @@ public class Parser implements Tool {
 		pipe.cl = new Cluster(dis);
 
 		params.read(dis);
-		this.l2i = new Long2Int(params.size());
+
+		// an exported model has no weights, they are mapped from the file next to the model
+		File weights = new File(options.modelName + ParametersMapped.EXTENSION);
+		Parameters read = params;
+		if (params.size() == 0 && weights.exists()) {
+			read = ParametersMapped.map(weights.getPath());
+			this.params = read;
+		}
+		this.l2i = new Long2Int(read.size());
 		DB.println("parsing -- li size " + l2i.size());
 
 		pipe.extractor = new Extractor[THREADS];
@@ -172,7 +218,7 @@ public class Parser implements Tool {
 	 * @throws IOException
 	 */
 	private void out(BufferedReader inputReader, BufferedWriter outputWriter, OptionsSuper options, Pipe pipe,
-			ParametersFloat params, boolean maxInfo, boolean labelOnly) throws Exception {
+			Parameters params, boolean maxInfo, boolean labelOnly) throws Exception {
 
 		long start = System.currentTimeMillis();
 
@@ -194,25 +240,29 @@ public class Parser implements Tool {
 		// long last = System.currentTimeMillis();
 		System.out.print("Processing sentences...");
 
-		while (true) {
+		if (options.sentenceThreads > 1) {
+			cnt = outParallel(depReader, depWriter, params, labelOnly, options);
+		} else {
+			while (true) {
 
-			// Instances is = new Instances();
-			// is.init(1, new MFO(),options.formatTask);
+				// Instances is = new Instances();
+				// is.init(1, new MFO(),options.formatTask);
 
-			// SentenceData09 instance = pipe.nextInstance(is, depReader);
+				// SentenceData09 instance = pipe.nextInstance(is, depReader);
 
-			SentenceData09 instance = depReader.getNext();
-			if (instance == null)
-				break;
-			cnt++;
+				SentenceData09 instance = depReader.getNext();
+				if (instance == null)
+					break;
+				cnt++;
 
-			SentenceData09 i09 = this.parse(instance, params, labelOnly, options);
+				SentenceData09 i09 = this.parse(instance, params, labelOnly, options);
 
-			depWriter.write(i09);
+				depWriter.write(i09);
 
-			// does only printing
-			// del = PipeGen.outValue(cnt, del, last);
+				// does only printing
+				// del = PipeGen.outValue(cnt, del, last);
 
+			}
 		}
 		System.out.println(String.format(" processed sentences: %d", cnt));
 
@@ -227,6 +277,56 @@ public class Parser implements Tool {
 
 	}
 
+	/**
+	 * Parse the sentences in parallel, each sentence is parsed by one thread with its own extractor, data and chart.
+	 * The writer restores the order of the sentences. 
+	 * 
+	 * @return the number of sentences
+	 */
+	private int outParallel(CONLLReader09 depReader, final CONLLWriter09 depWriter, final Parameters params,
+			final boolean labelOnly, final OptionsSuper options) throws Exception {
+
+		final int threads = options.sentenceThreads;
+		ExecutorService executerService = Executors.newFixedThreadPool(threads);
+
+		// limit the sentences which are read ahead
+		final Semaphore window = new Semaphore(threads * 4);
+		// the first failure, it ends the run like in the sequential mode
+		final AtomicReference<Exception> error = new AtomicReference<Exception>();
+
+		int cnt = 0;
+		try {
+			while (error.get() == null) {
+
+				final SentenceData09 instance = depReader.getNext();
+				if (instance == null)
+					break;
+				final int index = cnt++;
+
+				window.acquire();
+				executerService.execute(new Runnable() {
+					@Override
+					public void run() {
+						try {
+							SentenceData09 i09 = parse(sentenceContexts.get(), instance, params, labelOnly, options);
+							depWriter.write(index, i09);
+						} catch (IOException | RuntimeException e) {
+							error.compareAndSet(null, e);
+						} finally {
+							window.release();
+						}
+					}
+				});
+			}
+		} finally {
+			executerService.shutdown();
+			executerService.awaitTermination(Long.MAX_VALUE, TimeUnit.MILLISECONDS);
+		}
+		if (error.get() != null)
+			throw error.get();
+		return cnt;
+	}
+
 	/**
 	 * Parse a single sentence
 	 * 
@@ -236,7 +336,15 @@ public class Parser implements Tool {
 	 * @param options
 	 * @return
 	 */
-	public SentenceData09 parse(SentenceData09 instance, ParametersFloat params, boolean labelOnly,
+	public SentenceData09 parse(SentenceData09 instance, Parameters params, boolean labelOnly,
+			OptionsSuper options) {
+		return parse(contexts.get(), instance, params, labelOnly, options);
+	}
+
+	/**
+	 * Parse a single sentence with the extractors and work queues of the context
+	 */
+	private SentenceData09 parse(ParseContext ctx, SentenceData09 instance, Parameters params, boolean labelOnly,
 			OptionsSuper options) {
 		// moved types to readmodel-method and as instance variable
 		/*
@@ -246,7 +354,9 @@ public class Parser implements Tool {
 		 * MFO.getFeatureSet().get(PipeGen.REL).entrySet()) types[e.getValue()]
 		 * = e.getKey();
 		 */
-		is = new Instances();
+		// parse may run in several threads at once, so the state is kept local
+		// and only published to the fields for getInfo() at the end
+		Instances is = new Instances();
 		is.init(1, new MFO(), options.formatTask);
 		new CONLLReader09().insert(is, instance);
 
@@ -256,7 +366,7 @@ public class Parser implements Tool {
 		i09.createSemantic(instance);
 
 		if (labelOnly) {
-			F2SF f2s = params.getFV();
+			F2SF f2s = (F2SF) params.getFV();
 
 			// repair pheads
 
@@ -267,13 +377,16 @@ public class Parser implements Tool {
 					is.pheads[0][l] = 0;
 			}
 
-			short[] labels = pipe.extractor[0].searchLabel(is, 0, is.pposs[0], is.forms[0], is.plemmas[0], is.pheads[0],
+			short[] labels = ctx.getExtractor()[0].searchLabel(is, 0, is.pposs[0], is.forms[0], is.plemmas[0], is.pheads[0],
 					is.plabels[0], is.feats[0], pipe.cl, f2s);
 
 			for (int j = 0; j < instance.forms.length - 1; j++) {
 				i09.plabels[j] = types[labels[j + 1]];
 				i09.pheads[j] = is.pheads[0][j + 1];
 			}
+			synchronized (this) {
+				this.is = is;
+			}
 			return i09;
 		}
 
@@ -281,16 +394,31 @@ public class Parser implements Tool {
 			try {
 				// System.out.println("prs "+instance.forms[0]);
 				// System.out.println("prs "+instance.toString());
-				d2 = pipe.fillVector(params.getFV(), is, 0, null, pipe.cl);// cnt-1
-				d = Decoder.decode(is.pposs[0], d2, options.decodeProjective, !Decoder.TRAINING); // cnt-1
-
-			} catch (Exception e) {
-				e.printStackTrace();
-			}
-
-			for (int j = 0; j < instance.forms.length - 1; j++) {
-				i09.plabels[j] = types[d.labels[j + 1]];
-				i09.pheads[j] = d.heads[j + 1];
+				DataFES d2 = pipe.fillVector(ctx, (F2SF) params.getFV(), is, 0, null, pipe.cl);// cnt-1
+				Parse d;
+				float[] scores = new float[is.length(0)];
+				try {
+					d = Decoder.decode(ctx, is.pposs[0], d2, options.decodeProjective, !Decoder.TRAINING); // cnt-1
+
+					// the score buffer is reused by the next sentence, keep the scores for getInfo()
+					Extractor.encode3(is.pposs[0], d.heads, d.labels, d2, scores);
+				} finally {
+					pipe.release(d2);
+				}
+
+				for (int j = 0; j < instance.forms.length - 1; j++) {
+					i09.plabels[j] = types[d.labels[j + 1]];
+					i09.pheads[j] = d.heads[j + 1];
+				}
+
+				synchronized (this) {
+					this.is = is;
+					this.scores = scores;
+					this.d = d;
+				}
+			} catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+				throw new RuntimeException(e);
 			}
 		}
 		return i09;
@@ -310,19 +438,12 @@ public class Parser implements Tool {
 		SentenceData09 it = new SentenceData09();
 		it.createWithRoot(snt09);
 
-		SentenceData09 out = null;
-		try {
-
-			// for(int k=0;k<it.length();k++) {
-			// it.forms[k] = reader.normalize(it.forms[k]);
-			// it.plemmas[k] = reader.normalize(it.plemmas[k]);
-			// }
+		// for(int k=0;k<it.length();k++) {
+		// it.forms[k] = reader.normalize(it.forms[k]);
+		// it.plemmas[k] = reader.normalize(it.plemmas[k]);
+		// }
 
-			out = parse(it, this.params, false, options);
-
-		} catch (Exception e) {
-			e.printStackTrace();
-		}
+		SentenceData09 out = parse(it, this.params, false, options);
 
 		// do not shutdown threads
 		// Decoder.executerService.shutdown();
@@ -336,10 +457,7 @@ public class Parser implements Tool {
 	 * 
 	 * @return the scores
 	 */
-	public float[] getInfo() {
-
-		float[] scores = new float[is.length(0)];
-		Extractor.encode3(is.pposs[0], d.heads, d.labels, d2, scores);
+	public synchronized float[] getInfo() {
 
 		return scores;
 	}
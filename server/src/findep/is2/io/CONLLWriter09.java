@@ -9,6 +9,7 @@ import java.io.IOException;
 import java.io.InputStreamReader;
 import java.io.OutputStreamWriter;
 import java.io.Writer;
+import java.util.HashMap;
 import java.util.StringTokenizer;
 
 import is2.data.SentenceData09;
@@ -27,6 +28,10 @@ public class CONLLWriter09 extends IOGenerals {
 	
 	protected BufferedWriter writer;
 
+	// sentences which are parsed before their predecessors, see write(int, SentenceData09)
+	private final HashMap<Integer,SentenceData09> pending = new HashMap<Integer,SentenceData09>();
+	private int next =0;
+
 	public CONLLWriter09 () { }
 	
 	public static void main(String args[]) throws IOException {
@@ -152,6 +157,30 @@ public class CONLLWriter09 extends IOGenerals {
 	public void write(SentenceData09 inst) throws IOException {
 		write(inst, NO_ROOT);
 	}
+
+	/**
+	 * Writes the sentences in the order of their index, when the sentences are parsed in parallel 
+	 * and arrive in any order. A sentence is kept until all sentences with a smaller index are written.
+	 * 
+	 * @param index the position of the sentence in the input starting with 0
+	 * @param inst the sentence or null if the sentence is dropped
+	 * @throws IOException
+	 */
+	public synchronized void write(int index, SentenceData09 inst) throws IOException {
+		pending.put(index, inst);
+		while(pending.containsKey(next)) {
+			SentenceData09 i09 = pending.remove(next);
+			next++;
+			if (i09!=null) write(i09, NO_ROOT);
+		}
+	}
+
+	/**
+	 * @return the number of sentences waiting for their predecessors
+	 */
+	public synchronized int getPending() {
+		return pending.size();
+	}
 	
 	/**
 	 * 
@@ -37,12 +37,15 @@ import marmot.util.FileUtils;
 public class Annotator {
 	private static final char SEPERATOR_ = '\t';
 	private static final String EMPTY_ = "_";
+	// sentences tagged together by MorphTagger.tagBatch
+	private static final int BATCH_SIZE_ = 256;
 
 	private MorphTagger tagger=null;
 	
 	public Annotator(String modelFile)
 	{
 		tagger = FileUtils.loadFromFile(modelFile);
+		tagger.setReadOnly(true);
 		
 	}
 	
@@ -66,6 +69,7 @@ public class Annotator {
 	public void annotate(Tagger tagger, String text_file, Writer writer) throws IOException {	
 		SentenceReader reader = new SentenceReader(text_file);
 		
+		List<Sentence> batch = new ArrayList<Sentence>(BATCH_SIZE_);
 		for (Sequence sequence : reader) {
 			Sentence sentence = (Sentence) sequence;
 			
@@ -74,11 +78,34 @@ public class Annotator {
 				continue;
 			}
 			
+			batch.add(sentence);
+			if (batch.size() == BATCH_SIZE_) {
+				annotate(tagger, batch, writer);
+				batch.clear();
+			}
+		}
+		annotate(tagger, batch, writer);
+	}
+	
+	private void annotate(Tagger tagger, List<Sentence> batch, Writer writer) throws IOException {
+		List<List<List<String>>> batch_tags = null;
+		if (tagger instanceof MorphTagger && batch.size() > 1) {
+			try {
+				batch_tags = ((MorphTagger) tagger).tagBatch(new ArrayList<Sequence>(batch));
+			} catch (OutOfMemoryError e) {
+				// tag the sentences one by one
+				batch_tags = null;
+			}
+		}
+		
+		for (int index = 0; index < batch.size(); index ++) {
+			Sentence sentence = batch.get(index);
+			
 			List<List<String>> tags;
 			
 			try {
 			
-			tags = tagger.tag(sentence);
+			tags = (batch_tags != null) ? batch_tags.get(index) : tagger.tag(sentence);
 			
 			} catch (OutOfMemoryError e) {
 				
@@ -86,7 +113,7 @@ public class Annotator {
 				
 				List<String> tag = Collections.singletonList("_");
 				
-				for (int index = 0; index < sentence.size(); index ++) {
+				for (int i = 0; i < sentence.size(); i ++) {
 					tags.add(tag);
 				}
 				
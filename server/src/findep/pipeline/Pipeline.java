@@ -0,0 +1,259 @@
+package findep.pipeline;
+
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.io.Writer;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeSet;
+
+import findep.is2.Parser;
+import findep.ported.OmorfiPos;
+import findep.ported.ParserLog;
+import findep.ported.ResolveReadings;
+import findep.ported.TagImpl;
+import is2.data.SentenceData09;
+import is2.io.IOGenerals;
+import marmot.morph.MorphTagger;
+import marmot.morph.Sentence;
+import marmot.morph.Word;
+import net.sf.hfst.Analysis;
+import net.sf.hfst.HfstOptimizedLookupObj;
+
+/*
+ * In-process replacement for my_parser_wrapper.sh/parse_conll.sh.
+ *
+ * Runs the whole chain inside the JVM:
+ * sentence split -> tokenize -> omorfi readings (hfst, OmorfiPos) -> marmot tagging
+ * -> reading resolution -> is2 parser, and writes CoNLL-U sentence by sentence.
+ *
+ * No temp files, no subprocesses and no loopback HTTP calls to /omorfi,
+ * /marmot or /annaparser.
+ *
+ * One Pipeline is one worker (see WorkerPool). The splitter is owned by the
+ * worker, the models are shared by all workers.
+ */
+public class Pipeline {
+
+	private static final char SEPARATOR = '\t';
+	private static final String EMPTY = "_";
+
+	private SentenceSplitter splitter = null;
+	private HfstOptimizedLookupObj hfst_morphology = null;
+	private MorphTagger tagger = null;
+	private Parser parser = null;
+
+	// reading resolution is shared with the ported servlet
+	private TagImpl readings = null;
+
+	// possible POS of the tokens for the marmot token features
+	private OmorfiPos omorfiPos = null;
+
+	// maps the POS of an omorfi (FTB) reading to the POS used by the marmot
+	// model, the reverse of TagImpl.convertToSDTag
+	private static final Map<String, String> READING_POS = new HashMap<String, String>();
+	static {
+		READING_POS.put("N", "NOUN");
+		READING_POS.put("V", "VERB");
+		READING_POS.put("A", "ADJ");
+		READING_POS.put("Adv", "ADV");
+		READING_POS.put("Pron", "PRON");
+		READING_POS.put("Num", "NUM");
+		READING_POS.put("Adp", "ADP");
+		READING_POS.put("C", "CONJ");
+		READING_POS.put("Interj", "INTJ");
+		READING_POS.put("Punct", "PUNCT");
+		READING_POS.put("Symb", "SYM");
+		READING_POS.put("Foreign", "X");
+		READING_POS.put("Trash", "X");
+		READING_POS.put("Null", "X");
+	}
+
+	public Pipeline(SentenceSplitter splitter, HfstOptimizedLookupObj hfst_morphology,
+			HfstOptimizedLookupObj hfst_generation, MorphTagger tagger, Parser parser, ParserLog log) {
+		this.splitter = splitter;
+		this.hfst_morphology = hfst_morphology;
+		this.tagger = tagger;
+		this.parser = parser;
+		this.readings = new TagImpl(log, hfst_morphology, tagger);
+		this.omorfiPos = new OmorfiPos(new ResolveReadings(hfst_generation));
+	}
+
+	public SentenceSplitter getSplitter() {
+		return splitter;
+	}
+
+	/**
+	 * Parses the text while it is read and writes CoNLL-U to the writer. Each
+	 * sentence is flushed as soon as it is parsed.
+	 *
+	 * @param sentences
+	 *            plain Finnish text, split by the splitter of this pipeline
+	 * @param out
+	 *            CoNLL-U output
+	 * @return number of sentences parsed
+	 * @throws IOException
+	 */
+	public int process(SentenceStream sentences, Writer out) throws IOException {
+		int count = 0;
+		for (String sentence = sentences.next(); sentence != null; sentence = sentences.next()) {
+			if (Thread.currentThread().isInterrupted()) {
+				throw new InterruptedIOException("Parsing interrupted.");
+			}
+			String[] tokens = splitter.tokens(sentence);
+			if (tokens.length == 0) {
+				continue;
+			}
+			writeConllu(parseSentence(tokens), out);
+			out.flush();
+			count++;
+		}
+		return count;
+	}
+
+	/**
+	 * Runs morphology, tagging and parsing for one tokenized sentence.
+	 *
+	 * @param tokens
+	 * @return the parsed sentence without root
+	 */
+	public SentenceData09 parseSentence(String[] tokens) {
+
+		// omorfi readings, one (cached) lookup per token
+		String[] morphoStrings = new String[tokens.length];
+		List<Word> words = new ArrayList<Word>(tokens.length);
+		for (int i = 0; i < tokens.length; i++) {
+			Analysis[] analyses = hfst_morphology.analyze(tokens[i]);
+			morphoStrings[i] = hfst_morphology.format(tokens[i], analyses);
+			Word word = new Word(tokens[i]);
+			word.setTokenFeatures(possiblePos(tokens[i], analyses));
+			words.add(word);
+		}
+
+		// marmot tagging, the tagger keeps its scratch state per thread
+		Sentence sentence = new Sentence(words);
+		List<List<String>> tags = tagger.tag(sentence);
+
+		// resolve readings and fill parser input, index 0 is root
+		int length = tokens.length + 1;
+		SentenceData09 instance = createInstance(length);
+		for (int i = 1; i < length; i++) {
+			String form = tokens[i - 1];
+			List<String> tag = tags.get(i - 1);
+			String pos = tag.get(0);
+			String feat = (tag.size() > 1) ? tag.get(1) : EMPTY;
+
+			instance.id[i] = Integer.toString(i);
+			instance.forms[i] = form;
+			instance.plemmas[i] = readings.getLemma(morphoStrings[i - 1], pos, form);
+			instance.lemmas[i] = instance.plemmas[i];
+			instance.gpos[i] = pos;
+			instance.ppos[i] = pos;
+			instance.ofeats[i] = feat;
+			instance.pfeats[i] = feat;
+			instance.feats[i] = EMPTY.equals(feat) ? null : feat.split(IOGenerals.PIPE);
+			instance.labels[i] = EMPTY;
+			instance.plabels[i] = EMPTY;
+			instance.heads[i] = -1;
+			instance.pheads[i] = -1;
+			instance.fillp[i] = EMPTY;
+		}
+
+		return parser.parse(instance, parser.params, false, parser.options);
+	}
+
+	/*
+	 * Collects POS_ token features for marmot from the omorfi readings like
+	 * marmot-tag.py, e.g. "POS_NOUN#POS_VERB"
+	 */
+	private String[] possiblePos(String token, Analysis[] analyses) {
+		TreeSet<String> posSet = new TreeSet<String>();
+		for (Map<String, String> taglist : omorfiPos.taglists(token, analyses)) {
+			String pos = READING_POS.get(taglist.get(OmorfiPos.POS));
+			if (pos == null) {
+				continue;
+			}
+			String subcat = taglist.get(OmorfiPos.SUBCAT);
+			if ("NOUN".equals(pos) && "Prop".equals(subcat)) {
+				pos = "PROPN";
+			} else if ("CONJ".equals(pos) && "CS".equals(subcat)) {
+				pos = "SCONJ";
+			}
+			posSet.add("POS_" + pos);
+		}
+		if (posSet.isEmpty()) {
+			return null;
+		}
+		return posSet.toArray(new String[posSet.size()]);
+	}
+
+	private SentenceData09 createInstance(int length) {
+		SentenceData09 it = new SentenceData09();
+
+		it.forms = new String[length];
+		it.plemmas = new String[length];
+		it.gpos = new String[length];
+		it.labels = new String[length];
+		it.heads = new int[length];
+		it.pheads = new int[length];
+		it.plabels = new String[length];
+		it.ppos = new String[length];
+		it.lemmas = new String[length];
+		it.fillp = new String[length];
+		it.feats = new String[length][];
+		it.ofeats = new String[length];
+		it.pfeats = new String[length];
+		it.id = new String[length];
+
+		it.forms[0] = IOGenerals.ROOT;
+		it.plemmas[0] = IOGenerals.ROOT_LEMMA;
+		it.fillp[0] = "N";
+		it.lemmas[0] = IOGenerals.ROOT_LEMMA;
+		it.gpos[0] = IOGenerals.ROOT_POS;
+		it.ppos[0] = IOGenerals.ROOT_POS;
+		it.labels[0] = IOGenerals.NO_TYPE;
+		it.heads[0] = -1;
+		it.plabels[0] = IOGenerals.NO_TYPE;
+		it.pheads[0] = -1;
+		it.ofeats[0] = IOGenerals.NO_TYPE;
+		it.id[0] = "0";
+
+		return it;
+	}
+
+	/*
+	 * Same columns as the 09 -> U conversion in UConverterImpl.convertUto09
+	 * ID FORM PLEMMA PPOS _ PFEAT PHEAD PDEPREL _ _
+	 */
+	public static void writeConllu(SentenceData09 parsed, Writer out) throws IOException {
+		for (int i = 0; i < parsed.length(); i++) {
+			out.append(Integer.toString(i + 1));
+			out.append(SEPARATOR);
+			out.append(parsed.forms[i]);
+			out.append(SEPARATOR);
+			out.append(valueOf(parsed.plemmas[i]));
+			out.append(SEPARATOR);
+			out.append(valueOf(parsed.ppos[i]));
+			out.append(SEPARATOR);
+			out.append(EMPTY);
+			out.append(SEPARATOR);
+			out.append(valueOf(parsed.pfeats[i]));
+			out.append(SEPARATOR);
+			out.append(Integer.toString(parsed.pheads[i]));
+			out.append(SEPARATOR);
+			out.append(valueOf(parsed.plabels[i]));
+			out.append(SEPARATOR);
+			out.append(EMPTY);
+			out.append(SEPARATOR);
+			out.append(EMPTY);
+			out.append('\n');
+		}
+		out.append('\n');
+	}
+
+	private static String valueOf(String s) {
+		return s == null ? EMPTY : s;
+	}
+}
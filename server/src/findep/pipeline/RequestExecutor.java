@@ -0,0 +1,448 @@
+package findep.pipeline;
+
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import javax.servlet.AsyncContext;
+import javax.servlet.AsyncEvent;
+import javax.servlet.AsyncListener;
+import javax.servlet.http.HttpServlet;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+
+import findep.utils.RequestBody;
+
+/*
+ * Runs the requests of a servlet on its own parsing threads, one thread per
+ * worker of the pool. The thread takes a worker for the request, so the
+ * handler never waits for one.
+ *
+ * The request is taken off the container thread with startAsync and queued
+ * in a bounded queue. When all threads are busy and the queue is full the
+ * request is answered at once with 503 and Retry-After, so that a load
+ * balancer can send it elsewhere. A request that is not done by its deadline
+ * is interrupted by a timer thread; its parsing thread answers with 503 if
+ * nothing has been written yet. A request still in the queue at its deadline
+ * is answered with 503 without being run. The container times out a request
+ * only if its thread has not answered TIMEOUT_GRACE_MILLIS after that.
+ *
+ * Configured with the servlet init parameters queue, deadline and
+ * retryAfter (seconds). A request with a Content-Length larger than the
+ * maxBodySize of the servlet gets 413 before it is queued, see RequestBody.
+ * A client can ask for a shorter deadline with the X-Deadline header
+ * (seconds).
+ */
+public class RequestExecutor<T> {
+
+	// servlet init parameters
+	public final static String QUEUE_PARAMETER = "queue";
+	public final static String DEADLINE_PARAMETER = "deadline";
+	public final static String RETRY_AFTER_PARAMETER = "retryAfter";
+
+	// request header, deadline of the request in seconds
+	public final static String DEADLINE_HEADER = "X-Deadline";
+
+	public final static int DEFAULT_RETRY_AFTER = 10;
+
+	// how long after its deadline the container times out a request whose
+	// interrupted thread has not answered
+	private final static long TIMEOUT_GRACE_MILLIS = 5000;
+
+	/*
+	 * Handles one request on a parsing thread.
+	 */
+	public interface Handler<T> {
+		/**
+		 * @param worker
+		 *            the worker of the thread, used by this request alone
+		 * @param deadline
+		 *            System.currentTimeMillis() by which the request has to
+		 *            be done, the thread is interrupted when it has passed
+		 */
+		void handle(HttpServletRequest req, HttpServletResponse resp, T worker, long deadline) throws Exception;
+	}
+
+	private final HttpServlet servlet;
+	private final WorkerPool<T> workers;
+	private final ThreadPoolExecutor executor;
+	private final ScheduledThreadPoolExecutor timer;
+	private final long deadlineMillis;
+	private final int retryAfterSeconds;
+	private long maxBodySize = -1;
+
+	/**
+	 * @param workers
+	 *            one parsing thread is started per worker
+	 * @param queueLength
+	 *            number of requests waiting for a thread
+	 * @param deadlineMillis
+	 *            longest time a request may take, including the time in the
+	 *            queue
+	 * @param retryAfterSeconds
+	 *            Retry-After of rejected requests
+	 */
+	public RequestExecutor(HttpServlet servlet, WorkerPool<T> workers, int queueLength, long deadlineMillis,
+			int retryAfterSeconds) {
+		this.servlet = servlet;
+		this.workers = workers;
+		this.deadlineMillis = deadlineMillis;
+		this.retryAfterSeconds = retryAfterSeconds;
+
+		final String name = servlet.getClass().getSimpleName();
+		int threads = workers.getSize();
+		executor = new ThreadPoolExecutor(threads, threads, 0L, TimeUnit.MILLISECONDS,
+				new ArrayBlockingQueue<Runnable>(Math.max(1, queueLength)), new ThreadFactory() {
+					private final AtomicInteger count = new AtomicInteger();
+
+					@Override
+					public Thread newThread(Runnable r) {
+						Thread thread = new Thread(r, name + "-" + count.incrementAndGet());
+						thread.setDaemon(true);
+						return thread;
+					}
+				});
+		timer = new ScheduledThreadPoolExecutor(1, new ThreadFactory() {
+			@Override
+			public Thread newThread(Runnable r) {
+				Thread thread = new Thread(r, name + "-deadline");
+				thread.setDaemon(true);
+				return thread;
+			}
+		});
+		timer.setRemoveOnCancelPolicy(true);
+	}
+
+	/**
+	 * Reads queue, deadline, retryAfter and maxBodySize from the init parameters of the
+	 * servlet. The queue defaults to four requests per worker.
+	 */
+	public static <T> RequestExecutor<T> create(HttpServlet servlet, WorkerPool<T> workers, long defaultDeadlineSeconds) {
+		int queueLength = parse(servlet.getInitParameter(QUEUE_PARAMETER), 4 * workers.getSize());
+		long deadline = parse(servlet.getInitParameter(DEADLINE_PARAMETER), defaultDeadlineSeconds);
+		int retryAfter = parse(servlet.getInitParameter(RETRY_AFTER_PARAMETER), DEFAULT_RETRY_AFTER);
+		RequestExecutor<T> executor = new RequestExecutor<T>(servlet, workers, queueLength,
+				TimeUnit.SECONDS.toMillis(deadline), retryAfter);
+		executor.setMaxBodySize(RequestBody.getMaxBodySize(servlet));
+		return executor;
+	}
+
+	/**
+	 * @param maxBodySize
+	 *            largest Content-Length accepted, negative for no limit
+	 */
+	public void setMaxBodySize(long maxBodySize) {
+		this.maxBodySize = maxBodySize;
+	}
+
+	private static int parse(String value, long defaultValue) {
+		if (value == null || value.trim().isEmpty()) {
+			return (int) Math.min(Integer.MAX_VALUE, defaultValue);
+		}
+		return Integer.parseInt(value.trim());
+	}
+
+	/**
+	 * Queues the request, the container thread returns at once if the
+	 * container supports async requests.
+	 */
+	public void execute(final HttpServletRequest req, final HttpServletResponse resp, final Handler<T> handler)
+			throws IOException {
+		if (RequestBody.isTooLarge(req, maxBodySize)) {
+			RequestBody.reject(resp, new RequestBody.TooLargeException(maxBodySize));
+			return;
+		}
+
+		final long deadline = System.currentTimeMillis() + deadlineFor(req);
+		final AsyncContext async = req.isAsyncSupported() ? req.startAsync() : null;
+		final Task task = new Task(req, resp, handler, deadline, async);
+
+		if (async != null) {
+			// registered before the task is queued, the task may complete at once
+			async.setTimeout(remaining(deadline) + TIMEOUT_GRACE_MILLIS);
+			async.addListener(new AsyncListener() {
+				@Override
+				public void onTimeout(AsyncEvent event) throws IOException {
+					task.expire();
+				}
+
+				@Override
+				public void onError(AsyncEvent event) throws IOException {
+					task.cancel();
+				}
+
+				@Override
+				public void onComplete(AsyncEvent event) throws IOException {
+				}
+
+				@Override
+				public void onStartAsync(AsyncEvent event) throws IOException {
+				}
+			});
+		}
+
+		if (async != null) {
+			task.schedule();
+		}
+		try {
+			executor.execute(task);
+		} catch (RejectedExecutionException e) {
+			task.unschedule();
+			servlet.log("Rejected, queue is full.");
+			reject(resp, "Server busy, try again later.");
+			if (async != null) {
+				async.complete();
+			}
+			return;
+		}
+
+		if (async == null) {
+			// no async support, the container thread waits but the queue is
+			// still bounded
+			task.await(deadline);
+		}
+	}
+
+	/*
+	 * A queued request. Only the parsing thread that runs the task writes to
+	 * the response, unless the task times out or is cancelled before it runs.
+	 */
+	private class Task implements Runnable {
+		private static final int QUEUED = 0, RUNNING = 1, DONE = 2, DROPPED = 3;
+
+		private final HttpServletRequest req;
+		private final HttpServletResponse resp;
+		private final Handler<T> handler;
+		private final long deadline;
+		private final AsyncContext async;
+
+		private final AtomicInteger state = new AtomicInteger(QUEUED);
+		private final CountDownLatch done = new CountDownLatch(1);
+		private volatile Thread runner;
+		private volatile boolean timedOut;
+		private volatile ScheduledFuture<?> deadlineTimer;
+
+		Task(HttpServletRequest req, HttpServletResponse resp, Handler<T> handler, long deadline,
+				AsyncContext async) {
+			this.req = req;
+			this.resp = resp;
+			this.handler = handler;
+			this.deadline = deadline;
+			this.async = async;
+		}
+
+		@Override
+		public void run() {
+			runner = Thread.currentThread();
+			if (!state.compareAndSet(QUEUED, RUNNING)) {
+				// answered when it was dropped from the queue
+				return;
+			}
+			try {
+				if (System.currentTimeMillis() >= deadline) {
+					reject(resp, "Deadline exceeded while waiting for a worker.");
+				} else {
+					// never null, there is one thread per worker
+					T worker = workers.acquire(0, TimeUnit.MILLISECONDS);
+					try {
+						handler.handle(req, resp, worker, deadline);
+					} catch (RequestBody.TooLargeException e) {
+						if (!RequestBody.reject(resp, e)) {
+							servlet.log("Request body too large.", e);
+						}
+					} finally {
+						workers.release(worker);
+					}
+				}
+			} catch (Exception e) {
+				servlet.log("Request failed.", e);
+				if (!resp.isCommitted()) {
+					resp.setStatus(HttpServletResponse.SC_INTERNAL_SERVER_ERROR);
+				}
+			} finally {
+				finish();
+			}
+		}
+
+		private void finish() {
+			synchronized (this) {
+				state.set(DONE);
+			}
+			unschedule();
+			// an interrupt of timeout() must not reach the next task
+			Thread.interrupted();
+			try {
+				if (timedOut && !resp.isCommitted()) {
+					resp.reset();
+					servlet.log("Deadline exceeded.");
+					reject(resp, "Deadline exceeded.");
+				}
+			} catch (IOException e) {
+				servlet.log("Failed to answer a timed out request.", e);
+			} finally {
+				if (async != null) {
+					async.complete();
+				}
+				done.countDown();
+			}
+		}
+
+		/**
+		 * Calls timeout() on the timer thread at the deadline.
+		 */
+		void schedule() {
+			deadlineTimer = timer.schedule(new Runnable() {
+				@Override
+				public void run() {
+					try {
+						timeout();
+					} catch (IOException e) {
+						servlet.log("Failed to answer a timed out request.", e);
+					}
+				}
+			}, remaining(deadline), TimeUnit.MILLISECONDS);
+		}
+
+		void unschedule() {
+			ScheduledFuture<?> f = deadlineTimer;
+			if (f != null) {
+				f.cancel(false);
+			}
+		}
+
+		/**
+		 * Interrupts the request at its deadline, its thread answers. A queued
+		 * request is answered at once.
+		 */
+		void timeout() throws IOException {
+			timedOut = true;
+			if (drop()) {
+				servlet.log("Deadline exceeded while waiting for a worker.");
+				reject(resp, "Deadline exceeded while waiting for a worker.");
+				if (async != null) {
+					async.complete();
+				}
+				return;
+			}
+			interrupt();
+		}
+
+		/**
+		 * The container timed out the request, the thread has not answered
+		 * since the deadline. The container answers it.
+		 */
+		void expire() throws IOException {
+			if (state.get() != DONE) {
+				servlet.log("Timed out request still running.");
+			}
+			timeout();
+		}
+
+		/**
+		 * Stops the request after an error of the connection.
+		 */
+		void cancel() {
+			if (drop()) {
+				if (async != null) {
+					async.complete();
+				}
+				return;
+			}
+			interrupt();
+		}
+
+		/**
+		 * Waits for the request on the container thread.
+		 */
+		void await(long deadline) {
+			try {
+				if (!done.await(RequestExecutor.remaining(deadline), TimeUnit.MILLISECONDS)) {
+					timeout();
+					// the response is recycled when this thread returns
+					if (!done.await(TIMEOUT_GRACE_MILLIS, TimeUnit.MILLISECONDS)) {
+						servlet.log("Timed out request still running.");
+					}
+				}
+			} catch (InterruptedException e) {
+				cancel();
+				Thread.currentThread().interrupt();
+			} catch (IOException e) {
+				servlet.log("Failed to answer a timed out request.", e);
+			}
+		}
+
+		/**
+		 * @return true if the task was still queued, it then never runs
+		 */
+		private boolean drop() {
+			if (state.compareAndSet(QUEUED, DROPPED)) {
+				executor.remove(this);
+				return true;
+			}
+			return false;
+		}
+
+		private void interrupt() {
+			synchronized (this) {
+				if (state.get() == RUNNING) {
+					runner.interrupt();
+				}
+			}
+		}
+	}
+
+	private long deadlineFor(HttpServletRequest req) {
+		String value = req.getHeader(DEADLINE_HEADER);
+		if (value != null) {
+			try {
+				long requested = TimeUnit.SECONDS.toMillis(Long.parseLong(value.trim()));
+				if (requested > 0) {
+					return Math.min(requested, deadlineMillis);
+				}
+			} catch (NumberFormatException e) {
+				// use the default
+			}
+		}
+		return deadlineMillis;
+	}
+
+	private void reject(HttpServletResponse resp, String message) throws IOException {
+		if (resp.isCommitted()) {
+			return;
+		}
+		resp.setStatus(HttpServletResponse.SC_SERVICE_UNAVAILABLE);
+		resp.setHeader("Retry-After", Integer.toString(retryAfterSeconds));
+		resp.setContentType("text/plain");
+		PrintWriter pw = resp.getWriter();
+		pw.println(message);
+		pw.flush();
+	}
+
+	/**
+	 * @return milliseconds left until the deadline, at least 0
+	 */
+	public static long remaining(long deadline) {
+		return Math.max(0, deadline - System.currentTimeMillis());
+	}
+
+	public int getQueued() {
+		return executor.getQueue().size();
+	}
+
+	public int getActive() {
+		return executor.getActiveCount();
+	}
+
+	public void shutdown() {
+		timer.shutdownNow();
+		executor.shutdownNow();
+	}
+}
@@ -0,0 +1,37 @@
+package findep.pipeline;
+
+import opennlp.tools.sentdetect.SentenceDetectorME;
+import opennlp.tools.sentdetect.SentenceModel;
+import opennlp.tools.tokenize.Tokenizer;
+import opennlp.tools.tokenize.TokenizerME;
+import opennlp.tools.tokenize.TokenizerModel;
+import opennlp.tools.util.Span;
+
+/*
+ * Sentence detection and tokenization for one worker.
+ *
+ * The opennlp models are read-only and shared, the ME classes keep
+ * per call state and are not thread safe, so each worker has its own.
+ */
+public class SentenceSplitter {
+
+	private SentenceDetectorME sentenceDetector = null;
+	private Tokenizer tokenizer = null;
+
+	public SentenceSplitter(SentenceModel sentenceModel, TokenizerModel tokenizerModel) {
+		sentenceDetector = new SentenceDetectorME(sentenceModel);
+		tokenizer = new TokenizerME(tokenizerModel);
+	}
+
+	public String[] sentences(String text) {
+		return sentenceDetector.sentDetect(text);
+	}
+
+	public Span[] sentencePositions(String text) {
+		return sentenceDetector.sentPosDetect(text);
+	}
+
+	public String[] tokens(String sentence) {
+		return tokenizer.tokenize(sentence);
+	}
+}
@@ -0,0 +1,91 @@
+package findep.pipeline;
+
+import java.io.IOException;
+import java.io.Reader;
+import java.util.ArrayDeque;
+
+import opennlp.tools.util.Span;
+
+/*
+ * Splits text into sentences while it is read, so that a request is never
+ * held in memory as a whole.
+ *
+ * The text is read into a block of at most blockSize chars. The last
+ * sentence detected in a block may continue in the text that has not been
+ * read yet, it is carried over to the next block and detected again. Only a
+ * sentence that fills a whole block is cut at the block end.
+ */
+public class SentenceStream {
+
+	public static final int BLOCK_SIZE = 1 << 14;
+
+	private Reader reader = null;
+	private SentenceSplitter splitter = null;
+	private int blockSize;
+
+	private final StringBuilder block = new StringBuilder();
+	private final char[] buffer = new char[4096];
+	private final ArrayDeque<String> sentences = new ArrayDeque<String>();
+	private boolean eof = false;
+	private long inputSize = 0;
+
+	public SentenceStream(Reader reader, SentenceSplitter splitter) {
+		this(reader, splitter, BLOCK_SIZE);
+	}
+
+	public SentenceStream(Reader reader, SentenceSplitter splitter, int blockSize) {
+		if (blockSize < 1) {
+			throw new IllegalArgumentException("Block size must be positive: " + blockSize);
+		}
+		this.reader = reader;
+		this.splitter = splitter;
+		this.blockSize = blockSize;
+	}
+
+	/**
+	 * @return the next sentence or null at the end of the text
+	 * @throws IOException
+	 */
+	public String next() throws IOException {
+		while (sentences.isEmpty() && !(eof && block.length() == 0)) {
+			split();
+		}
+		return sentences.poll();
+	}
+
+	/**
+	 * @return number of chars read so far
+	 */
+	public long getInputSize() {
+		return inputSize;
+	}
+
+	private void split() throws IOException {
+		while (!eof && block.length() < blockSize) {
+			int read = reader.read(buffer, 0, Math.min(buffer.length, blockSize - block.length()));
+			if (read < 0) {
+				eof = true;
+			} else {
+				block.append(buffer, 0, read);
+				inputSize += read;
+			}
+		}
+
+		String text = block.toString();
+		Span[] spans = splitter.sentencePositions(text);
+
+		// the last sentence is kept unless it is the only one of a full block
+		int complete = spans.length;
+		if (!eof && complete > 1) {
+			complete--;
+		}
+		for (int i = 0; i < complete; i++) {
+			sentences.add(text.substring(spans[i].getStart(), spans[i].getEnd()));
+		}
+
+		block.setLength(0);
+		if (complete < spans.length) {
+			block.append(text, spans[complete].getStart(), text.length());
+		}
+	}
+}
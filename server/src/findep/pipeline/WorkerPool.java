@@ -0,0 +1,71 @@
+package findep.pipeline;
+
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.Callable;
+import java.util.concurrent.TimeUnit;
+
+/*
+ * Fixed size pool of workers. Replaces the global lock of the servlets:
+ * a request takes a worker, uses its scratch state (tokenizers, buffers)
+ * alone and gives it back. The model data behind the workers is shared.
+ */
+public class WorkerPool<T> {
+
+	private final BlockingQueue<T> idle;
+	private final int size;
+
+	/**
+	 * @param size
+	 *            number of workers, at least one
+	 * @param factory
+	 *            creates one worker, called size times
+	 * @throws Exception
+	 *             if a worker cannot be created
+	 */
+	public WorkerPool(int size, Callable<T> factory) throws Exception {
+		this.size = Math.max(1, size);
+		this.idle = new ArrayBlockingQueue<T>(this.size, true);
+		for (int i = 0; i < this.size; i++) {
+			idle.add(factory.call());
+		}
+	}
+
+	/**
+	 * Takes a worker, waits at most the given time.
+	 *
+	 * @return the worker or null if none became free in time
+	 * @throws InterruptedException
+	 */
+	public T acquire(long timeout, TimeUnit unit) throws InterruptedException {
+		return idle.poll(timeout, unit);
+	}
+
+	/**
+	 * Gives the worker back, must be called once for each acquired worker.
+	 */
+	public void release(T worker) {
+		if (worker != null) {
+			idle.offer(worker);
+		}
+	}
+
+	public int getSize() {
+		return size;
+	}
+
+	public int getIdle() {
+		return idle.size();
+	}
+
+	/**
+	 * Reads the pool size from a servlet init parameter, defaults to the
+	 * number of processors.
+	 */
+	public static int parseSize(String value) {
+		if (value == null || value.trim().isEmpty()) {
+			return Runtime.getRuntime().availableProcessors();
+		}
+		return Integer.parseInt(value.trim());
+	}
+}
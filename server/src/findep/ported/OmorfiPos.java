@@ -0,0 +1,312 @@
+package findep.ported;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import net.sf.hfst.Analysis;
+
+/*
+ * Port of the parts of omorfi_pos.py that give the possible POS of a token
+ * for the marmot token features (hun_possiblepos in marmot-tag.py):
+ * omorfi_lookup -> omorfi_postprocess -> resolve_readings -> analyze_reading
+ * -> analyze_taglist.
+ *
+ * The readings come from the morphology transducer (model M) as in
+ * OmorfiServlet, the postprocessing is done here.
+ */
+public class OmorfiPos {
+
+	// omorfi_pos.raw_tag_information, category of every tag omorfi emits
+	private static final String RAW_TAG_INFORMATION = "CASE <Abe>,CASE <Abl>,CASE <Acc>,CASE <Ade>,CASE <All>,CASECHANGE <cap>,CASECHANGE <Cap>,CASECHANGE <CAP>,CASECHANGE <Up>,CASE <Com>,CASE <Dis>,CASE <Ela>,CASE <Ess>,CASE <Gen>,CASE <Ill>,CASE <Ine>,CASE <Ins>,CASE <Lat>,CASE <Nom>,CASE <Par>,CASE <Prl>,CASE <Sti>,CASE <Tra>,CLIT <Foc_han>,CLIT <Foc_ka>,CLIT <Foc_kaan>,CLIT <Foc_kin>,CLIT <Foc_pa>,CLIT <Foc_s>,CLIT <Qst>,CMP <Comp>,CMP <Pos>,CMP <Superl>,DRV <Der_inen>,DRV <Der_ja>,DRV <Der_lainen>,DRV <Der_llinen>,DRV <Der_maisilla>,DRV <Der_minen>,DRV <Der_oi>,DRV <Der_sti>,DRV <Der_tar>,DRV <Der_tattaa>,DRV <Der_tatuttaa>,DRV <Der_ton>,DRV <Der_tse>,DRV <Der_ttaa>,DRV <Der_ttain>,DRV <Der_u>,DRV <Der_vs>,INF <Inf1>,INF <Inf2>,INF <Inf3>,INF <Inf5>,MOOD <Cond>,MOOD <Eve>,MOOD <Imprt>,MOOD <Ind>,MOOD <Opt>,MOOD <Pot>,NEG <ConNeg>,NUM <Pl>,NUM <Sg>,PCP <AgPcp>,PCP <Pcp>,PCP <PrfPrc>,PCP <PrsPrc>,POS <A>,POS <Adp>,POS <Adv>,POS <C>,POS <Interj>,POS <N>,POS <Null>,POS <Num>,POS <Pcle>,POS <Pron>,POS <Punct>,POSS <PxPl1>,POSS <PxPl2>,POSS <PxPl3>,POSS <PxSg1>,POSS <PxSg2>,POSS <PxSg3>,POSS <Px3>,POS <V>,PRS <Pe4>,PRS <Pl1>,PRS <Pl2>,PRS <Pl3>,PRS <Sg1>,PRS <Sg2>,PRS <Sg3>,SUBCAT <Abbr>,SUBCAT <Acro>,SUBCAT <Approx>,SUBCAT <Card>,SUBCAT <CC>,SUBCAT <CS>,SUBCAT <Dem>,SUBCAT <Indef>,SUBCAT <Interr>,SUBCAT <Neg>,SUBCAT <Ord>,SUBCAT <Para>,SUBCAT <Pers>,SUBCAT <Pfx>,SUBCAT <Po>,SUBCAT <Pr>,SUBCAT <Prop>,SUBCAT <Qnt>,SUBCAT <Real>,SUBCAT <Recipr>,SUBCAT <Refl>,SUBCAT <Rel>,SUBCAT <Sent>,SUBCAT <Sfx>,TENSE <Prs>,TENSE <Prt>,VOICE <Act>,VOICE <Pass>,OTHER <Typo>,OTHER <Cllq>,POS <Trash>,POS <Symb>,POS <Foreign>,OTHER <UNK>";
+
+	public static final String POS = "POS";
+	public static final String SUBCAT = "SUBCAT";
+
+	private static final Map<String, String> TAG_CATEGORY = new HashMap<String, String>();
+	static {
+		for (String catTag : RAW_TAG_INFORMATION.split(",")) {
+			String[] parts = catTag.split(" ");
+			TAG_CATEGORY.put(parts[1].substring(1, parts[1].length() - 1), parts[0]);
+		}
+	}
+
+	// omorfi_pos.additionalReadingDefs
+	private static final Map<String, String> ADDITIONAL_READINGS = new HashMap<String, String>();
+	static {
+		ADDITIONAL_READINGS.put("esimerkiksi", "esimerkiksi<Adv>");
+		ADDITIONAL_READINGS.put("Esimerkiksi", "esimerkiksi<Adv><Up>");
+		ADDITIONAL_READINGS.put("mm.", "mm<Adv>");
+		ADDITIONAL_READINGS.put("Mm.", "mm<Adv><Up>");
+	}
+
+	// omorfi says 'olemme' and 'olette' are pl3
+	private static final Set<String> OLLA_PL1 = new HashSet<String>();
+	private static final Set<String> OLLA_PL2 = new HashSet<String>();
+	static {
+		for (String s : "olemme,olemmeko,olemmehan,olemmekaan,olemmekos,olemmepa,olemmekohan,olemmepas,olemmeks".split(",")) {
+			OLLA_PL1.add(s);
+		}
+		for (String s : "olette,oletteko,olettehan,olettekaan,olettekos,olettepa,olettekohan,olettepas,oletteks".split(",")) {
+			OLLA_PL2.add(s);
+		}
+	}
+
+	private static final Pattern AT_TAG = Pattern.compile("@[A-Za-z.]+@");
+	private static final Pattern TAG = Pattern.compile("<([^<>]+)>");
+	private static final Pattern CAP = Pattern.compile("<(Cap|cap|CAP)>");
+	private static final Pattern PX = Pattern.compile("<Px(Sg|Pl)3>");
+	private static final Pattern NUM = Pattern.compile("[0-9.,:\u2012\u2013\u2014\u2015\u2053~-]+");
+
+	private ResolveReadings resolver = null;
+
+	public OmorfiPos(ResolveReadings resolver) {
+		this.resolver = resolver;
+	}
+
+	/**
+	 * omorfi_pos.hun_possiblepos
+	 *
+	 * @param token
+	 * @param analyses
+	 *            the analyses of the token by the morphology transducer
+	 * @return the omorfi POS of the readings, e.g. N, V, Adv, C, Punct
+	 */
+	public Set<String> possiblePos(String token, Analysis[] analyses) {
+		Set<String> pos = new TreeSet<String>();
+		for (Map<String, String> taglist : taglists(token, analyses)) {
+			pos.add(taglist.get(POS));
+		}
+		return pos;
+	}
+
+	/**
+	 * @return the category -> tag map (analyze_taglist RET_DICT) of every
+	 *         reading the python scripts accept
+	 */
+	public List<Map<String, String>> taglists(String token, Analysis[] analyses) {
+		List<Map<String, String>> taglists = new ArrayList<Map<String, String>>();
+		for (String reading : lookup(token, analyses)) {
+			// broken readings are skipped like in hun_possiblepos
+			List<String> tags = analyzeReading(reading);
+			if (tags == null) {
+				continue;
+			}
+			Map<String, String> taglist = analyzeTaglist(tags);
+			if (taglist != null) {
+				taglists.add(taglist);
+			}
+		}
+		return taglists;
+	}
+
+	/**
+	 * omorfi_pos.omorfi_lookup, punctuation and digits bypass omorfi
+	 *
+	 * @return the postprocessed and resolved readings of the token
+	 */
+	public List<String> lookup(String token, Analysis[] analyses) {
+		List<String> readings = new ArrayList<String>();
+		if (isPunct(token)) {
+			readings.add(token + "<Punct>");
+			return readings;
+		}
+		if (isNum(token)) {
+			readings.add(token + "<Num>");
+			return readings;
+		}
+		for (Analysis analysis : analyses) {
+			readings.add(stripAtTags(analysis.getAnalysis()));
+		}
+		return resolver.resolve(postprocess(token, readings));
+	}
+
+	/*
+	 * omorfi_pos.omorfi_postprocess, adds readings and does things like
+	 * <CC> & <CS>
+	 */
+	private static List<String> postprocess(String token, List<String> raw) {
+		boolean up = isUp(token);
+		String lower = token.toLowerCase(Locale.ROOT);
+		List<String> readings = new ArrayList<String>(raw.size());
+		for (String r : raw) {
+			r = r.replace("Pcle", "Adv");
+			r = PX.matcher(r).replaceAll("<Px3>");
+			r = CAP.matcher(r).replaceAll("");
+			if (up) {
+				r = r + "<Up>";
+			}
+			if (OLLA_PL1.contains(lower)) {
+				r = r.replace("<Pl3>", "<Pl1>");
+			}
+			if (OLLA_PL2.contains(lower)) {
+				r = r.replace("<Pl3>", "<Pl2>");
+			}
+			readings.add(r);
+		}
+		TreeSet<String> res = new TreeSet<String>(readings);
+		for (String r : readings) {
+			res.add(r.replace("<CC>", "<CS>"));
+			res.add(r.replace("<CS>", "<CC>"));
+			if (ADDITIONAL_READINGS.containsKey(token)) {
+				res.add(ADDITIONAL_READINGS.get(token));
+			}
+		}
+		return new ArrayList<String>(res);
+	}
+
+	/**
+	 * omorfi_pos.analyze_reading
+	 *
+	 * @return the tags of the last compound member's last full derivation,
+	 *         null if the reading is broken
+	 */
+	public static List<String> analyzeReading(String reading) {
+		if (reading.endsWith("+?")) {
+			return null;
+		}
+		String compoundPart = reading;
+		if (!reading.startsWith("+<")) {
+			List<String> compoundParts = ResolveReadings.split(reading, "+");
+			compoundPart = compoundParts.get(compoundParts.size() - 1);
+		}
+		if (compoundPart.startsWith("#") && compoundPart.length() > 1 && !"#<Punct>".equals(compoundPart)) {
+			compoundPart = compoundPart.substring(1);
+		}
+		List<String> tags = new ArrayList<String>();
+		Matcher m = TAG.matcher(compoundPart);
+		while (m.find()) {
+			tags.add(m.group(1));
+		}
+		if (tags.isEmpty()) {
+			return null;
+		}
+		// back from the end to the POS, up to the derivation before it
+		boolean foundPos = false;
+		int start = 0;
+		for (int idx = tags.size() - 1; idx >= 0; idx--) {
+			String cat = TAG_CATEGORY.get(tags.get(idx));
+			if (cat == null) {
+				return null;
+			}
+			if (POS.equals(cat)) {
+				if (foundPos) {
+					// two POS tags in one reading, not masked by a Deriv
+					return null;
+				}
+				foundPos = true;
+			} else if ("DRV".equals(cat) && foundPos) {
+				start = idx;
+				break;
+			}
+		}
+		return tags.subList(start, tags.size());
+	}
+
+	/**
+	 * omorfi_pos._raw_analyze_taglist
+	 *
+	 * @return category -> tag, null if the tags are not a valid reading
+	 */
+	public static Map<String, String> analyzeTaglist(List<String> tags) {
+		Map<String, List<String>> res = new LinkedHashMap<String, List<String>>();
+		for (String tag : tags) {
+			String cat = TAG_CATEGORY.get(tag);
+			if (cat == null) {
+				return null;
+			}
+			List<String> catTags = res.get(cat);
+			if (catTags == null) {
+				catTags = new ArrayList<String>();
+				res.put(cat, catTags);
+			}
+			catTags.add(tag);
+		}
+		Map<String, String> taglist = new HashMap<String, String>();
+		for (Map.Entry<String, List<String>> e : res.entrySet()) {
+			String cat = e.getKey();
+			List<String> catTags = e.getValue();
+			if (catTags.size() > 1) {
+				if (!"CLIT".equals(cat) && !"DRV".equals(cat) && !"OTHER".equals(cat)) {
+					return null;
+				}
+				StringBuilder sb = new StringBuilder();
+				for (String tag : catTags) {
+					if (sb.length() > 0) {
+						sb.append('+');
+					}
+					sb.append(tag);
+				}
+				taglist.put(cat, sb.toString());
+			} else {
+				taglist.put(cat, catTags.get(0));
+			}
+		}
+		if (!taglist.containsKey(POS)) {
+			String subcat = taglist.get(SUBCAT);
+			if ("CC".equals(subcat) || "CS".equals(subcat)) {
+				// Omorfi fails to generate POS for CC&CS
+				taglist.put(POS, "C");
+			} else if ("Para".equals(subcat)) {
+				taglist.put(POS, "Punct");
+			} else {
+				return null;
+			}
+		}
+		return taglist;
+	}
+
+	/*
+	 * The @....@ tags in the transducer output
+	 */
+	static String stripAtTags(String reading) {
+		return AT_TAG.matcher(reading).replaceAll("");
+	}
+
+	/**
+	 * omorfi_pos.is_punct, P* for punctuation, Sm for mathematical symbols, Sk
+	 * for modifier symbols
+	 */
+	public static boolean isPunct(String s) {
+		for (int i = 0; i < s.length(); i++) {
+			switch (Character.getType(s.charAt(i))) {
+			case Character.CONNECTOR_PUNCTUATION:
+			case Character.DASH_PUNCTUATION:
+			case Character.START_PUNCTUATION:
+			case Character.END_PUNCTUATION:
+			case Character.INITIAL_QUOTE_PUNCTUATION:
+			case Character.FINAL_QUOTE_PUNCTUATION:
+			case Character.OTHER_PUNCTUATION:
+			case Character.MATH_SYMBOL:
+			case Character.MODIFIER_SYMBOL:
+				break;
+			default:
+				return false;
+			}
+		}
+		return true;
+	}
+
+	/**
+	 * omorfi_pos.is_num, the unicode chars are various dashes
+	 */
+	public static boolean isNum(String s) {
+		return NUM.matcher(s).matches();
+	}
+
+	/*
+	 * omorfi_pos.is_up
+	 */
+	private static boolean isUp(String s) {
+		int type = Character.getType(s.charAt(0));
+		return type == Character.UPPERCASE_LETTER || type == Character.TITLECASE_LETTER;
+	}
+}
@@ -0,0 +1,341 @@
+package findep.ported;
+
+import java.util.ArrayList;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Set;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import net.sf.hfst.Analysis;
+import net.sf.hfst.HfstOptimizedLookupObj;
+
+/*
+ * Port of resolve_readings.py, drops the compound and derivation readings
+ * of a token that have the same analysis as a simpler reading.
+ *
+ * The generation transducer (model G) replaces the /omorfi?model=G calls of
+ * the python script.
+ */
+public class ResolveReadings {
+
+	private static final Pattern DER = Pattern.compile("(<Der_[A-Za-z]+>)");
+	private static final String DISCARDED = "???";
+
+	private HfstOptimizedLookupObj hfst_generation = null;
+
+	public ResolveReadings(HfstOptimizedLookupObj hfst_generation) {
+		this.hfst_generation = hfst_generation;
+	}
+
+	/**
+	 * resolve_readings.main
+	 *
+	 * @param readings
+	 *            sorted readings of one token
+	 * @return the readings that are left
+	 */
+	public List<String> resolve(List<String> readings) {
+		if (readings.size() > 1 && (isCompound(readings) || isDerivation(readings))) {
+			return handleCompoundsAndDerivations(readings);
+		}
+		return readings;
+	}
+
+	private static boolean isCompound(List<String> readings) {
+		for (String r : readings) {
+			if (r.contains("<Cmpnd>") || r.contains("+#")) {
+				return true;
+			}
+		}
+		return false;
+	}
+
+	private static boolean isDerivation(List<String> readings) {
+		for (String r : readings) {
+			if (r.contains("<Der_")) {
+				return true;
+			}
+		}
+		return false;
+	}
+
+	/*
+	 * Reading of the last compound member without the lemma
+	 */
+	private static String giveLastOne(String r) {
+		String ending = r;
+		if (r.contains("+")) {
+			List<String> columns = split(r, "+");
+			ending = columns.get(columns.size() - 1);
+		}
+		int index = ending.indexOf('<');
+		return index < 0 ? "" : ending.substring(index);
+	}
+
+	private static String derChanges(String r) {
+		if (r.contains("<Der_")) {
+			String der = null;
+			Matcher m = DER.matcher(r);
+			while (m.find()) {
+				der = m.group(1);
+			}
+			if (der != null) {
+				List<String> columns = split(r, der);
+				r = columns.get(columns.size() - 1);
+				if ("<Der_u>".equals(der)) {
+					// because of missing <N>-tag
+					r = "<N>" + r;
+				} else if ("<Der_llinen>".equals(der) || "<Der_ton>".equals(der)) {
+					// because of missing <Pos>-tag
+					r = r.replace("<A>", "<A><Pos>");
+				} else if ("<Der_tse>".equals(der)) {
+					r = r.replace("<Adv><Prl>", "<Adv>");
+				} else if ("<Der_ttain>".equals(der)) {
+					r = r.replace("<Adv><Dis>", "<Adv>");
+				} else if ("<Der_sti>".equals(der)) {
+					r = r.replace("<Adv><Comp>", "<Adv>");
+				}
+				r = r.replace("[DRV=UUS]", "");
+			}
+		}
+		r = r.replace("<cap>", "");
+		r = r.replace("<Cap>", "");
+		r = r.replace("<CAP>", "");
+		return r;
+	}
+
+	/*
+	 * Lemma of a compound reading, like "raja jääkäri pataljoona"
+	 */
+	private static String giveCompoundLemma(String r) {
+		StringBuilder lemma = new StringBuilder();
+		for (String col : split(r, "+")) {
+			lemma.append(lemmaOf(col));
+			lemma.append(' ');
+		}
+		return lemma.toString().trim().replace("#", "");
+	}
+
+	private static String lemmaOf(String r) {
+		int index = r.indexOf('<');
+		return index < 0 ? r : r.substring(0, index);
+	}
+
+	private static boolean derVsDer(String r1, String r2) {
+		List<String> m1 = findDers(r1);
+		List<String> m2 = findDers(r2);
+		if (m1.size() > m2.size()) {
+			List<String> columns = split(r1, m1.get(0));
+			if (columns.size() != 2) {
+				return false;
+			}
+			return columns.get(1).equals(giveLastOne(r2));
+		} else if (r2.length() > r1.length()) {
+			// the script compares the lengths of the readings here
+			List<String> columns = split(r2, m2.get(0));
+			if (columns.size() != 2) {
+				return false;
+			}
+			return columns.get(1).equals(giveLastOne(r1));
+		}
+		return lemmaOf(r1).toLowerCase(Locale.ROOT).equals(lemmaOf(r2).toLowerCase(Locale.ROOT));
+	}
+
+	private static List<String> findDers(String r) {
+		List<String> ders = new ArrayList<String>();
+		Matcher m = DER.matcher(r);
+		while (m.find()) {
+			ders.add(m.group(1));
+		}
+		return ders;
+	}
+
+	/*
+	 * True if the readings of the last members are the same, lemmas skipped
+	 */
+	private static boolean isSameAnalysis(String r1, String r2) {
+		return derChanges(giveLastOne(r1)).equals(derChanges(giveLastOne(r2)));
+	}
+
+	/*
+	 * Splits compounds to parts and compares those, true if all parts match
+	 */
+	private boolean splitCompounds(String r1, String r2) {
+		List<String> parts1 = split(r1, "+");
+		List<String> parts2 = split(r2, "+");
+		if (parts1.size() != parts2.size()) {
+			return false;
+		}
+		for (int i = 0; i < parts1.size(); i++) {
+			String part1 = parts1.get(i).replace("#", "").replace("<Cmpnd>", "");
+			String part2 = parts2.get(i).replace("#", "").replace("<Cmpnd>", "");
+			boolean tags1 = part1.contains("<");
+			boolean tags2 = part2.contains("<");
+			if (tags1 && tags2) {
+				if (part1.contains("<Der_") || part2.contains("<Der_")) {
+					if (!isSameLemma(part1, part2) || !isSameAnalysis(part1, part2)) {
+						return false;
+					}
+				} else if (!isSameLemma(part1, part2)) {
+					return false;
+				}
+			} else if (!tags1 && !tags2) {
+				if (!part1.equals(part2)) {
+					return false;
+				}
+			} else if (tags1) {
+				if (!lemmaOf(part1).equals(part2) && !generates(part1, part2)) {
+					return false;
+				}
+			} else {
+				if (!lemmaOf(part2).equals(part1) && !generates(part2, part1)) {
+					return false;
+				}
+			}
+		}
+		return true;
+	}
+
+	/*
+	 * True if omorfi generates the form from the reading
+	 */
+	private boolean generates(String reading, String form) {
+		if (hfst_generation == null) {
+			throw new IllegalStateException("Omorfi is not loaded correctly, cannot do lookup");
+		}
+		for (Analysis generated : hfst_generation.analyze(reading)) {
+			String f = OmorfiPos.stripAtTags(generated.getAnalysis()).replace("-", "").replace("\u2010", "");
+			if (f.equals(form)) {
+				return true;
+			}
+		}
+		return false;
+	}
+
+	/*
+	 * Compound lemmas have to be the same or generated by omorfi, a
+	 * derivation and a normal reading always have the same lemma
+	 */
+	private boolean isSameLemma(String r1, String r2) {
+		boolean compound1 = r1.contains("Cmpnd") || r1.contains("+#");
+		boolean compound2 = r2.contains("Cmpnd") || r2.contains("+#");
+		if (compound1) {
+			if (compound2) {
+				if (r1.contains("Der_") || r2.contains("Der_")) {
+					return splitCompounds(r1, r2);
+				}
+				if (giveCompoundLemma(r1).toLowerCase(Locale.ROOT).equals(giveCompoundLemma(r2).toLowerCase(Locale.ROOT))) {
+					return true;
+				}
+				return splitCompounds(r1, r2);
+			}
+			return isSameCompoundLemma(r1, r2);
+		} else if (compound2) {
+			return isSameCompoundLemma(r2, r1);
+		} else if (r1.contains("Der_") || r2.contains("Der_")) {
+			if (r1.contains("Der_") && r2.contains("Der_")) {
+				return derVsDer(r1, r2);
+			}
+			return true;
+		}
+		return lemmaOf(r1).toLowerCase(Locale.ROOT).equals(lemmaOf(r2).toLowerCase(Locale.ROOT));
+	}
+
+	/*
+	 * isoisä vs. iso|isä, omorfi drops the "-" between the parts
+	 */
+	private static boolean isSameCompoundLemma(String compoundReading, String reading) {
+		String compound = giveCompoundLemma(compoundReading).toLowerCase(Locale.ROOT);
+		String lemma = lemmaOf(reading).toLowerCase(Locale.ROOT);
+		return compound.replaceAll("\\s", "").equals(lemma) || compound.replaceAll("\\s", "-").equals(lemma);
+	}
+
+	/*
+	 * The better reading has less Der_-tags or, if the same number, more
+	 * #-tags. Null if the readings are not the same.
+	 */
+	private String compare(String r1, String r2) {
+		if (!isSameLemma(r1, r2) || !isSameAnalysis(r1, r2)) {
+			return null;
+		}
+		int compounds1 = count(r1, "+");
+		int compounds2 = count(r2, "+");
+		int ders1 = count(r1, "Der_");
+		int ders2 = count(r2, "Der_");
+		if (compounds1 < compounds2) {
+			return r1;
+		} else if (compounds2 < compounds1) {
+			return r2;
+		} else if (ders1 < ders2) {
+			return r1;
+		} else if (ders2 < ders1) {
+			return r2;
+		}
+		return count(r2, "#") > count(r1, "#") ? r2 : r1;
+	}
+
+	/*
+	 * Compares the readings one by one and drops the worse of the same
+	 */
+	private List<String> handleCompoundsAndDerivations(List<String> in) {
+		List<String> readings = new ArrayList<String>(in);
+		for (int index = 0; index < readings.size(); index++) {
+			// some adj-der-cmpnd:s have ++# instead of +#
+			String r = readings.get(index).replace("++#", "+#");
+			if (r.startsWith(DISCARDED)) {
+				r = r.replace(DISCARDED, "");
+			}
+			for (int i = index + 1; i < readings.size(); i++) {
+				if (readings.get(index).startsWith(DISCARDED) && readings.get(i).startsWith(DISCARDED)) {
+					continue;
+				}
+				String other = readings.get(i).replace("++#", "+#").replace(DISCARDED, "");
+				String better = compare(r, other);
+				if (better == null) {
+					continue;
+				}
+				if (better.equals(r)) {
+					if (!readings.get(i).startsWith(DISCARDED)) {
+						readings.set(i, DISCARDED + readings.get(i));
+					}
+				} else if (!readings.get(index).startsWith(DISCARDED)) {
+					readings.set(index, DISCARDED + readings.get(index));
+				}
+			}
+		}
+		Set<String> left = new LinkedHashSet<String>();
+		for (String r : readings) {
+			if (!r.startsWith(DISCARDED)) {
+				left.add(r);
+			}
+		}
+		if (left.isEmpty()) {
+			throw new IllegalStateException("Every reading discarded: " + in);
+		}
+		return new ArrayList<String>(left);
+	}
+
+	private static int count(String s, String sub) {
+		int count = 0;
+		for (int i = s.indexOf(sub); i >= 0; i = s.indexOf(sub, i + sub.length())) {
+			count++;
+		}
+		return count;
+	}
+
+	/*
+	 * String.split of python, keeps the empty parts
+	 */
+	static List<String> split(String s, String separator) {
+		List<String> parts = new ArrayList<String>();
+		int start = 0;
+		for (int i = s.indexOf(separator); i >= 0; i = s.indexOf(separator, start)) {
+			parts.add(s.substring(start, i));
+			start = i + separator.length();
+		}
+		parts.add(s.substring(start));
+		return parts;
+	}
+}
@@ -9,4 +9,5 @@ public interface Tag {
 	public Set sortUnique(String input);
 	public void marmot(String details);
 	public String quickParse(String input);
+	public String quickParse(String input, boolean more);
 }
@@ -11,6 +11,7 @@ import org.apache.commons.math.util.MultidimensionalCounter.Iterator;
 
 import net.sf.hfst.HfstOptimizedLookupObj;
 
+import marmot.core.Sequence;
 import marmot.core.Tagger;
 import marmot.morph.MorphTagger;
 import marmot.morph.Sentence;
@@ -200,9 +201,31 @@ input_tagged_1.conll09
 	
 	@Override
 	public String quickParse(String input) {
+		return quickParse(input, false);
+	}
 
-			StringBuffer sb = new StringBuffer();
+	/**
+	 * Parses a part of a longer input, more tells whether more sentences
+	 * follow the part, i.e. whether the part ends with a sentence break.
+	 */
+	@Override
+	public String quickParse(String input, boolean more) {
+
+			// tag all sentences of the input together, the forms are indexed once;
+			// tagger is shared by the servlet workers, it keeps its scratch per thread
+			List<Sequence> sentences = new ArrayList<Sequence>();
 			StringTokenizer st = new StringTokenizer(input,"\n",false);
+			while(st.hasMoreTokens()) {
+				String lause = st.nextToken();
+				if(!(lause != null && ("".equals(lause.trim()) || "#".equals(lause.substring(0, 1))))) {
+					sentences.add(toSentence(lause));
+				}
+			}
+			List<List<List<String>>> sentence_tags = tagger.tagBatch(sentences);
+			int sentence_index = 0;
+
+			StringBuffer sb = new StringBuffer();
+			st = new StringTokenizer(input,"\n",false);
 
 			while(st.hasMoreTokens()) {
 //				lineNumber++;
@@ -217,15 +240,10 @@ input_tagged_1.conll09
 					sb.append(lause+"\n");
 				} else {
 					
-					List<Word> tokens = new ArrayList<Word>();
-					StringTokenizer wordt = new StringTokenizer(lause," ",false);
-					while(wordt.hasMoreTokens()) {
-						tokens.add(new Word(""+wordt.nextToken()));
-					}
-					Sentence sentence  = new Sentence(tokens);
+					Sentence sentence = (Sentence) sentences.get(sentence_index);
 
 //					long start = System.currentTimeMillis();
-					List<List<String>> tags = tagger.tag(sentence);
+					List<List<String>> tags = sentence_tags.get(sentence_index++);
 					//List<List<String>> tags = safeTag(sentence); 
 						
 //					long end = System.currentTimeMillis();
@@ -265,13 +283,22 @@ input_tagged_1.conll09
 					}
 				}
 				// It seems there is an empty line between clauses
-				if(st.hasMoreTokens() && (".".equals(LEMMA)||"!".equals(LEMMA)||"?".equals(LEMMA)))
+				if((st.hasMoreTokens() || more) && (".".equals(LEMMA)||"!".equals(LEMMA)||"?".equals(LEMMA)))
 					sb.append("\n");
 			}
 			return sb.toString();
 
 	}
 		
+	private static Sentence toSentence(String lause) {
+		List<Word> tokens = new ArrayList<Word>();
+		StringTokenizer wordt = new StringTokenizer(lause," ",false);
+		while(wordt.hasMoreTokens()) {
+			tokens.add(new Word(""+wordt.nextToken()));
+		}
+		return new Sentence(tokens);
+	}
+		
 	public Map prepareKeys(String morphoString) {
 		
 		// loop all lines
@@ -0,0 +1,154 @@
+package findep.utils;
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+
+import findep.is2.Parser;
+import is2.data.QuantizedWeights;
+import is2.parser.Parameters;
+import is2.parser.ParametersFloat;
+import is2.parser.ParametersMapped;
+import is2.util.Evaluator.Results;
+import marmot.morph.EvalResult;
+import marmot.morph.MorphTagger;
+import marmot.morph.MorphWeightVector;
+import marmot.morph.cmd.Evaluator;
+import marmot.util.FileUtils;
+import marmot.util.QuantizedArray;
+
+/**
+ * Compares the accuracy of the parser and the tagger with full precision
+ * weights to float16 and int8 quantized weights. The weights are quantized in
+ * memory as ModelExporter would quantize them.
+ *
+ * Usage: QuantizationEvaluator [-parser <parser.model> <gold.conll09>]
+ * [-tagger <marmot.model> <test-file>] [-block <block-size>]
+ *
+ * The test file of the tagger is given as for marmot.morph.cmd.Evaluator,
+ * e.g. form-index=1,tag-index=4,morph-index=6,test.conll09
+ */
+public class QuantizationEvaluator {
+
+	private static final int[] PARSER_TYPES = { QuantizedWeights.FLOAT16, QuantizedWeights.INT8 };
+	private static final int[] TAGGER_TYPES = { QuantizedArray.FLOAT16, QuantizedArray.INT8 };
+
+	public static void main(String[] args) throws Exception {
+
+		String parserModel = null, goldFile = null, taggerModel = null, testFile = null;
+		int blockSize = ParametersMapped.BLOCK_SIZE;
+
+		for (int i = 0; i < args.length; i++) {
+			if (args[i].equals("-parser") && i + 2 < args.length) {
+				parserModel = args[++i];
+				goldFile = args[++i];
+			} else if (args[i].equals("-tagger") && i + 2 < args.length) {
+				taggerModel = args[++i];
+				testFile = args[++i];
+			} else if (args[i].equals("-block") && i + 1 < args.length) {
+				blockSize = Integer.parseInt(args[++i]);
+			} else {
+				parserModel = taggerModel = null;
+				break;
+			}
+		}
+
+		if (parserModel == null && taggerModel == null) {
+			System.err.println("Usage: QuantizationEvaluator [-parser <parser.model> <gold.conll09>] "
+					+ "[-tagger <marmot.model> <test-file>] [-block <block-size>]");
+			System.exit(1);
+		}
+
+		StringBuilder report = new StringBuilder();
+		if (parserModel != null) {
+			evaluateParser(parserModel, goldFile, blockSize, report);
+		}
+		if (taggerModel != null) {
+			evaluateTagger(taggerModel, testFile, blockSize, report);
+		}
+		System.out.print(report);
+	}
+
+	/**
+	 * Parses the gold file with the full and the quantized weights and
+	 * reports the LAS with is2.util.Evaluator
+	 */
+	static void evaluateParser(String model, String gold, int blockSize, StringBuilder report) throws Exception {
+
+		Parser parser = new Parser(model);
+		parser.loadModel();
+
+		Parameters full = parser.params;
+		if (!(full instanceof ParametersFloat)) {
+			System.err.println("The parser model has no float32 weights: " + model);
+			System.exit(1);
+		}
+		float[] weights = ((ParametersFloat) full).parameters;
+
+		File predicted = File.createTempFile("quantization", ".conll09");
+		predicted.deleteOnExit();
+
+		Results base = parse(parser, gold, predicted);
+		report.append(String.format("parser  %-8s LAS %6.2f UAS %6.2f  %8.1f MB\n", "float32", base.las, base.ula,
+				weights.length * 4L / (1024.0 * 1024.0)));
+
+		try {
+			for (int type : PARSER_TYPES) {
+				parser.params = ParametersMapped.quantize(weights, type, blockSize);
+				Results r = parse(parser, gold, predicted);
+				report.append(String.format("parser  %-8s LAS %6.2f UAS %6.2f  %8.1f MB  LAS delta %+.2f\n",
+						QuantizedWeights.NAMES[type], r.las, r.ula,
+						QuantizedWeights.valueBytes(type, weights.length) / (1024.0 * 1024.0), r.las - base.las));
+			}
+		} finally {
+			parser.params = full;
+		}
+	}
+
+	private static Results parse(Parser parser, String gold, File predicted) throws Exception {
+		BufferedReader reader = new BufferedReader(new InputStreamReader(new FileInputStream(gold), "UTF-8"));
+		BufferedWriter writer = new BufferedWriter(new OutputStreamWriter(new FileOutputStream(predicted), "UTF-8"));
+		try {
+			parser.parse(reader, writer);
+		} finally {
+			reader.close();
+			writer.close();
+		}
+		return is2.util.Evaluator.evaluate(gold, predicted.getPath(), false);
+	}
+
+	/**
+	 * Tags the test file with the full and the quantized weights and reports
+	 * the tag accuracies with marmot.morph.cmd.Evaluator
+	 */
+	static void evaluateTagger(String model, String testFile, int blockSize, StringBuilder report) {
+
+		MorphTagger tagger = FileUtils.loadFromFile(model);
+		MorphWeightVector vector = (MorphWeightVector) tagger.getWeightVector();
+		double[] weights = vector.getWeights();
+
+		Evaluator evaluator = new Evaluator(null, false);
+
+		EvalResult base = evaluator.eval(tagger, testFile, -1, false);
+		report.append(String.format("tagger  %-8s PoS %6.2f Morph %6.2f  %8.1f MB\n", "float64", base.getPosAccuracy(),
+				base.getMorphAccuracy(), weights.length * 8L / (1024.0 * 1024.0)));
+
+		try {
+			for (int type : TAGGER_TYPES) {
+				vector.setWeights(weights);
+				vector.quantize(type, blockSize);
+				EvalResult r = evaluator.eval(tagger, testFile, -1, false);
+				report.append(String.format("tagger  %-8s PoS %6.2f Morph %6.2f  %8.1f MB  PoS delta %+.2f Morph delta %+.2f\n",
+						QuantizedArray.getName(type), r.getPosAccuracy(), r.getMorphAccuracy(),
+						weights.length * (type == QuantizedArray.FLOAT16 ? 2L : 1L) / (1024.0 * 1024.0),
+						r.getPosAccuracy() - base.getPosAccuracy(), r.getMorphAccuracy() - base.getMorphAccuracy()));
+			}
+		} finally {
+			vector.setWeights(weights);
+		}
+	}
+}
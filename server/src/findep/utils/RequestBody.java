@@ -0,0 +1,175 @@
+package findep.utils;
+
+import java.io.BufferedReader;
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.nio.charset.StandardCharsets;
+
+import javax.servlet.http.HttpServlet;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+
+/*
+ * Reads request bodies up to the maxBodySize init parameter of the servlet
+ * (bytes). The limit is checked on the bytes read, so it also holds for
+ * chunked bodies without a Content-Length. A larger body is answered with
+ * 413.
+ */
+public class RequestBody {
+
+	// servlet init parameter
+	public final static String MAX_BODY_PARAMETER = "maxBodySize";
+
+	/*
+	 * The body is longer than the limit.
+	 */
+	public static class TooLargeException extends IOException {
+		private static final long serialVersionUID = 1L;
+
+		public TooLargeException(long maxBodySize) {
+			super("Request body larger than " + maxBodySize + " bytes.");
+		}
+	}
+
+	/**
+	 * @return the maxBodySize init parameter of the servlet, negative for no
+	 *         limit
+	 */
+	public static long getMaxBodySize(HttpServlet servlet) {
+		String value = servlet.getInitParameter(MAX_BODY_PARAMETER);
+		if (value == null || value.trim().isEmpty()) {
+			return -1;
+		}
+		return Long.parseLong(value.trim());
+	}
+
+	/**
+	 * @return true if the Content-Length of the request is larger than the
+	 *         limit
+	 */
+	public static boolean isTooLarge(HttpServletRequest req, long maxBodySize) {
+		if (maxBodySize < 0) {
+			return false;
+		}
+		String length = req.getHeader("Content-Length");
+		try {
+			return length != null && Long.parseLong(length.trim()) > maxBodySize;
+		} catch (NumberFormatException e) {
+			return false;
+		}
+	}
+
+	/**
+	 * Reader of the body in the character encoding of the request (UTF-8 if
+	 * none is set).
+	 *
+	 * @throws TooLargeException
+	 *             at once if the Content-Length is larger than the limit,
+	 *             otherwise when the reader gets past the limit
+	 */
+	public static BufferedReader getReader(HttpServletRequest req, long maxBodySize) throws IOException {
+		if (maxBodySize < 0) {
+			return req.getReader();
+		}
+		if (isTooLarge(req, maxBodySize)) {
+			throw new TooLargeException(maxBodySize);
+		}
+		String encoding = req.getCharacterEncoding();
+		LimitedInputStream in = new LimitedInputStream(req.getInputStream(), maxBodySize);
+		return new BodyReader(encoding != null ? new InputStreamReader(in, encoding)
+				: new InputStreamReader(in, StandardCharsets.UTF_8), in);
+	}
+
+	/**
+	 * For readers that swallow their exceptions: throws again if the reader
+	 * of getReader has got past the limit.
+	 */
+	public static void check(BufferedReader reader) throws TooLargeException {
+		if (reader instanceof BodyReader) {
+			((BodyReader) reader).in.check();
+		}
+	}
+
+	/**
+	 * Answers 413 if nothing has been sent yet, output buffered so far is
+	 * dropped.
+	 *
+	 * @return false if the response is committed already
+	 */
+	public static boolean reject(HttpServletResponse resp, TooLargeException e) throws IOException {
+		if (resp.isCommitted()) {
+			return false;
+		}
+		resp.reset();
+		resp.setStatus(HttpServletResponse.SC_REQUEST_ENTITY_TOO_LARGE);
+		resp.setContentType("text/plain");
+		resp.getWriter().println(e.getMessage());
+		return true;
+	}
+
+	private static class BodyReader extends BufferedReader {
+		final LimitedInputStream in;
+
+		BodyReader(InputStreamReader reader, LimitedInputStream in) {
+			super(reader);
+			this.in = in;
+		}
+	}
+
+	private static class LimitedInputStream extends FilterInputStream {
+		private final long maxBodySize;
+		private long count = 0;
+
+		LimitedInputStream(InputStream in, long maxBodySize) {
+			super(in);
+			this.maxBodySize = maxBodySize;
+		}
+
+		@Override
+		public int read() throws IOException {
+			check();
+			int b = super.read();
+			if (b >= 0) {
+				count(1);
+			}
+			return b;
+		}
+
+		@Override
+		public int read(byte[] b, int off, int len) throws IOException {
+			check();
+			// one byte more than allowed is enough to tell
+			int n = super.read(b, off, (int) Math.min(len, maxBodySize - count + 1));
+			if (n > 0) {
+				count(n);
+			}
+			return n;
+		}
+
+		@Override
+		public long skip(long n) throws IOException {
+			check();
+			long skipped = super.skip(Math.min(n, maxBodySize - count + 1));
+			count(skipped);
+			return skipped;
+		}
+
+		@Override
+		public boolean markSupported() {
+			return false;
+		}
+
+		private void count(long n) throws TooLargeException {
+			count += n;
+			check();
+		}
+
+		void check() throws TooLargeException {
+			if (count > maxBodySize) {
+				throw new TooLargeException(maxBodySize);
+			}
+		}
+	}
+}
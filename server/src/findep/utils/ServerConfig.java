@@ -0,0 +1,136 @@
+package findep.utils;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.Reader;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Properties;
+
+import javax.servlet.http.HttpServlet;
+
+/*
+ * Configuration of the servlet server.
+ *
+ * Each setting is looked up, later ones win, in
+ * 1. the defaults given to the getters
+ * 2. a properties file: -config <file> on the command line, the
+ *    FINDEP_CONFIG environment variable or findep.properties in the
+ *    working directory
+ * 3. the environment: FINDEP_ + key in upper case with '.' as '_',
+ *    e.g. FINDEP_THREADS_MAX for threads.max
+ * 4. the command line: key=value
+ */
+public class ServerConfig {
+
+	public final static String DEFAULT_FILE = "findep.properties";
+	public final static String FILE_ENVIRONMENT = "FINDEP_CONFIG";
+	public final static String ENVIRONMENT_PREFIX = "FINDEP_";
+
+	// servlet init parameters of the model paths
+	public final static String MODEL_SENTENCE = "model.sentence";
+	public final static String MODEL_TOKEN = "model.token";
+	public final static String MODEL_MORPHOLOGY = "model.morphology";
+	public final static String MODEL_GENERATION = "model.generation";
+	public final static String MODEL_MARMOT = "model.marmot";
+	public final static String MODEL_PARSER = "model.parser";
+
+	// servlet init parameter, sentences of this length and longer are parsed
+	// with all cores
+	public final static String PARSER_PARALLEL_LENGTH = "parser.parallelLength";
+
+	private final Properties properties = new Properties();
+	private final Map<String, String> environment;
+	// keys set on the command line
+	private final List<String> overridden = new ArrayList<String>();
+
+	public ServerConfig(String[] args, Map<String, String> environment) throws IOException {
+		this.environment = environment;
+
+		String file = environment.get(FILE_ENVIRONMENT);
+		List<String> settings = new ArrayList<String>();
+		for (int i = 0; i < args.length; i++) {
+			if ("-config".equals(args[i]) && i + 1 < args.length) {
+				file = args[++i];
+			} else if (args[i].indexOf('=') > 0) {
+				settings.add(args[i]);
+			} else {
+				throw new IllegalArgumentException("Unknown argument: " + args[i]
+						+ ", expected -config <file> or key=value");
+			}
+		}
+
+		if (file == null && new File(DEFAULT_FILE).exists()) {
+			file = DEFAULT_FILE;
+		}
+		if (file != null) {
+			Reader reader = new InputStreamReader(new FileInputStream(file), StandardCharsets.UTF_8);
+			try {
+				properties.load(reader);
+			} finally {
+				reader.close();
+			}
+		}
+
+		// the environment is read by getString, the command line overrides it
+		for (String setting : settings) {
+			int index = setting.indexOf('=');
+			properties.setProperty(setting.substring(0, index).trim(), setting.substring(index + 1).trim());
+			overridden.add(setting.substring(0, index).trim());
+		}
+	}
+
+	public String getString(String key, String defaultValue) {
+		if (!overridden.contains(key)) {
+			String value = environment.get(ENVIRONMENT_PREFIX + key.toUpperCase().replace('.', '_'));
+			if (value != null) {
+				return value.trim();
+			}
+		}
+		String value = properties.getProperty(key);
+		if (value == null) {
+			return defaultValue;
+		}
+		return value.trim();
+	}
+
+	public int getInt(String key, int defaultValue) {
+		String value = getString(key, null);
+		if (value == null || value.isEmpty()) {
+			return defaultValue;
+		}
+		try {
+			return Integer.parseInt(value);
+		} catch (NumberFormatException e) {
+			throw new IllegalArgumentException("Not a number: " + key + "=" + value);
+		}
+	}
+
+	/**
+	 * @return the comma separated values of the key
+	 */
+	public List<String> getList(String key, String defaultValue) {
+		List<String> list = new ArrayList<String>();
+		for (String value : getString(key, defaultValue).split(",")) {
+			if (!value.trim().isEmpty()) {
+				list.add(value.trim());
+			}
+		}
+		return list;
+	}
+
+	/**
+	 * Reads a servlet init parameter, e.g. a model path.
+	 */
+	public static String getInitParameter(HttpServlet servlet, String name, String defaultValue) {
+		String value = servlet.getInitParameter(name);
+		if (value == null || value.trim().isEmpty()) {
+			return defaultValue;
+		}
+		return value.trim();
+	}
+}
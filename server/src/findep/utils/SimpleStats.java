@@ -4,11 +4,15 @@ import java.io.PrintWriter;
 import java.net.InetAddress;
 import java.util.ArrayList;
 import java.util.Date;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
 import java.util.concurrent.TimeUnit;
 
 import org.apache.commons.io.output.StringBuilderWriter;
 
+import net.sf.hfst.AnalysisCache;
+
 public class SimpleStats {
 
 	private static SimpleStats instance = new SimpleStats();
@@ -26,6 +30,9 @@ public class SimpleStats {
 	private List<Long> endTimesMsec = new ArrayList<Long>();
 	private List<Long> processedBytes = new ArrayList<Long>();
 
+	// hfst analysis caches by name
+	private Map<String, AnalysisCache> caches = new LinkedHashMap<String, AnalysisCache>();
+
 	private double K = 1000.0;
 	private double MILLION = 1000000.0;
 	private double BILLION = 1000000000.0;
@@ -39,7 +46,11 @@ public class SimpleStats {
 		return instance;
 	}
 
-	public void addRequest(long startNano, long endNano, long startMsec, long endMsec, long bytesProcessed,
+	public synchronized void addCache(String name, AnalysisCache cache) {
+		caches.put(name, cache);
+	}
+
+	public synchronized void addRequest(long startNano, long endNano, long startMsec, long endMsec, long bytesProcessed,
 			boolean errorHappened) {
 		numberOfRequestsHandled = numberOfRequestsHandled + 1;
 		if (errorHappened == true) {
@@ -55,7 +66,7 @@ public class SimpleStats {
 		}
 	}
 
-	public String getStatistics() {
+	public synchronized String getStatistics() {
 
 		StringBuilderWriter sbw = new StringBuilderWriter();
 		PrintWriter pw = new PrintWriter(sbw);
@@ -106,6 +117,15 @@ public class SimpleStats {
 			}
 		}
 
+		for (Map.Entry<String, AnalysisCache> e : caches.entrySet()) {
+			AnalysisCache cache = e.getValue();
+			long hits = cache.getHits();
+			long lookups = hits + cache.getMisses();
+			pw.println(String.format("  Cache %-17s: hits %d, misses %d, hit ratio %.02f%%, size %d/%d", e.getKey(),
+					hits, cache.getMisses(), lookups > 0 ? (100.0 * hits) / lookups : 0.0, cache.size(),
+					cache.getCapacity()));
+		}
+
 		pw.close();
 
 		return sbw.toString();
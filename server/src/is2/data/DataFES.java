@@ -2,37 +2,120 @@ package is2.data;
 
 
 
+/**
+ * The edge scores of a sentence.
+ *
+ * The scores are stored in flat arrays with computed strides, a buffer can be used for any sentence
+ * which is not longer than len, see is2.parser.DataFESPool.
+ *
+ * The second order scores of an edge h -> d have a block with a score for each m and each label
+ * of the edge, as the arrays per edge of the old layout. The blocks are laid out for each sentence
+ * by layout(int), the arrays sib and gra grow to the largest sentence. Each of them needs
+ * length * (the sum of edgeLabels) floats, that is length^3 times the average number of labels of an
+ * edge: about 32 MB at 100 tokens and 256 MB at 200 tokens with 4 labels per edge. Buffers grown for
+ * long sentences are not kept by the pool.
+ */
 final public class DataFES {
 
 		final public short typesLen;
 		final public int len;
-		
-		// first order features
-		final public float[][] pl;
-		
+
+		// the maximal number of labels of an edge
+		final public int labelsLen;
+
+		// first order features, index first(h,d)
+		final public float[] pl;
+
 		// remove !!!!
 //		final public float[][] highestLab;
-		
+
 		//final public FV[][][] label;
-		final public float[][][] lab;
+		// label features, index lab(h,d)+label
+		final public float[] lab;
+
 
-		
 		public FV fv;
-		
-		final public float[][][][] sib;
 
-		final public float[][][][] gra;
-	
-	
+		// second order features, index second(h,d,m)+label index of the edge
+		public float[] sib;
+
+		public float[] gra;
+
+		// number of labels of the edge h -> d, index first(h,d), set before layout(int)
+		final public int[] edgeLabels;
+
+		// start of the second order block of the edge h -> d, index first(h,d)
+		final private int[] offset;
+
+
 		public DataFES(int length, short types) {
+			this(length, types, types);
+		}
+
+		/**
+		 * @param length the maximal length of the sentences
+		 * @param types the number of edge labels
+		 * @param labels the maximal number of labels of an edge
+		 */
+		public DataFES(int length, short types, int labels) {
 			typesLen=types;
 			len =length;
-			
-			pl = new float[length][length];
-			lab = new float[length][length][types];
-			
-			sib = new float[length][length][length][];
-			gra = new float[length][length][length][];
-		
+			labelsLen = labels;
+
+			pl = new float[length*length];
+			lab = new float[length*length*types];
+
+			edgeLabels = new int[length*length];
+			offset = new int[length*length];
+
+			sib = new float[0];
+			gra = new float[0];
+		}
+
+		/**
+		 * Lays out the second order scores of a sentence from edgeLabels and grows sib and gra
+		 * if they are too small.
+		 *
+		 * @param length the length of the sentence
+		 */
+		public void layout(int length) {
+			long size = 0;
+			for (int h = 0; h < length; h++) {
+				for (int d = 0; d < length; d++) {
+					int e = first(h,d);
+					offset[e] = (int)Math.min(size, Integer.MAX_VALUE);
+					size += (long)length*edgeLabels[e];
+				}
+			}
+			// more than an array can hold, the arrays per edge of the old layout would not fit into the heap either 
+			if (size>Integer.MAX_VALUE-8) 
+				throw new OutOfMemoryError("sentence of "+length+" tokens needs "+size+" second order scores");
+
+			if (sib.length<size) {
+				sib = new float[(int)size];
+				gra = new float[(int)size];
+			}
+		}
+
+		/**
+		 * @return index of the first order score of the edge h -> d
+		 */
+		final public int first(int h, int d) {
+			return h*len+d;
+		}
+
+		/**
+		 * @return index of the score of the first label of the edge h -> d
+		 */
+		final public int lab(int h, int d) {
+			return (h*len+d)*typesLen;
+		}
+
+		/**
+		 * @return index of the score of the first label of the edge h -> d with the sibling or grandchild m
+		 */
+		final public int second(int h, int d, int m) {
+			int e = h*len+d;
+			return offset[e]+m*edgeLabels[e];
 		}
 }
@@ -1,7 +1,8 @@
 package is2.data;
 
+import java.nio.FloatBuffer;
 
-final public class F2SF extends IFV {
+public class F2SF extends IFV {
 
 	final private float[] parameters;
 	
@@ -13,13 +14,29 @@ final public class F2SF extends IFV {
 		parameters =p;
 	}
 	
+	/**
+	 * @param p the weights, read with absolute gets so that the buffer can be shared by the threads
+	 * @return the scorer of the weights of a mapped model
+	 */
+	public static F2SF mapped(FloatBuffer p) {
+		return new Mapped(p);
+	}
+
+	/**
+	 * @param p the quantized weights
+	 * @return the scorer of the quantized weights
+	 */
+	public static F2SF quantized(QuantizedWeights p) {
+		return new Quantized(p);
+	}
+
 	@Override
-	final  public void add(int i) {
+	public void add(int i) {
 		if (i>0) score += parameters[i];
 	}
 
 	  
-	final  public void add(int[] i) {
+	public void add(int[] i) {
 		for(int k=0;k<i.length;k++) {
 			if (i[k]>0) score += parameters[i[k]];
 		}
@@ -75,4 +92,84 @@ final public class F2SF extends IFV {
 	}
 	
 	
+	/**
+	 * Scores with the read-only weights of a mapped model
+	 */
+	private static final class Mapped extends F2SF {
+
+		final private FloatBuffer mapped;
+
+		Mapped(FloatBuffer p) {
+			super(null);
+			mapped =p;
+		}
+
+		@Override
+		public void add(int i) {
+			if (i>0) score += mapped.get(i);
+		}
+
+		@Override
+		public void add(int[] i) {
+			for(int k=0;k<i.length;k++) {
+				if (i[k]>0) score += mapped.get(i[k]);
+			}
+		}
+
+		@Override
+		public IFV clone() {
+			return new Mapped(mapped);
+		}
+
+		@Override
+		public void addRel(int i, float f) {
+			if (i>0) score += mapped.get(i)*f;
+		}
+
+		@Override
+		public int length() {
+			return mapped.capacity();
+		}
+	}
+
+	/**
+	 * Scores with read-only quantized weights
+	 */
+	private static final class Quantized extends F2SF {
+
+		final private QuantizedWeights quantized;
+
+		Quantized(QuantizedWeights p) {
+			super(null);
+			quantized =p;
+		}
+
+		@Override
+		public void add(int i) {
+			if (i>0) score += quantized.get(i);
+		}
+
+		@Override
+		public void add(int[] i) {
+			for(int k=0;k<i.length;k++) {
+				if (i[k]>0) score += quantized.get(i[k]);
+			}
+		}
+
+		@Override
+		public IFV clone() {
+			return new Quantized(quantized);
+		}
+
+		@Override
+		public void addRel(int i, float f) {
+			if (i>0) score += quantized.get(i)*f;
+		}
+
+		@Override
+		public int length() {
+			return quantized.size();
+		}
+	}
+
 }
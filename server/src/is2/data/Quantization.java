@@ -0,0 +1,105 @@
+package is2.data;
+
+/**
+ * The float16 and int8 conversions of QuantizedWeights, the same as the ones
+ * of the tagger weights (marmot.util.Quantization).
+ *
+ * A weight is stored as value * scale of its block, the scale is the largest
+ * absolute weight of the block (divided by 127 for int8), so the small
+ * weights of a block keep their precision relative to the large ones.
+ */
+final class Quantization {
+
+	static final int FLOAT16 = 1;
+	static final int INT8 = 2;
+
+	// float16 to float
+	private static final float[] HALF_TABLE_ = new float[1 << 16];
+	static {
+		for (int half = 0; half < HALF_TABLE_.length; half++) {
+			HALF_TABLE_[half] = halfToFloat(half);
+		}
+	}
+
+	private Quantization() {
+	}
+
+	/**
+	 * @param max
+	 *            the largest absolute weight of the block
+	 * @return the scale of the block
+	 */
+	static float scale(double max, int type) {
+		if (max == 0.0) {
+			return 1.f;
+		}
+		return (float) ((type == INT8) ? max / 127. : max);
+	}
+
+	/**
+	 * @param value
+	 *            the weight divided by the scale of its block
+	 */
+	static byte toInt8(double value) {
+		return (byte) Math.max(-127, Math.min(127, Math.round(value)));
+	}
+
+	/**
+	 * @return the float of a float16, looked up in a table
+	 */
+	static float fromHalf(short half) {
+		return HALF_TABLE_[half & 0xffff];
+	}
+
+	static float halfToFloat(int half) {
+		int sign = (half >>> 15) << 31;
+		int exp = (half >>> 10) & 0x1f;
+		int mant = half & 0x3ff;
+		if (exp == 0) {
+			// zero or subnormal
+			float value = mant * (1.f / (1 << 24));
+			return (sign == 0) ? value : -value;
+		}
+		if (exp == 0x1f) {
+			return Float.intBitsToFloat(sign | 0x7f800000 | (mant << 13));
+		}
+		return Float.intBitsToFloat(sign | ((exp + 112) << 23) | (mant << 13));
+	}
+
+	/**
+	 * @return the float16 of the value, rounded to nearest even
+	 */
+	static short floatToHalf(float value) {
+		int bits = Float.floatToIntBits(value);
+		int sign = (bits >>> 16) & 0x8000;
+		int exp = ((bits >>> 23) & 0xff) - 112;
+		int mant = bits & 0x7fffff;
+		if (((bits >>> 23) & 0xff) == 0xff) {
+			return (short) (sign | 0x7c00 | ((mant != 0) ? 0x200 : 0));
+		}
+		if (exp >= 0x1f) {
+			return (short) (sign | 0x7c00);
+		}
+		if (exp <= 0) {
+			// subnormal or zero
+			if (exp < -10) {
+				return (short) sign;
+			}
+			mant |= 0x800000;
+			int shift = 14 - exp;
+			int half = mant >>> shift;
+			int rest = mant & ((1 << shift) - 1);
+			int mid = 1 << (shift - 1);
+			if (rest > mid || (rest == mid && (half & 1) != 0)) {
+				half++;
+			}
+			return (short) (sign | half);
+		}
+		int half = (exp << 10) | (mant >>> 13);
+		int rest = mant & 0x1fff;
+		if (rest > 0x1000 || (rest == 0x1000 && (half & 1) != 0)) {
+			half++;
+		}
+		return (short) (sign | half);
+	}
+}
@@ -0,0 +1,130 @@
+package is2.data;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.FloatBuffer;
+import java.nio.ShortBuffer;
+
+
+/**
+ * Read-only weights stored as float16 or int8 values with a float scale per block of weights.
+ *
+ * A weight is value * scale of its block, the scale is the largest absolute weight of the block
+ * (divided by 127 for int8), so the small weights of a block keep their precision relative to
+ * the large ones. The values are read with absolute gets, the weights can be shared by the threads.
+ */
+final public class QuantizedWeights {
+
+	public static final int FLOAT32 = 0, FLOAT16 = Quantization.FLOAT16, INT8 = Quantization.INT8;
+
+	public static final String[] NAMES = {"float32","float16","int8"};
+
+	final private int type;
+	final private int size;
+	final private int blockShift;
+	final private FloatBuffer scales;
+	final private ByteBuffer bytes;
+	final private ShortBuffer halfs;
+
+	/**
+	 * @param type FLOAT16 or INT8
+	 * @param size the number of weights
+	 * @param blockShift log2 of the number of weights of a block
+	 * @param scales the scales of the blocks as little-endian floats
+	 * @param data the values, little-endian float16 or bytes
+	 */
+	public QuantizedWeights(int type, int size, int blockShift, ByteBuffer scales, ByteBuffer data) {
+		this.type = type;
+		this.size = size;
+		this.blockShift = blockShift;
+		this.scales = scales.slice().order(ByteOrder.LITTLE_ENDIAN).asFloatBuffer();
+		if (type==FLOAT16) {
+			halfs = data.slice().order(ByteOrder.LITTLE_ENDIAN).asShortBuffer();
+			bytes = null;
+		} else if (type==INT8) {
+			bytes = data.slice();
+			halfs = null;
+		} else throw new IllegalArgumentException("unknown weight type "+type);
+	}
+
+	/**
+	 * @return the weight i
+	 */
+	final public float get(int i) {
+		if (halfs!=null) return Quantization.fromHalf(halfs.get(i))*scales.get(i>>>blockShift);
+		return bytes.get(i)*scales.get(i>>>blockShift);
+	}
+
+	public int size() {
+		return size;
+	}
+
+	public int getType() {
+		return type;
+	}
+
+	public int getBlockShift() {
+		return blockShift;
+	}
+
+	/**
+	 * @return the number of blocks of weights
+	 */
+	public static int blocks(int size, int blockShift) {
+		return (int)(((long)size+(1<<blockShift)-1)>>>blockShift);
+	}
+
+	/**
+	 * @return the number of bytes of the values
+	 */
+	public static int valueBytes(int type, int size) {
+		return type==FLOAT16 ? 2*size : size;
+	}
+
+	/**
+	 * Computes the scales of the blocks
+	 * @return the scales as little-endian floats
+	 */
+	public static ByteBuffer scales(float[] p, int type, int blockShift) {
+		int blocks = blocks(p.length, blockShift);
+		ByteBuffer scales = ByteBuffer.allocate(4*blocks).order(ByteOrder.LITTLE_ENDIAN);
+		for(int b=0;b<blocks;b++) {
+			float max =0;
+			int end = Math.min(p.length, (b+1)<<blockShift);
+			for(int i=b<<blockShift;i<end;i++) max = Math.max(max, Math.abs(p[i]));
+			scales.putFloat(4*b, Quantization.scale(max, type));
+		}
+		return scales;
+	}
+
+	/**
+	 * Quantizes the weights
+	 * @param scales the scales computed by scales()
+	 * @return the values as little-endian float16 or bytes
+	 */
+	public static ByteBuffer values(float[] p, int type, int blockShift, ByteBuffer scales) {
+		ByteBuffer data = ByteBuffer.allocate(valueBytes(type, p.length)).order(ByteOrder.LITTLE_ENDIAN);
+		for(int i=0;i<p.length;i++) {
+			float v = p[i]/scales.getFloat(4*(i>>>blockShift));
+			if (type==FLOAT16) data.putShort(2*i, Quantization.floatToHalf(v));
+			else data.put(i, Quantization.toInt8(v));
+		}
+		return data;
+	}
+
+	/**
+	 * Quantizes the weights to heap buffers
+	 */
+	public static QuantizedWeights quantize(float[] p, int type, int blockShift) {
+		ByteBuffer scales = scales(p, type, blockShift);
+		return new QuantizedWeights(type, p.length, blockShift, scales, values(p, type, blockShift, scales));
+	}
+
+	/**
+	 * @return the type of the name float32, float16 or int8
+	 */
+	public static int type(String name) {
+		for(int t=0;t<NAMES.length;t++) if (NAMES[t].equals(name)) return t;
+		throw new IllegalArgumentException("unknown weight type "+name+", use float32, float16 or int8");
+	}
+}
@@ -0,0 +1,85 @@
+package is2.parser;
+
+import is2.data.Parse;
+
+/**
+ * The chart of the second order Eisner decoder in flat arrays.
+ *
+ * An open span s,t in direction dir has an entry for each label of the edge, a closed span
+ * s,t in direction dir an entry for each inner node m. The scores and back pointers are stored
+ * at computed offsets, the entries of the sub spans are found by their indexes. A chart can be
+ * reused for the sentences up to its length, the entries are written before they are read.
+ */
+final public class Chart {
+
+	// the maximal length of the sentences and the maximal number of labels of an edge
+	final int len, labels;
+
+	// open spans, index open(s,t,dir)+label index:
+	// score, split point r and the inner node of the closed spans s,r and r+1,t, -1 for none
+	final float[] op;
+	final short[] split, left, right;
+
+	// closed spans, index closed(s,t,dir)+m:
+	// score, label index of the open span and inner node of the closed span, -1 for none
+	final float[] cp;
+	final short[] open, inner;
+
+	/**
+	 * @param len the maximal length of the sentences
+	 * @param labels the maximal number of labels of an edge
+	 */
+	public Chart(int len, int labels) {
+		this.len = len;
+		this.labels = labels;
+
+		int size = len*len*2*labels;
+		op = new float[size];
+		split = new short[size];
+		left = new short[size];
+		right = new short[size];
+
+		size = len*len*2*len;
+		cp = new float[size];
+		open = new short[size];
+		inner = new short[size];
+	}
+
+	/**
+	 * @return index of the first label of the open span s,t
+	 */
+	final int open(int s, int t, int dir) {
+		return ((s*len+t)*2+dir)*labels;
+	}
+
+	/**
+	 * @return index of the closed span s,t with the inner node 0
+	 */
+	final int closed(int s, int t, int dir) {
+		return ((s*len+t)*2+dir)*len;
+	}
+
+	/**
+	 * Builds the dependency tree of the closed span
+	 * @param pos the part-of-speech tags of the sentence
+	 * @param parse the tree
+	 */
+	void create(short[] pos, int s, int t, int d, int m, Parse parse) {
+		int c = closed(s,t,d)+m;
+		if (open[c] != -1) createOpen(pos, d==1 ? s : m, d==1 ? m : t, d, open[c], parse);
+		if (inner[c] != -1) create(pos, d==1 ? m : s, d==1 ? t : m, d, inner[c], parse);
+	}
+
+	private void createOpen(short[] pos, int s, int t, int dir, int l, Parse parse) {
+		if (dir == 0) {
+			parse.heads[s] = (short)t;
+			parse.labels[s] = Edges.get(pos[t], pos[s])[l];
+		} else {
+			parse.heads[t] = (short)s;
+			parse.labels[t] = Edges.get(pos[s], pos[t])[l];
+		}
+		int o = open(s,t,dir)+l;
+		if (left[o] != -1) create(pos, s, split[o], 1, left[o], parse);
+		if (right[o] != -1) create(pos, split[o]+1, t, 0, right[o], parse);
+	}
+}
@@ -0,0 +1,75 @@
+package is2.parser;
+
+import is2.data.DataFES;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * A pool of score buffers for the sentences of the parser.
+ *
+ * The buffers are bucketed by the sentence length, a sentence gets a buffer of the length
+ * rounded up to the next multiple of BUCKET. The buffers of short sentences are kept and
+ * reused by the next sentences, so that the parser does not allocate the large score arrays
+ * for each sentence. Buffers of sentences longer than maxLength are not kept.
+ */
+final public class DataFESPool {
+
+	public static final int BUCKET = 8;
+
+	private final List<List<DataFES>> free;
+	private final int maxLength;
+	private final int perBucket;
+
+	/**
+	 * @param maxLength the length of the longest sentences which buffers are kept
+	 * @param perBucket the number of buffers that are kept for each bucket
+	 */
+	public DataFESPool(int maxLength, int perBucket) {
+		this.maxLength = bucket(maxLength);
+		this.perBucket = perBucket;
+		free = new ArrayList<List<DataFES>>(this.maxLength/BUCKET+1);
+		for(int i=0;i<=this.maxLength/BUCKET;i++) free.add(new ArrayList<DataFES>());
+	}
+
+	/**
+	 * @return the length rounded up to the next bucket
+	 */
+	public static int bucket(int length) {
+		return ((length+BUCKET-1)/BUCKET)*BUCKET;
+	}
+
+	/**
+	 * Get a buffer for a sentence
+	 * @param length the length of the sentence
+	 * @param types the number of edge labels
+	 * @return a buffer with at least the length of the sentence
+	 */
+	public DataFES get(int length, short types) {
+		int len = bucket(length);
+		int labels = Edges.maxLabels();
+		if (len<=maxLength) {
+			List<DataFES> list = free.get(len/BUCKET);
+			synchronized(list) {
+				while(list.size()>0) {
+					DataFES d = list.remove(list.size()-1);
+					// the edges might have changed since the buffer was created
+					if (d.typesLen==types && d.labelsLen>=labels) return d;
+				}
+			}
+		}
+		return new DataFES(len, types, labels);
+	}
+
+	/**
+	 * Returns a buffer to the pool, the buffer must not be used afterwards
+	 * @param d the buffer, might be null
+	 */
+	public void release(DataFES d) {
+		if (d==null || d.len>maxLength || d.len%BUCKET!=0) return;
+		List<DataFES> list = free.get(d.len/BUCKET);
+		synchronized(list) {
+			if (list.size()<perBucket) list.add(d);
+		}
+	}
+}
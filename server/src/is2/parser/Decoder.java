@@ -42,44 +42,70 @@ final public class Decoder   {
 	 * @throws InterruptedException
 	 */
 	public static Parse  decode(short[] pos,  DataFES x, boolean projective, boolean training) throws InterruptedException {
+		return decode(new ParseContext(null), pos, x, projective, training);
+	}
+
+	/**
+	 * Build a dependency tree based on the data, the work queues of the context are used 
+	 * so that several trees can be build at the same time
+	 * @param ctx the context of the parse
+	 * @param pos part-of-speech tags
+	 * @param x the data
+	 * @param projective projective or non-projective
+	 * @return a parse tree
+	 * @throws InterruptedException
+	 */
+	public static Parse  decode(ParseContext ctx, short[] pos,  DataFES x, boolean projective, boolean training) throws InterruptedException {
 
 		long ts = System.nanoTime();
 		
 		if (executerService.isShutdown()) executerService = java.util.concurrent.Executors.newCachedThreadPool();
 		final int n = pos.length;
 
-		final Open O[][][][] = new Open[n][n][2][];
-		final Closed C[][][][] = new Closed[n][n][2][];
+		final Chart c = ctx.getChart(n, x.labelsLen);
+
+		int threads = ctx.getThreads(n);
+		if (threads==1) {
 
-		ArrayList<ParallelDecoder> pe = new ArrayList<ParallelDecoder>(); 
+			// short sentence, the spans are build in this thread without the work queue
+			ParallelDecoder d = new ParallelDecoder(pos, x, c, n, null);
+			for (short k = 1; k < n; k++) 
+				for (short s = 0; s+k < n; s++) d.decode(s, (short)(s + k));
 
-		for(int i=0;i<Parser.THREADS ;i++)  pe.add(new ParallelDecoder(pos, x,  O, C, n));
+		} else {
+
+			ArrayList<ParallelDecoder> pe = new ArrayList<ParallelDecoder>(); 
+
+			for(int i=0;i<threads ;i++)  pe.add(new ParallelDecoder(pos, x, c, n, ctx.decodeSets));
 		
-		for (short k = 1; k < n; k++) {
+			for (short k = 1; k < n; k++) {
 
-			// provide the threads the data
-			for (short s = 0; s < n; s++) {
-				short t = (short) (s + k);
-				if (t >= n) break;
+				// provide the threads the data
+				for (short s = 0; s < n; s++) {
+					short t = (short) (s + k);
+					if (t >= n) break;
 				
-				ParallelDecoder.add(s,t);
-			}
+					ParallelDecoder.add(ctx.decodeSets, s,t);
+				}
 						
-			executerService.invokeAll(pe);
+				ctx.invokeAll(executerService, pe);
+			}
 		}
 		
 		float bestSpanScore = (-1.0F / 0.0F);
-		Closed bestSpan = null;
+		int bestSpan = -1;
+		final int root = c.closed(0, n - 1, 1);
 		for (int m = 1; m < n; m++)
-			if (C[0][n - 1][1][m].p > bestSpanScore) {
-				bestSpanScore = C[0][n - 1][1][m].p;
-				bestSpan = C[0][n - 1][1][m];
+			if (c.cp[root+m] > bestSpanScore) {
+				bestSpanScore = c.cp[root+m];
+				bestSpan = m;
 			}
 
 		// build the dependency tree from the chart 
 		Parse out= new Parse(pos.length);
 
-		bestSpan.create(out);
+		if (bestSpan != -1) c.create(pos, 0, n - 1, 1, bestSpan, out);
+		ctx.releaseChart(c);
 
 		out.heads[0]=-1;
 		out.labels[0]=0;
@@ -97,59 +123,18 @@ final public class Decoder   {
 
 	
 	/**
-	 * This is the parallel non-projective edge re-arranger
+	 * This is the non-projective edge re-arranger
 	 *  
 	 * @param pos part-of-speech tags
 	 * @param heads parent child relation 
 	 * @param labs edge labels 
 	 * @param x the data
-	 * @param edges the existing edges defined by part-of-speech tags 
-	 * @throws InterruptedException
+	 * @param training true if the parse is used for training
 	 */
-	public static void rearrange(short[] pos, short[] heads, short[] labs,  DataFES x, boolean training) throws InterruptedException {
-
-		int threads =(pos.length>Parser.THREADS)? Parser.THREADS: pos.length;
-
-		
-		
-		// wh  what to change, nPar - new parent, nType - new type
-		short wh = -1, nPar = -1,nType = -1;
-		ArrayList<ParallelRearrange> pe = new ArrayList<ParallelRearrange>(); 
-		
-		while(true) {
-			boolean[][] isChild = new boolean[heads.length][heads.length];
-			for(int i = 1, l1=1; i < heads.length; i++,l1=i)  
-				while((l1= heads[l1]) != -1) isChild[l1][i] = true;
-		
-			float max = Float.NEGATIVE_INFINITY;
-			float p = Extractor.encode3(pos, heads, labs, x);
-
-			pe.clear();
-			for(int i=0;i<threads;i++)  pe.add(new ParallelRearrange( isChild, pos,x,heads,labs));
-			
-			for(int ch = 1; ch < heads.length; ch++) {
-
-				for(short pa = 0; pa < heads.length; pa++) {
-					if(ch == pa || pa == heads[ch] || isChild[ch][pa]) continue;
-
-					ParallelRearrange.add(p,(short) ch, pa);
-				} 
-			}  
-			executerService.invokeAll(pe);
-			
-			for(ParallelRearrange.PA rp :ParallelRearrange.order) 
-				if(max < rp.max  ) {					
-						max = rp.max;  	wh = rp.wh; 
-						nPar = rp.nPar;  nType = rp.nType ;
-				}
-			ParallelRearrange.order.clear();
-			
-			if(max <= NON_PROJECTIVITY_THRESHOLD)	break; // bb: changed from 0.0
-
-			heads[wh] = nPar;
-			labs[wh] = nType;
+	public static void rearrange(short[] pos, short[] heads, short[] labs,  DataFES x, boolean training) {
 
-		}
+		// the score changes of the moves are computed locally, see IncrementalRearrange
+		new IncrementalRearrange(pos, heads, labs, x).rearrange(NON_PROJECTIVITY_THRESHOLD);
 	}
 
 	public static String getInfo() {
@@ -110,6 +110,17 @@ public final class Edges {
 		return edges[pos1][pos2];
 	}
 
+	/**
+	 * @return the maximal number of labels of an edge 
+	 */
+	final static public int maxLabels() {
+		int max = def.length;
+		if (edges==null) return max;
+		for(short[][] e1 : edges) 
+			for(short[] e2 : e1) if (e2!=null && max<e2.length) max = e2.length;
+		return max;
+	}
+
 	
 	/**
 	 * @param dis
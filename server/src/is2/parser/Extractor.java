@@ -659,8 +659,8 @@ final public class Extractor {
 			f.clear();
 			basic(pos, heads[i], i, f); 
 			
-			if (x.pl[heads[i]][i] != f.getScore()) {
-				DB.println("basic diff "+x.pl[heads[i]][i] +" fg "+f.getScore());
+			if (x.pl[x.first(heads[i],i)] != f.getScore()) {
+				DB.println("basic diff "+x.pl[x.first(heads[i],i)] +" fg "+f.getScore());
 			}
 			
 			int w1 = heads[i]<i?heads[i]:i;
@@ -672,8 +672,8 @@ final public class Extractor {
 			int c = firstm(is, ic, w1,  w2, label, cluster,svs);
 			for(int k=0;k<c;k++) dl1.map(f,svs[k]);
 			
-			if (x.lab[heads[i]][i][types[i]] != f.getScore()) {
-				DB.println("first diff "+x.lab[heads[i]][i][types[i]] +" fg "+f.getScore());
+			if (x.lab[x.lab(heads[i],i)+types[i]] != f.getScore()) {
+				DB.println("first diff "+x.lab[x.lab(heads[i],i)+types[i]] +" fg "+f.getScore());
 			}
 			
 			short[] labels = Edges.get(pos[heads[i]], pos[i]);
@@ -701,8 +701,8 @@ final public class Extractor {
 			c =second(is,ic,w1, w2,ch, lx, cluster, svs);
 			for(int k=0;k<c;k++) dl1.map(f,svs[k]);
 			
-			if (x.sib[heads[i]][i][ch==-1?heads[i]:ch][lid] != f.getScore()) {
-				DB.println("sib diff "+x.sib[heads[i]][i][ch==-1?i:ch][lid] +" fg "+f.getScore());
+			if (x.sib[x.second(heads[i],i,ch==-1?heads[i]:ch)+lid] != f.getScore()) {
+				DB.println("sib diff "+x.sib[x.second(heads[i],i,ch==-1?i:ch)+lid] +" fg "+f.getScore());
 			}
 			
 			f.clear();
@@ -712,8 +712,8 @@ final public class Extractor {
 			c =second(is, ic,w1,w2,cmi, lx, cluster,  svs);
 			for(int k=0;k<c;k++) dl1.map(f,svs[k]);
 			
-			if (x.gra[heads[i]][i][cmi==-1?i:cmi][lid] != f.getScore()   ) {
-				DB.println("gcm diff "+x.gra[heads[i]][i][cmi==-1?i:cmi][lid] +" fg "+f.getScore()+" cmi "+cmi+" i "+i+
+			if (x.gra[x.second(heads[i],i,cmi==-1?i:cmi)+lid] != f.getScore()   ) {
+				DB.println("gcm diff "+x.gra[x.second(heads[i],i,cmi==-1?i:cmi)+lid] +" fg "+f.getScore()+" cmi "+cmi+" i "+i+
 						" head "+heads[i]+" w1 "+w1+" w2 "+w2+" label "+lx+" "+((heads[i]<i?0:1) +  ((cmi < i)?0:2) ) );
 
 				System.out.println("w1 "+w1+" w2 "+w2+" cmi "+cmi+" label "+label+" ");
@@ -727,8 +727,8 @@ final public class Extractor {
 			c =second(is, ic, w1,w2,cmo, lx, cluster,  svs);
 			for(int k=0;k<c;k++) dl1.map(f,svs[k]);
 			
-			if (x.gra[heads[i]][i][cmo==-1?i:cmo][lid] != f.getScore()   ) {
-				DB.println("gcm diff "+x.gra[heads[i]][i][cmo==-1?i:cmo][lid] +" fg "+f.getScore()+" cmo "+cmo+" i "+i+
+			if (x.gra[x.second(heads[i],i,cmo==-1?i:cmo)+lid] != f.getScore()   ) {
+				DB.println("gcm diff "+x.gra[x.second(heads[i],i,cmo==-1?i:cmo)+lid] +" fg "+f.getScore()+" cmo "+cmo+" i "+i+
 						" head "+heads[i]+" w1 "+w1+" w2 "+w2+" label "+lx+" "+((heads[i]<i?0:1) +  ((cmi < i)?0:2) ) );
 
 				System.out.println("w1 "+w1+" w2 "+w2+" cmi "+cmi+" label "+label+" ");
@@ -810,8 +810,8 @@ final public class Extractor {
 
 	//		int dir= (heads[i] < i)? 0:1;
 
-			v += d2.pl[heads[i]][i];
-			v += d2.lab[heads[i]][i][types[i]];
+			v += d2.pl[d2.first(heads[i],i)];
+			v += d2.lab[d2.lab(heads[i],i)+types[i]];
 
 		//	boolean left = i<heads[i]; 
 			short[] labels = Edges.get(pos[heads[i]], pos[i]);
@@ -837,9 +837,9 @@ final public class Extractor {
 				if (cmi==-1) cmi=i;
 				if (cmo==-1) cmo=i;
 			}
-			v += d2.sib[heads[i]][i][ch][lid];
-			v += d2.gra[heads[i]][i][cmi][lid];
-			v += d2.gra[heads[i]][i][cmo][lid];
+			v += d2.sib[d2.second(heads[i],i,ch)+lid];
+			v += d2.gra[d2.second(heads[i],i,cmi)+lid];
+			v += d2.gra[d2.second(heads[i],i,cmo)+lid];
 		}
 		return v;
 	}
@@ -850,8 +850,8 @@ final public class Extractor {
 		for (int i = 1; i < heads.length; i++) {
 
 
-			scores[i]= d2.pl[heads[i]][i];
-			scores[i] += d2.lab[heads[i]][i][types[i]];
+			scores[i]= d2.pl[d2.first(heads[i],i)];
+			scores[i] += d2.lab[d2.lab(heads[i],i)+types[i]];
 
 			short[] labels = Edges.get(pos[heads[i]], pos[i]);
 			int lid=-1;
@@ -876,9 +876,9 @@ final public class Extractor {
 				if (cmi==-1) cmi=i;
 				if (cmo==-1) cmo=i;
 			}
-			scores[i] += d2.sib[heads[i]][i][ch][lid];
-			scores[i] += d2.gra[heads[i]][i][cmi][lid];
-			scores[i] += d2.gra[heads[i]][i][cmo][lid];
+			scores[i] += d2.sib[d2.second(heads[i],i,ch)+lid];
+			scores[i] += d2.gra[d2.second(heads[i],i,cmi)+lid];
+			scores[i] += d2.gra[d2.second(heads[i],i,cmo)+lid];
 		}
 		return v;
 	}
@@ -0,0 +1,251 @@
+package is2.parser;
+
+import is2.data.DataFES;
+
+/**
+ * The non-projective edge rearrangement of Decoder.rearrange with incremental scores.
+ *
+ * The score of the tree is the sum of the scores of its edges, see Extractor.encode3, and the
+ * score of the edge to d depends only on the head of d and on the children of the head and of d.
+ * When a child ch moves from its parent o to a new parent pa only the edges to ch, o, pa and to the
+ * children of o and pa change, the change of the tree score is the sum of the changes of their
+ * edge scores. The edge scores, the children and the ancestors of the tree are kept up to date
+ * between the moves instead of being rebuilt for each move.
+ */
+final public class IncrementalRearrange {
+
+	final private short[] pos;
+	final private short[] heads, labs;
+	final private DataFES x;
+	final private int n;
+
+	// score of the edge to each dependent, see Extractor.encode3
+	final private float[] scores;
+	private float score;
+
+	// children of each node in ascending order
+	final private short[][] children;
+	final private int[] childCount;
+
+	// isChild[a][d] is true if a is an ancestor of d
+	final private boolean[][] isChild;
+
+	// edges whose score changes with a move, marked with the move number
+	final private short[] affected;
+	final private int[] mark;
+	private int stamp;
+
+	/**
+	 * @param pos part-of-speech tags
+	 * @param heads parent child relation, changed by the rearrangement
+	 * @param labs edge labels, changed by the rearrangement
+	 * @param x the data
+	 */
+	public IncrementalRearrange(short[] pos, short[] heads, short[] labs, DataFES x) {
+		this.pos = pos;
+		this.heads = heads;
+		this.labs = labs;
+		this.x = x;
+		n = heads.length;
+
+		scores = new float[n];
+		children = new short[n][];
+		childCount = new int[n];
+		isChild = new boolean[n][n];
+		affected = new short[n];
+		mark = new int[n];
+
+		for (int i = 1; i < n; i++) childCount[heads[i]]++;
+		for (int i = 0; i < n; i++) children[i] = new short[childCount[i]];
+		for (int i = 0; i < n; i++) childCount[i] = 0;
+		for (short i = 1; i < n; i++) children[heads[i]][childCount[heads[i]]++] = i;
+
+		for(int i = 1, l1=1; i < n; i++,l1=i)
+			while((l1= heads[l1]) != -1) isChild[l1][i] = true;
+
+		for (int i = 1; i < n; i++) {
+			scores[i] = edge(i, labs[i]);
+			score += scores[i];
+		}
+	}
+
+	/**
+	 * Applies the best move as long as it improves the score of the tree by more than the threshold.
+	 *
+	 * @param threshold the minimal improvement of a move
+	 */
+	public void rearrange(float threshold) {
+
+		while (true) {
+
+			// wh  what to change, nPar - new parent, nType - new type
+			short wh = -1, nPar = -1, nType = -1;
+			float max = Float.NEGATIVE_INFINITY;
+
+			for (short ch = 1; ch < n; ch++) {
+				short oldP = heads[ch];
+
+				for (short pa = 0; pa < n; pa++) {
+					if (ch == pa || pa == oldP || isChild[ch][pa]) continue;
+
+					short[] labels = Edges.get(pos[pa], pos[ch]);
+					if (labels.length == 0) continue;
+
+					// the change of the edges except the one to ch
+					int count = collect(ch, oldP, pa);
+					float before = 0, after = 0;
+					for (int k = 0; k < count; k++) before += scores[affected[k]];
+
+					move(ch, oldP, pa);
+					for (int k = 0; k < count; k++) after += edge(affected[k], labs[affected[k]]);
+
+					for (int l = 0; l < labels.length; l++) {
+						float d = after - before + edge(ch, labels[l]) - scores[ch];
+
+						if (max < d) {
+							max = d; wh = ch; nPar = pa; nType = labels[l];
+						}
+					}
+					move(ch, pa, oldP);
+				}
+			}
+
+			if (max <= threshold) break;
+
+			apply(wh, nPar, nType);
+		}
+	}
+
+	/**
+	 * @return the score of the tree
+	 */
+	public float getScore() {
+		return score;
+	}
+
+	/**
+	 * Moves wh to the new parent and updates the scores and ancestors.
+	 */
+	private void apply(short wh, short nPar, short nType) {
+
+		short oldP = heads[wh];
+		int count = collect(wh, oldP, nPar);
+
+		// the subtree of wh looses the ancestors of wh and gets the ones of the new parent
+		for (int d = 0; d < n; d++) {
+			if (d != wh && !isChild[wh][d]) continue;
+			for (int a = oldP; a != -1; a = heads[a]) isChild[a][d] = false;
+			for (int a = nPar; a != -1; a = heads[a]) isChild[a][d] = true;
+		}
+
+		move(wh, oldP, nPar);
+		labs[wh] = nType;
+
+		affected[count++] = wh;
+		for (int k = 0; k < count; k++) {
+			short i = affected[k];
+			score -= scores[i];
+			scores[i] = edge(i, labs[i]);
+			score += scores[i];
+		}
+	}
+
+	/**
+	 * Collects the edges that change when ch moves from o to pa, except the edge to ch.
+	 *
+	 * @return the number of edges in affected
+	 */
+	private int collect(short ch, short o, short pa) {
+		stamp++;
+		mark[0] = stamp;
+		mark[ch] = stamp;
+
+		int count = 0;
+		count = add(o, count);
+		count = add(pa, count);
+		for (int k = 0; k < childCount[o]; k++) count = add(children[o][k], count);
+		for (int k = 0; k < childCount[pa]; k++) count = add(children[pa][k], count);
+		return count;
+	}
+
+	private int add(short i, int count) {
+		if (mark[i] == stamp) return count;
+		mark[i] = stamp;
+		affected[count] = i;
+		return count + 1;
+	}
+
+	/**
+	 * Changes the parent of ch from o to pa, the label is not changed.
+	 */
+	private void move(short ch, short o, short pa) {
+
+		// remove ch from the children of o
+		short[] cs = children[o];
+		int k = 0;
+		while (cs[k] != ch) k++;
+		System.arraycopy(cs, k + 1, cs, k, childCount[o] - k - 1);
+		childCount[o]--;
+
+		// insert ch into the children of pa
+		if (childCount[pa] == children[pa].length) {
+			short[] grown = new short[Math.max(4, children[pa].length * 2)];
+			System.arraycopy(children[pa], 0, grown, 0, childCount[pa]);
+			children[pa] = grown;
+		}
+		cs = children[pa];
+		k = childCount[pa];
+		while (k > 0 && cs[k - 1] > ch) {
+			cs[k] = cs[k - 1];
+			k--;
+		}
+		cs[k] = ch;
+		childCount[pa]++;
+
+		heads[ch] = pa;
+	}
+
+	/**
+	 * The score of the edge to i with the label type, computed as Extractor.encode3 does
+	 * from the current heads and children.
+	 */
+	private float edge(int i, short type) {
+
+		int h = heads[i];
+
+		float v = x.pl[x.first(h, i)];
+		v += x.lab[x.lab(h, i) + type];
+
+		short[] labels = Edges.get(pos[h], pos[i]);
+		int lid = -1;
+		for (int k = 0; k < labels.length; k++) if (type == labels[k]) { lid = k; break; }
+
+		short[] hc = children[h], ic = children[i];
+		int hn = childCount[h], in = childCount[i];
+
+		int ch = -1, cmi = -1, cmo = -1;
+		if (h < i) {
+			// rightmost child of h left of i, leftmost child of i right of h and rightmost child of i
+			for (int k = 0; k < hn && hc[k] < i; k++) if (hc[k] > h) ch = hc[k];
+			for (int k = 0; k < in && ic[k] < i; k++) if (ic[k] > h) { cmi = ic[k]; break; }
+			if (in > 0 && ic[in - 1] > i) cmo = ic[in - 1];
+
+			if (ch == -1) ch = h;
+			if (cmi == -1) cmi = h;
+			if (cmo == -1) cmo = h;
+		} else {
+			// leftmost child of h right of i, rightmost child of i left of h and leftmost child of i
+			for (int k = 0; k < hn && hc[k] < h; k++) if (hc[k] > i) { ch = hc[k]; break; }
+			for (int k = 0; k < in && ic[k] < h; k++) if (ic[k] > i) cmi = ic[k];
+			if (in > 0 && ic[0] < i) cmo = ic[0];
+
+			if (ch == -1) ch = i;
+			if (cmi == -1) cmi = i;
+			if (cmo == -1) cmo = i;
+		}
+		v += x.sib[x.second(h, i, ch) + lid];
+		v += x.gra[x.second(h, i, cmi) + lid];
+		v += x.gra[x.second(h, i, cmo) + lid];
+		return v;
+	}
+}
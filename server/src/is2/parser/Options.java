@@ -57,6 +57,9 @@ public final class Options extends OptionsSuper {
 		System.out.println(" -i      <number>  the number of training iterations; good numbers are 10 for smaller corpora and 6 for bigger; default "+this.numIters);
 		System.out.println(" -count  <number>  the n first sentences of the corpus are take for the training default "+this.count);
 		System.out.println(" -format <number>  conll format of the year 8 or 9; default "+this.formatTask);
+		System.out.println(" -sentenceThreads <number>  parse the sentences in parallel, one sentence per thread; default "+this.sentenceThreads);
+		System.out.println(" -parallelLength <number>  shorter sentences are parsed in one thread, longer ones with all cores; default "+ParseContext.DEFAULT_PARALLEL_LENGTH);
+		System.out.println(" -batch  <number>  training sentences decoded in parallel with the weights of the start of the batch; default "+this.batch);
 		
 		System.exit(0);
 	}
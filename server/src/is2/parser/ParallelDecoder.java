@@ -23,145 +23,164 @@ final public class ParallelDecoder implements Callable<Object>
 
 	private short[] pos;
 
-	private Open O[][][][];
-	private Closed C[][][][] ;
+	// the open and closed spans
+	final private Chart c;
 
 	private int length;
 
 	boolean done=false;
 	public boolean waiting =false;
 
+	// work queue of the parse, shared by its decoders only
+	final private ArrayList<DSet> sets;
+
 	/**
 	 * Initialize the parallel decoder.
 	 * 
 	 * @param pos part-of-speech
 	 * @param d data
 	 * @param edges part-of-speech edge mapping
-	 * @param o open spans 
-	 * @param c closed spans
+	 * @param c the chart of the open and closed spans
 	 * @param length number of words
+	 * @param sets the work queue
 	 */
-	public ParallelDecoder(short[] pos, DataFES d, Open o[][][][], Closed c[][][][], int length) {
+	public ParallelDecoder(short[] pos, DataFES d, Chart c, int length, ArrayList<DSet> sets) {
 
 		this.pos =pos;
 		this.x =d;
 
-		this.O=o;
-		this.C=c;
+		this.c=c;
 		this.length=length;
+		this.sets=sets;
 	}
 
 
-	private static class DSet { short w1,w2;}
+	static class DSet { short w1,w2;}
 
 	@Override
 	public Object call() {
 
-		
 		try {
-			
-		while (true){
 
-			DSet set = get();
-//			if (done && set==null) break;	
+			while (true){
 
-			if (set ==null) return null;
+				DSet set = get();
+				if (set ==null) return null;
 
-			short s=set.w1, t=set.w2;
+				decode(set.w1, set.w2);
+			}
+		} catch (Exception e ) {
+			e.printStackTrace();
+			System.exit(0);
+		}
+		return null;
+	}
 
-			for(short dir =0;dir<2;dir++) {
-				
-				short[] labs = (dir==1) ? Edges.get(pos[s],pos[t]):Edges.get(pos[t],pos[s]);
+	/**
+	 * Builds the open and closed spans from s to t, the shorter spans have to be build before.
+	 * 
+	 * @param s start of the span
+	 * @param t end of the span
+	 */
+	void decode(short s, short t) {
 
-				O[s][t][dir] = new Open[labs.length];
+		final float[] op = c.op, cp = c.cp;
 
-				for (int l =  0; l <labs.length; l++) {
-						
+		for(short dir =0;dir<2;dir++) {
+			
+			short[] labs = (dir==1) ? Edges.get(pos[s],pos[t]):Edges.get(pos[t],pos[s]);
+
+			final int o = c.open(s,t,dir);
+
+			for (int l =  0; l <labs.length; l++) {
 					
-					double tRP = INIT_BEST; 
-										
-					Closed tL = null, tR = null;
+				
+				double tRP = INIT_BEST; 
+									
+				// split point and inner nodes of the best closed sub spans, -1 for none
+				short tS = -1, tL = -1, tR = -1;
+				
+				for (int r = s; r < t; r++) {
 					
-					for (int r = s; r < t; r++) {
-						
-						if (s == 0 && r != 0) continue;
-						
-						double tLPr = INIT_BEST,tRPr = INIT_BEST;
-						Closed tLCld = null, tRCld = null;
+					if (s == 0 && r != 0) continue;
+					
+					double tLPr = INIT_BEST,tRPr = INIT_BEST;
+					short tLCld = -1, tRCld = -1;
+					
+					if (r == s) tLPr = dir==1 ? x.sib[x.second(s,t,s)+l] : 
+						x.gra[x.second(t,s,s)+l];
+					else {
+						final int cl = c.closed(s,r,1);
+						for (int i = s + 1; i <= r; i++) 
+							if (((dir==1 ? x.sib[x.second(s,t,i)+l] : x.gra[x.second(t,s,i)+l]) + cp[cl+i]) > tLPr) {
+								tLPr = ((dir==1 ? x.sib[x.second(s,t,i)+l] : x.gra[x.second(t,s,i)+l]) + cp[cl+i]);tLCld = (short)i;}
+					}
 						
-						if (r == s) tLPr = dir==1 ? x.sib[s][t][s][l] : 
-							x.gra[t][s][s][l];
-						else 
-							for (int i = s + 1; i <= r; i++) 
-								if (((dir==1 ? x.sib[s][t][i][l] : x.gra[t][s][i][l]) + C[s][r][1][i].p) > tLPr) {
-									tLPr = ((dir==1 ? x.sib[s][t][i][l] : x.gra[t][s][i][l]) + C[s][r][1][i].p);tLCld = C[s][r][1][i];}
-							
-						if (r == t-1) tRPr = dir==1 ? x.gra[s][t][s][l] : x.sib[t][s][s][l];
-						else
-							for (int i = r + 1; i < t; i++) 
-								if (((dir == 1 ? x.gra[s][t][i][l] : 
-									x.sib[t][s][i][l]) + 
-									C[r+1][t][0][i].p) > tRPr) {
-									tRPr = ((dir==1?x.gra[s][t][i][l]:x.sib[t][s][i][l]) + C[r+1][t][0][i].p); tRCld=C[r + 1][t][0][i];
-								}
-											
-						if (tLPr + tRPr > tRP) {tRP = tLPr + tRPr; tL = tLCld;tR = tRCld;}
+					if (r == t-1) tRPr = dir==1 ? x.gra[x.second(s,t,s)+l] : x.sib[x.second(t,s,s)+l];
+					else {
+						final int cr = c.closed(r+1,t,0);
+						for (int i = r + 1; i < t; i++) 
+							if (((dir == 1 ? x.gra[x.second(s,t,i)+l] : 
+								x.sib[x.second(t,s,i)+l]) + 
+								cp[cr+i]) > tRPr) {
+								tRPr = ((dir==1?x.gra[x.second(s,t,i)+l]:x.sib[x.second(t,s,i)+l]) + cp[cr+i]); tRCld=(short)i;
+							}
 					}
-					O[s][t][dir][l] = new Open(s, t, dir, labs[l],tL, tR, 
-							(float) ( tRP+((dir==1)?x.pl[s][t]: x.pl[t][s]) + ((dir==1)? x.lab[s][t][labs[l]]:x.lab[t][s][labs[l]])));					
+										
+					if (tLPr + tRPr > tRP) {tRP = tLPr + tRPr; tS = (short)r; tL = tLCld;tR = tRCld;}
 				}
+				op[o+l] = (float) ( tRP+((dir==1)?x.pl[x.first(s,t)]: x.pl[x.first(t,s)]) + ((dir==1)? x.lab[x.lab(s,t)+labs[l]]:x.lab[x.lab(t,s)+labs[l]]));
+				c.split[o+l] = tS;
+				c.left[o+l] = tL;
+				c.right[o+l] = tR;
 			}
-			C[s][t][1] = new Closed[length]; C[s][t][0] = new Closed[length];
+		}
 
-			for (int m = s ; m <= t; m++) {
-				for(boolean d : DIR) {
-					if ((d && m!=s)||!d && (m!=t && s!=0)) {
-						
-						// create closed structure
-						
-						double top = INIT_BEST;
+		for (int m = s ; m <= t; m++) {
+			for(boolean d : DIR) {
+				if ((d && m!=s)||!d && (m!=t && s!=0)) {
+					
+					// create closed structure
+					
+					double top = INIT_BEST;
+					
+					short tU = -1, tL = -1;
+					final int o = c.open(d ? s : m, d ? m : t, d?1:0);
+					final int ci = c.closed(d?m:s, d?t:m, d?1:0);
+					int numLabels = (d ? Edges.get(pos[s],pos[m]) : Edges.get(pos[t],pos[m])).length;
+			
+					//for (int l = numLabels-1; l >=0; l--) {
+					for (int l = 0; l < numLabels; l++) {
 						
-						Open tU = null; Closed tL = null;
-						int numLabels =O[(d ? s : m)][(d ? m : t)][d?1:0].length;
-				
-						//for (int l = numLabels-1; l >=0; l--) {
-						for (int l = 0; l < numLabels; l++) {
+						float hi = op[o+l];
+						for (int amb = m + (d?1:-1); amb != (d?t:s) + (d?1:-1); amb += (d?1:-1)) {
+							
+							if ((hi + cp[ci+amb] +x.gra[x.second(d?s:t,m,amb)+l]) > top) {
+								top = (hi + cp[ci+amb] +x.gra[x.second(d?s:t,m,amb)+l]); tU = (short)l; tL=(short)amb;}
 							
-							Open hi = O[(d ? s : m)][(d ? m : t)][d?1:0][l];
-							for (int amb = m + (d?1:-1); amb != (d?t:s) + (d?1:-1); amb += (d?1:-1)) {
-								
-								if ((hi.p + C[d?m:s][d?t:m][d?1:0][amb].p +x.gra[d?s:t][m][amb][l]) > top) {
-									top = (hi.p + C[d?m:s][d?t:m][d?1:0][amb].p +x.gra[d?s:t][m][amb][l]); tU = hi; tL=C[d?m:s][d?t:m][d?1:0][amb];}
-								
-							}
-						
-							if ((m == (d ? t : s)) && (hi.p + x.gra[d?s:t][d?t:s][m][l]) > top) { 
-								top = (hi.p + x.gra[d ? s : t][d?t:s][m][l]); tU = hi; tL = null;}
 						}
-						C[s][t][d?1:0][m] = new Closed(s, t, m, d?1:0,tU,tL,(float) top);
-						
 					
+						if ((m == (d ? t : s)) && (hi + x.gra[x.second(d?s:t,d?t:s,m)+l]) > top) { 
+							top = (hi + x.gra[x.second(d ? s : t,d?t:s,m)+l]); tU = (short)l; tL = -1;}
 					}
-				}			
-			}
-		}
-		} catch (Exception e ) {
-			e.printStackTrace();
-			System.exit(0);
+					final int cm = c.closed(s,t,d?1:0)+m;
+					cp[cm] = (float) top;
+					c.open[cm] = tU;
+					c.inner[cm] = tL;
+				
+				}
+			}			
 		}
-		return null;
 	}
 
-	public static ArrayList<DSet> sets = new ArrayList<DSet>();
-
-	static synchronized private DSet get() {
+	private DSet get() {
 		synchronized (sets) {
 			if (sets.size()==0) return null;
 			return sets.remove(sets.size()-1);
 		}
 	}
 
-	public static void add(short w1, short w2){
+	public static void add(ArrayList<DSet> sets, short w1, short w2){
 		DSet ds =new DSet();
 		ds.w1=w1;
 		ds.w2=w2;
@@ -37,8 +37,14 @@ final public class ParallelExtract implements Callable<Object>
 
 	private Cluster cluster;
 
+	final private long[] gvs = new long[50]; 
+	final private long[] svs = new long[220]; 
 
-	public ParallelExtract(Extractor e, Instances is, int i, DataFES d,  F2SF para,Cluster cluster) {
+	// work queue of the parse, shared by its extractors only
+	final private ArrayList<DSet> sets;
+
+
+	public ParallelExtract(Extractor e, Instances is, int i, DataFES d,  F2SF para,Cluster cluster, ArrayList<DSet> sets) {
 
 		this.is =is;
 		extractor=e;
@@ -46,6 +52,7 @@ final public class ParallelExtract implements Callable<Object>
 		this.i=i;
 		this.para=para;
 		this.cluster = cluster;
+		this.sets = sets;
 	}
 
 
@@ -57,175 +64,174 @@ final public class ParallelExtract implements Callable<Object>
 
 		try {
 
-			F2SF f= para;
+			while (true) {
 
+				DSet set = get();
+				if (set ==null) break;
 
-			short[] pos=is.pposs[i];
-			int length = pos.length;
+				extract(set.w1, set.w2);
+			}
 
-			long[] gvs = new long[50]; 
-			long[] svs = new long[220]; 
+		} catch(Exception e ) {
+			e.printStackTrace();
+		}
+		return null;
+	}
 
-			while (true) {
+	/**
+	 * Computes the scores of the edges between w1 and w2 in both directions.
+	 */
+	void extract(int w1, int w2) {
 
-				DSet set = get();
-				if (set ==null) break;
+		F2SF f= para;
 
-				int w1=set.w1;
-				int w2=set.w2;
+		short[] pos=is.pposs[i];
+		int length = pos.length;
 
+		f.clear();
+		extractor.basic(pos, w1, w2, f);
+		d.pl[d.first(w1,w2)]=f.getScoreF();
+		
+		
+		f.clear();
 
-				f.clear();
-				extractor.basic(pos, w1, w2, f);
-				d.pl[w1][w2]=f.getScoreF();
-				
-				
-				f.clear();
+		extractor.basic(pos, w2, w1, f);
+		d.pl[d.first(w2,w1)]=f.getScoreF();
 
-				extractor.basic(pos, w2, w1, f);
-				d.pl[w2][w1]=f.getScoreF();
+		short[] labels = Edges.get(pos[w1], pos[w2]);
+		final float[] lab = d.lab;
+		int o = d.lab(w1,w2);
 
-				short[] labels = Edges.get(pos[w1], pos[w2]);
-				float[] lab = d.lab[w1][w2];
+		final Long2IntInterface li = extractor.li;
 
-				final Long2IntInterface li = extractor.li;
+		int c = extractor.firstm(is, i, w1, w2, 0, cluster, svs);
 
-				int c = extractor.firstm(is, i, w1, w2, 0, cluster, svs);
+		for (int l = 0; l <d.typesLen ; l++)  lab[o+l]=-100 ;
 
-				for (int l = 0; l <lab.length ; l++)  lab[l]=-100 ;
+		for (int l = 0; l <labels.length ; l++) {
+			short label = labels[l];
 
-				for (int l = 0; l <labels.length ; l++) {
-					short label = labels[l];
+			f.clear();
+			int lv = extractor.d0.computeLabeValue(label,Extractor.s_type);
+			for(int k=0;k<c;k++)if (svs[k]>0) f.add(li.l2i(svs[k]+lv));
 
-					f.clear();
-					int lv = extractor.d0.computeLabeValue(label,Extractor.s_type);
-					for(int k=0;k<c;k++)if (svs[k]>0) f.add(li.l2i(svs[k]+lv));
 
+			lab[o+label]=f.getScoreF();
+		}
 
-					lab[label]=f.getScoreF();
-				}
+		labels = Edges.get(pos[w2], pos[w1]);
+		o = d.lab(w2,w1);
 
-				labels = Edges.get(pos[w2], pos[w1]);
-				lab = d.lab[w2][w1];
+		for (int l = 0; l <d.typesLen ; l++)  lab[o+l]=-100 ;
+
+		
+		for (int l = 0; l <labels.length ; l++) {
+			int label = labels[l];
 
-				for (int l = 0; l <lab.length ; l++)  lab[l]=-100 ;
+			f.clear();
+			int lv = extractor.d0.computeLabeValue(label + Extractor.s_rel1 ,Extractor.s_type);
+			for(int k=0;k<c;k++)if (svs[k]>0) f.add(li.l2i(svs[k]+lv));
 
-				
+			lab[o+label]=f.getScoreF();
+		}
+
+		int s = w1<w2 ? w1 : w2;
+		int e = w1<w2 ? w2 : w1;
+
+
+		for(int m=0;m<length;m++) {
+
+			int g = (m==s||e==m) ? -1 : m;
+		
+			int cn =extractor.second(is, i, w1,w2,g, 0, cluster, svs);
+			int cc = extractor.addClusterFeatures(is,i, w1, w2, g, cluster, 0, gvs,0);
+			//for(int k=0;k<c;k++) dl1.map(f,svs[k]);
+			
+
+			if(m>=w1) {
+				labels = Edges.get(pos[w1], pos[w2]);
+				final float[] lab2 = d.gra;
+				final int o2 = d.second(w1,w2,m);
 				for (int l = 0; l <labels.length ; l++) {
-					int label = labels[l];
+
+					short label = labels[l];
+
+					int lx =label+Extractor.s_rel1*(   g < w2?0:2   );
 
 					f.clear();
-					int lv = extractor.d0.computeLabeValue(label + Extractor.s_rel1 ,Extractor.s_type);
-					for(int k=0;k<c;k++)if (svs[k]>0) f.add(li.l2i(svs[k]+lv));
+					int lv = extractor.d0.computeLabeValue(lx,Extractor.s_type);
+					for(int k=0;k<cn;k++)if (svs[k]>0) f.add(li.l2i(svs[k]+lv));
+					for(int k=0;k<cc;k++)if (gvs[k]>0) f.add(li.l2i(gvs[k]+lv));
 
-					lab[label]=f.getScoreF();
+					lab2[o2+l] = f.getScoreF();
 				}
+			}
 
-				int s = w1<w2 ? w1 : w2;
-				int e = w1<w2 ? w2 : w1;
 
+			if (m<=w2) {
+				labels = Edges.get(pos[w2], pos[w1]);
+				final float lab2[] = d.gra;
+				final int o2 = d.second(w2,w1,m);
+				for (int l = 0; l <labels.length ; l++) {
 
-				for(int m=0;m<length;m++) {
+					int label =  labels[l] ;
+					int lx =label+Extractor.s_rel1*(1 +  (g < w1?0:2) );
 
-					int g = (m==s||e==m) ? -1 : m;
-				
-					int cn =extractor.second(is, i, w1,w2,g, 0, cluster, svs);
-					int cc = extractor.addClusterFeatures(is,i, w1, w2, g, cluster, 0, gvs,0);
-					//for(int k=0;k<c;k++) dl1.map(f,svs[k]);
+					f.clear();
+					int lv = extractor.d0.computeLabeValue(lx,Extractor.s_type);
+					for(int k=0;k<cn;k++)if (svs[k]>0) f.add(li.l2i(svs[k]+lv));
+					for(int k=0;k<cc;k++)if (gvs[k]>0) f.add(li.l2i(gvs[k]+lv));
+					
+					lab2[o2+l] = f.getScoreF();
 					
+				}
+			}
+
+
+			g = (m==s||e==m) ? -1 : m;
+
+			//	int cn = extractor.second(is,i,w1,w2,g,0, cluster, svs,Extractor._SIB);
+			if (m >=w1 && m<=w2) {
+				labels = Edges.get(pos[w1], pos[w2]);
+				final float lab2[]= d.sib;
+				final int o2 = d.second(w1,w2,m);
+
+				for (int l = 0; l <labels.length ; l++) {
 
-					if(m>=w1) {
-						labels = Edges.get(pos[w1], pos[w2]);
-						float[] lab2 = new float[labels.length];
-						for (int l = 0; l <labels.length ; l++) {
-
-							short label = labels[l];
-
-							int lx =label+Extractor.s_rel1*(   g < w2?0:2   );
-
-							f.clear();
-							int lv = extractor.d0.computeLabeValue(lx,Extractor.s_type);
-							for(int k=0;k<cn;k++)if (svs[k]>0) f.add(li.l2i(svs[k]+lv));
-							for(int k=0;k<cc;k++)if (gvs[k]>0) f.add(li.l2i(gvs[k]+lv));
-
-							lab2[l] = f.getScoreF();
-						}
-						d.gra[w1][w2][m] =lab2;
-					}
-
-
-					if (m<=w2) {
-						labels = Edges.get(pos[w2], pos[w1]);
-						float lab2[];
-						d.gra[w2][w1][m] = lab2 = new float[labels.length];
-						for (int l = 0; l <labels.length ; l++) {
-
-							int label =  labels[l] ;
-							int lx =label+Extractor.s_rel1*(1 +  (g < w1?0:2) );
-
-							f.clear();
-							int lv = extractor.d0.computeLabeValue(lx,Extractor.s_type);
-							for(int k=0;k<cn;k++)if (svs[k]>0) f.add(li.l2i(svs[k]+lv));
-							for(int k=0;k<cc;k++)if (gvs[k]>0) f.add(li.l2i(gvs[k]+lv));
-							
-							lab2[l] = f.getScoreF();
-							
-						}
-					}
-
-
-					g = (m==s||e==m) ? -1 : m;
-
-					//	int cn = extractor.second(is,i,w1,w2,g,0, cluster, svs,Extractor._SIB);
-					if (m >=w1 && m<=w2) {
-						labels = Edges.get(pos[w1], pos[w2]);
-						float lab2[]= new float[labels.length];
-						d.sib[w1][w2][m] = lab2;
-
-						for (int l = 0; l <labels.length ; l++) {
-
-							short label = labels[l];
-
-							int lx =label+Extractor.s_rel1*( 8);
-							f.clear();
-							int lv = extractor.d0.computeLabeValue(lx,Extractor.s_type);
-							for(int k=0;k<cn;k++) if (svs[k]>0) f.add(li.l2i(svs[k]+lv));
-							for(int k=0;k<cc;k++) if (gvs[k]>0) f.add(li.l2i(gvs[k]+lv));
-
-										
-							lab2[l] = (float)f.score;//f.getScoreF();
-						}
-					}
-					if (m >=w1 && m <=w2) {
-						labels = Edges.get(pos[w2], pos[w1]);
-							float[] lab2 = new float[labels.length];
-							d.sib[w2][w1][m]=lab2;
-						 for (int l = 0; l <labels.length ; l++) {
-
-							int label =  labels[l] ;
-
-							int lx =label+Extractor.s_rel1*(9);
-
-							f.clear();
-							int lv = extractor.d0.computeLabeValue(lx,Extractor.s_type);
-							for(int k=0;k<cn;k++)  if (svs[k]>0)  	f.add(li.l2i(svs[k]+lv));
-							for(int k=0;k<cc;k++)  if (gvs[k]>0)  	f.add(li.l2i(gvs[k]+lv));
-											
-							lab2[l] = f.score;//f.getScoreF();
-						}
-					}
+					short label = labels[l];
+
+					int lx =label+Extractor.s_rel1*( 8);
+					f.clear();
+					int lv = extractor.d0.computeLabeValue(lx,Extractor.s_type);
+					for(int k=0;k<cn;k++) if (svs[k]>0) f.add(li.l2i(svs[k]+lv));
+					for(int k=0;k<cc;k++) if (gvs[k]>0) f.add(li.l2i(gvs[k]+lv));
+
+								
+					lab2[o2+l] = (float)f.score;//f.getScoreF();
 				}
 			}
+			if (m >=w1 && m <=w2) {
+				labels = Edges.get(pos[w2], pos[w1]);
+					final float[] lab2 = d.sib;
+					final int o2 = d.second(w2,w1,m);
+				 for (int l = 0; l <labels.length ; l++) {
 
-		} catch(Exception e ) {
-			e.printStackTrace();
+					int label =  labels[l] ;
+
+					int lx =label+Extractor.s_rel1*(9);
+
+					f.clear();
+					int lv = extractor.d0.computeLabeValue(lx,Extractor.s_type);
+					for(int k=0;k<cn;k++)  if (svs[k]>0)  	f.add(li.l2i(svs[k]+lv));
+					for(int k=0;k<cc;k++)  if (gvs[k]>0)  	f.add(li.l2i(gvs[k]+lv));
+									
+					lab2[o2+l] = f.score;//f.getScoreF();
+				}
+			}
 		}
-		return null;
 	}
 
 
-	static ArrayList<DSet> sets = new ArrayList<DSet>();
-
 	private DSet  get() {
 
 		synchronized (sets) {
@@ -233,7 +239,7 @@ final public class ParallelExtract implements Callable<Object>
 			return sets.remove(sets.size()-1);
 		}
 	}
-	static public void add(int w1, int w2){
+	static public void add(ArrayList<DSet> sets, int w1, int w2){
 		DSet ds =new DSet();
 		ds.w1=w1;
 		ds.w2=w2;
@@ -3,31 +3,22 @@
  */
 package is2.parser;
 
-import java.io.DataInputStream;
 import java.io.DataOutputStream;
 import java.io.IOException;
 
-import is2.data.FV;
 import is2.data.IFV;
-import is2.data.Instances;
-import is2.data.Parse;
 
 /**
  * @author Bernd Bohnet, 31.08.2009
  * 
- * 
+ * The weights are trained and read as ParametersFloat, ParametersMapped 
+ * are read-only.
  */
 public abstract class Parameters {
 
 	
-	public abstract void average(double avVal);
-	
-	public abstract void update(FV act, FV pred, Instances isd, int instc, Parse d, double upd, double e);
-	
 	public abstract void write(DataOutputStream dos) throws IOException;
 	
-	public abstract void read(DataInputStream dis ) throws IOException;
-	
 	public abstract int size();
 
 	/**
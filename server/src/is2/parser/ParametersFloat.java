@@ -34,7 +34,6 @@ final public class ParametersFloat extends Parameters  {
 	}
 
 
-	@Override
 	public void average(double avVal) {
 		for(int j = 0; j < total.length; j++) {
 			parameters[j] = total[j]/((float)avVal);
@@ -51,7 +50,6 @@ final public class ParametersFloat extends Parameters  {
 		return pf;
 	}
 	
-	@Override
 	public void update(FV act, FV pred, Instances isd, int instc, Parse d, double upd, double e) {
 
 		e++;
@@ -87,7 +85,6 @@ final public class ParametersFloat extends Parameters  {
 
 	}
 
-	@Override
 	public void read(DataInputStream dis ) throws IOException{
 
 		parameters = new float[dis.readInt()];
@@ -0,0 +1,220 @@
+package is2.parser;
+
+import is2.data.F2SF;
+import is2.data.QuantizedWeights;
+import is2.util.DB;
+
+import java.io.DataOutputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.FloatBuffer;
+import java.nio.channels.FileChannel;
+
+
+/**
+ * Read-only parameters which are mapped from an uncompressed weights file, 
+ * the weights are not copied to the heap and the pages are shared by all 
+ * processes which map the same file. 
+ * 
+ * The file contains the magic IS2W, the version, the number of weights, the 
+ * encoding of the weights, the log2 of the block size and a reserved int. 
+ * Float32 weights follow as little-endian floats, float16 and int8 weights 
+ * follow as the float scales of the blocks and the values aligned to 8 bytes 
+ * (see QuantizedWeights). Version 1 files have a 16 byte header with the 
+ * number of weights and float32 weights.
+ */
+final public class ParametersMapped extends Parameters  {
+
+	/** The extension of the weights file next to the model */
+	public static final String EXTENSION = ".weights";
+
+	private static final byte[] MAGIC = {'I','S','2','W'};
+	private static final int VERSION = 2, HEADER = 24, HEADER_V1 = 16;
+
+	/** The default number of weights of a block of quantized weights */
+	public static final int BLOCK_SIZE = 1024;
+
+	// one of them is null
+	private final FloatBuffer parameters;
+	private final QuantizedWeights quantized;
+
+	private ParametersMapped(FloatBuffer p) {
+		parameters =p;
+		quantized =null;
+	}
+
+	private ParametersMapped(QuantizedWeights p) {
+		parameters =null;
+		quantized =p;
+	}
+
+	/**
+	 * Quantizes the weights in memory, the parameters score as the mapped 
+	 * parameters of a file written with the same encoding and block size. 
+	 * @param p the weights
+	 * @param encoding QuantizedWeights.FLOAT16 or QuantizedWeights.INT8
+	 * @param blockSize the number of weights of a block, a power of two
+	 * @return the parameters
+	 */
+	public static ParametersMapped quantize(float[] p, int encoding, int blockSize) {
+		return new ParametersMapped(QuantizedWeights.quantize(p, encoding, blockShift(blockSize)));
+	}
+
+	/**
+	 * @return the encoding of the weights, QuantizedWeights.FLOAT32, FLOAT16 or INT8
+	 */
+	public int getEncoding() {
+		return quantized==null ? QuantizedWeights.FLOAT32 : quantized.getType();
+	}
+
+	private static int blockShift(int blockSize) {
+		if (blockSize<=0 || Integer.bitCount(blockSize)!=1) throw new IllegalArgumentException("block size must be a power of two "+blockSize);
+		return Integer.numberOfTrailingZeros(blockSize);
+	}
+
+	private static int align(long position) {
+		return (int)((position+7)&~7L);
+	}
+
+	/**
+	 * Maps the weights file
+	 * @param file the name of the weights file
+	 * @return the parameters
+	 * @throws IOException
+	 */
+	public static ParametersMapped map(String file) throws IOException {
+
+		RandomAccessFile raf = new RandomAccessFile(file,"r");
+		try {
+			FileChannel channel = raf.getChannel();
+			if (channel.size()>Integer.MAX_VALUE) throw new IOException("weights file too large to be mapped "+file);
+
+			// the mapping stays valid when the file is closed
+			ByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size()).order(ByteOrder.LITTLE_ENDIAN);
+
+			byte[] magic = new byte[MAGIC.length];
+			buffer.get(magic);
+			if (!java.util.Arrays.equals(magic, MAGIC)) throw new IOException("not a weights file "+file);
+			int version = buffer.getInt();
+			if (version!=VERSION && version!=1) throw new IOException("unsupported weights file version "+version);
+			int size = buffer.getInt();
+			int encoding = QuantizedWeights.FLOAT32, blockShift =0, header = HEADER_V1;
+			if (version==VERSION) {
+				encoding = buffer.getInt();
+				blockShift = buffer.getInt();
+				header = HEADER;
+			}
+
+			if (encoding==QuantizedWeights.FLOAT32) {
+				if ((long)header+4L*size>channel.size()) throw new IOException("truncated weights file "+file);
+
+				buffer.position(header);
+				buffer.limit(header+4*size);
+				FloatBuffer p = buffer.slice().order(ByteOrder.LITTLE_ENDIAN).asFloatBuffer();
+
+				DB.println("mapped parameters "+size+" from "+file);
+				return new ParametersMapped(p);
+			}
+
+			if (encoding!=QuantizedWeights.FLOAT16 && encoding!=QuantizedWeights.INT8) throw new IOException("unknown weight encoding "+encoding);
+			int scales = 4*QuantizedWeights.blocks(size, blockShift);
+			int values = align(header+scales);
+			if ((long)values+QuantizedWeights.valueBytes(encoding, size)>channel.size()) throw new IOException("truncated weights file "+file);
+
+			buffer.position(header);
+			buffer.limit(header+scales);
+			ByteBuffer s = buffer.slice();
+			buffer.limit(values+QuantizedWeights.valueBytes(encoding, size));
+			buffer.position(values);
+			ByteBuffer v = buffer.slice();
+
+			DB.println("mapped "+QuantizedWeights.NAMES[encoding]+" parameters "+size+" from "+file);
+			return new ParametersMapped(new QuantizedWeights(encoding, size, blockShift, s, v));
+		} finally {
+			raf.close();
+		}
+	}
+
+	/**
+	 * Writes the weights file
+	 * @param p the weights
+	 * @param file the name of the weights file
+	 * @throws IOException
+	 */
+	public static void write(float[] p, String file) throws IOException {
+		write(p, file, QuantizedWeights.FLOAT32, BLOCK_SIZE);
+	}
+
+	/**
+	 * Writes the weights file
+	 * @param p the weights
+	 * @param file the name of the weights file
+	 * @param encoding QuantizedWeights.FLOAT32, FLOAT16 or INT8
+	 * @param blockSize the number of weights of a block of quantized weights, a power of two
+	 * @throws IOException
+	 */
+	public static void write(float[] p, String file, int encoding, int blockSize) throws IOException {
+
+		int blockShift = blockShift(blockSize);
+
+		FileOutputStream fos = new FileOutputStream(file);
+		try {
+			FileChannel channel = fos.getChannel();
+
+			ByteBuffer header = ByteBuffer.allocate(HEADER).order(ByteOrder.LITTLE_ENDIAN);
+			header.put(MAGIC).putInt(VERSION).putInt(p.length).putInt(encoding).putInt(blockShift).putInt(0);
+			header.flip();
+			while(header.hasRemaining()) channel.write(header);
+
+			if (encoding!=QuantizedWeights.FLOAT32) {
+				ByteBuffer scales = QuantizedWeights.scales(p, encoding, blockShift);
+				ByteBuffer values = QuantizedWeights.values(p, encoding, blockShift, scales);
+				while(scales.hasRemaining()) channel.write(scales);
+				ByteBuffer padding = ByteBuffer.allocate(align(channel.position())-(int)channel.position());
+				while(padding.hasRemaining()) channel.write(padding);
+				while(values.hasRemaining()) channel.write(values);
+				return;
+			}
+
+			ByteBuffer buffer = ByteBuffer.allocate(1<<20).order(ByteOrder.LITTLE_ENDIAN);
+			FloatBuffer fb = buffer.asFloatBuffer();
+			for(int i=0;i<p.length;) {
+				int n = Math.min(fb.capacity(), p.length-i);
+				fb.clear();
+				fb.put(p, i, n);
+				buffer.clear();
+				buffer.limit(4*n);
+				while(buffer.hasRemaining()) channel.write(buffer);
+				i+=n;
+			}
+		} finally {
+			fos.close();
+		}
+	}
+
+	/**
+	 * Writes the weights in the format of ParametersFloat
+	 */
+	@Override
+	public void write(DataOutputStream dos) throws IOException {
+		dos.writeInt(size());
+		for(int i=0;i<size();i++) dos.writeFloat(parameters!=null ? parameters.get(i) : quantized.get(i));
+	}
+
+	@Override
+	public int size() {
+		return parameters!=null ? parameters.capacity() : quantized.size();
+	}
+
+	/* (non-Javadoc)
+	 * @see is2.parser.Parameters#getFV()
+	 */
+	@Override
+	public F2SF getFV() {
+		return parameters!=null ? F2SF.mapped(parameters) : F2SF.quantized(quantized);
+	}
+
+}
@@ -0,0 +1,170 @@
+package is2.parser;
+
+import java.lang.ref.SoftReference;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+
+/**
+ * The mutable state of one parse: the feature extractors of the threads
+ * and the work queues of the parallel extractor and decoder.
+ *
+ * Each concurrent parse needs its own context, the thread pools, the
+ * parameters and the model data are shared.
+ */
+final public class ParseContext {
+
+	/**
+	 * Sentences shorter than this are scored and decoded in the calling thread, for them 
+	 * the hand-off to the thread pool costs more than the work split to the threads,
+	 * see the option -parallelLength
+	 */
+	public static final int DEFAULT_PARALLEL_LENGTH = 20;
+
+	// feature extractors, one per thread
+	final Extractor[] extractor;
+
+	// number of threads the work of one parse is split to
+	final int threads;
+
+	// shorter sentences are parsed in the calling thread
+	private final int parallelLength;
+
+	// work queues
+	final ArrayList<ParallelExtract.DSet> extractSets = new ArrayList<ParallelExtract.DSet>();
+	final ArrayList<ParallelDecoder.DSet> decodeSets = new ArrayList<ParallelDecoder.DSet>();
+
+	// chart of the decoder, kept for the sentences up to MAX_CHART_LENGTH 
+	private static final int MAX_CHART_LENGTH = 64;
+	private Chart chart;
+
+	// charts of the longer sentences, shared by the contexts and held by soft references 
+	// so that the garbage collector can free them when the heap runs short
+	private static final int SHARED_CHARTS = 2;
+	private static final List<SoftReference<Chart>> sharedCharts = new ArrayList<SoftReference<Chart>>();
+
+	/**
+	 * @param extractor the feature extractors, at least Parser.THREADS,
+	 * may be null if the context is only used for decoding
+	 */
+	public ParseContext(Extractor[] extractor) {
+		this(extractor, Parser.THREADS);
+	}
+
+	/**
+	 * @param extractor the feature extractors, at least threads
+	 * @param threads the number of threads of the parse, 1 runs the parse in the calling thread
+	 */
+	public ParseContext(Extractor[] extractor, int threads) {
+		this(extractor, threads, DEFAULT_PARALLEL_LENGTH);
+	}
+
+	/**
+	 * @param extractor the feature extractors, at least threads
+	 * @param threads the number of threads of the parse, 1 runs the parse in the calling thread
+	 * @param parallelLength shorter sentences are parsed in the calling thread
+	 */
+	public ParseContext(Extractor[] extractor, int threads, int parallelLength) {
+		this.extractor = extractor;
+		this.threads = Math.max(1, threads);
+		this.parallelLength = parallelLength;
+	}
+
+	public Extractor[] getExtractor() {
+		return extractor;
+	}
+
+	public int getThreads() {
+		return threads;
+	}
+
+	/**
+	 * @return the number of threads a sentence of the given length is split to
+	 */
+	public int getThreads(int length) {
+		return length < parallelLength ? 1 : threads;
+	}
+
+	/**
+	 * @return a chart for a sentence of the given length, the chart of the last sentence if it is large enough,
+	 * for the long sentences a shared chart, see releaseChart 
+	 */
+	Chart getChart(int length, int labels) {
+		if (chart!=null && chart.len>=length && chart.labels>=labels) return chart;
+		int len = DataFESPool.bucket(length);
+		if (len<=MAX_CHART_LENGTH) return chart = new Chart(len, labels);
+
+		Chart c = takeSharedChart(len, labels);
+		return c!=null ? c : new Chart(len, labels);
+	}
+
+	/**
+	 * Returns the chart of getChart after the parse, a chart of a long sentence is kept for the next 
+	 * long sentences of all contexts. The chart must not be used afterwards. 
+	 */
+	void releaseChart(Chart c) {
+		if (c==chart) return;
+		synchronized(sharedCharts) {
+			List<Chart> charts = getSharedCharts();
+			if (charts.size()<SHARED_CHARTS) {
+				sharedCharts.add(new SoftReference<Chart>(c));
+				return;
+			}
+			// keep the larger charts, they fit more sentences
+			int smallest = 0;
+			for(int i=1;i<charts.size();i++) if (charts.get(i).len<charts.get(smallest).len) smallest=i;
+			if (charts.get(smallest).len<c.len) sharedCharts.set(smallest, new SoftReference<Chart>(c));
+		}
+	}
+
+	/**
+	 * @return the smallest shared chart for the length and labels, null if there is none
+	 */
+	private static Chart takeSharedChart(int len, int labels) {
+		synchronized(sharedCharts) {
+			List<Chart> charts = getSharedCharts();
+			int best = -1;
+			for(int i=0;i<charts.size();i++) {
+				Chart shared = charts.get(i);
+				if (shared.len>=len && shared.labels>=labels && (best<0 || shared.len<charts.get(best).len)) best=i;
+			}
+			if (best<0) return null;
+			sharedCharts.remove(best);
+			return charts.get(best);
+		}
+	}
+
+	/**
+	 * Removes the charts freed by the garbage collector, the caller holds the lock of sharedCharts
+	 * @return the remaining charts in the order of sharedCharts
+	 */
+	private static List<Chart> getSharedCharts() {
+		List<Chart> charts = new ArrayList<Chart>(sharedCharts.size());
+		for(int i=0;i<sharedCharts.size();) {
+			Chart c = sharedCharts.get(i).get();
+			if (c==null) sharedCharts.remove(i);
+			else {
+				charts.add(c);
+				i++;
+			}
+		}
+		return charts;
+	}
+
+	/**
+	 * Runs the tasks in the thread pool, a single task is run in the calling thread
+	 * which saves the synchronization with the pool.
+	 */
+	void invokeAll(ExecutorService executerService, List<? extends Callable<Object>> tasks) throws InterruptedException {
+		if (tasks.size()==1) {
+			try {
+				tasks.get(0).call();
+			} catch (RuntimeException e) {
+				throw e;
+			} catch (Exception e) {
+				throw new RuntimeException(e);
+			}
+		} else executerService.invokeAll(tasks);
+	}
+}
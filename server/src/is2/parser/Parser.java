@@ -29,8 +29,15 @@ import java.io.FileNotFoundException;
 import java.io.FileOutputStream;
 import java.io.IOException;
 import java.text.SimpleDateFormat;
+import java.util.ArrayList;
 import java.util.Date;
 import java.util.Map.Entry;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadFactory;
 import java.util.zip.ZipEntry;
 import java.util.zip.ZipInputStream;
 import java.util.zip.ZipOutputStream;
@@ -182,7 +189,7 @@ public class Parser implements Tool, Retrainable {
 	 * @param params
 	 * @throws IOException
 	 */
-	public   void readModel(OptionsSuper options, Pipe pipe, Parameters params) throws IOException {
+	public   void readModel(OptionsSuper options, Pipe pipe, ParametersFloat params) throws IOException {
 
 
 		DB.println("Reading data started");
@@ -259,7 +266,7 @@ public class Parser implements Tool, Retrainable {
 	 * @throws InterruptedException
 	 * @throws ClassNotFoundException
 	 */
-	public void train(OptionsSuper options, Pipe pipe, ParametersFloat params, Instances is, Cluster cluster) 
+	public void train(OptionsSuper options, final Pipe pipe, ParametersFloat params, Instances is, Cluster cluster) 
 			throws IOException, InterruptedException, ClassNotFoundException {
 
 
@@ -276,15 +283,39 @@ public class Parser implements Tool, Retrainable {
 		int maxLenInstances =0;
 		for(int i=0;i<numInstances;i++) if (maxLenInstances<is.length(i)) maxLenInstances=is.length(i);
 
-		DataFES data = new DataFES(maxLenInstances, pipe.mf.getFeatureCounter().get(PipeGen.REL).shortValue());
+		DataFES data = new DataFES(DataFESPool.bucket(maxLenInstances), pipe.mf.getFeatureCounter().get(PipeGen.REL).shortValue(), Edges.maxLabels());
 
 		int iter = 0;
 		int del=0; 
 		float error =0;
 		float f1=0;
 
-		FV pred = new FV();
-		FV act = new FV();
+		// the sentences of a batch are decoded at the same time with the weights of the start of the batch
+		final int batch = Math.max(1, options.batch);
+		ExecutorService trainService = null;
+		ThreadLocal<ParseContext> contexts = null;
+		Lesson[] lessons = new Lesson[batch];
+		for(int i=0;i<batch;i++) lessons[i] = new Lesson();
+
+		ParseContext ctx = pipe.newSharedContext();
+		if (batch>1) {
+			// daemon threads, they do not keep the JVM alive when the training fails 
+			trainService = Executors.newFixedThreadPool(THREADS, new ThreadFactory() {
+				@Override
+				public Thread newThread(Runnable r) {
+					Thread thread = new Thread(r, "parser-trainer");
+					thread.setDaemon(true);
+					return thread;
+				}
+			});
+			contexts = new ThreadLocal<ParseContext>() {
+				@Override
+				protected ParseContext initialValue() {
+					return pipe.newContext(1);
+				}
+			};
+			System.out.println("Batch: "+batch+" sentences decoded by "+THREADS+" threads");
+		}
 
 		double	upd =  (double)(numInstances*options.numIters)+1;
 
@@ -299,6 +330,9 @@ public class Parser implements Tool, Retrainable {
 			f1=0;
 			for(int n = 0; n < numInstances; n++) {
 
+				if (batch>1 && n % batch == 0) 
+					learnBatch(trainService, contexts, pipe, (F2SF)params.getFV(), is, n, Math.min(n+batch, numInstances), cluster, options, lessons);
+
 				upd--;
 
 				if (is.labels[n].length>options.maxLen) continue;
@@ -308,30 +342,16 @@ public class Parser implements Tool, Retrainable {
 
 				if((n+1) %500 == 0) del= PipeGen.outValueErr(n+1, error,f1/n,del, last, upd,info);
 
-				short pos[] = is.pposs[n];
-
-				data = pipe.fillVector((F2SF)params.getFV(), is, n, data, cluster);
+				Lesson l = lessons[n % batch];
+				if (batch==1) data = learn(ctx, pipe, (F2SF)params.getFV(), is, n, data, cluster, options.decodeProjective, l);
 
-				Parse d = Decoder.decode(pos,  data, options.decodeProjective, Decoder.TRAINING);
-
-				double e= pipe.errors(is, n ,d);
-
-				if (d.f1>0)f1+=d.f1;
+				if (l.d.f1>0)f1+=l.d.f1;
 
-				if (e<=0) continue;
+				if (l.e<=0) continue;
 
-				pred.clear();
-				pipe.extractor[0].encodeCat(is,n,pos,is.forms[n],is.plemmas[n],d.heads, d.labels, is.feats[n],pipe.cl, pred);
+				error += l.e;
 
-				error += e;
-
-				params.getFV();
-
-
-				act.clear();
-				pipe.extractor[0].encodeCat(is,n,pos,is.forms[n],is.plemmas[n],is.heads[n], is.labels[n], is.feats[n],pipe.cl, act);
-
-				params.update(act, pred, is, n, d, upd,e);
+				params.update(l.act, l.pred, is, n, l.d, upd,l.e);
 			}
 
 			String info = " td "+((Decoder.timeDecotder)/1000000F)+" tr "+((Decoder.timeRearrange)/1000000F)
@@ -365,9 +385,79 @@ public class Parser implements Tool, Retrainable {
 
 
 		}
+		if (trainService!=null) trainService.shutdown();
 		if (options.average)params.average(iter*is.size());
 	}                                   
 
+	/**
+	 * The tree of a training sentence, its errors and the feature vectors of the update
+	 */
+	static final class Lesson {
+		Parse d;
+		double e;
+		final FV act = new FV(), pred = new FV();
+	}
+
+	/**
+	 * Decodes a training sentence and extracts the feature vectors of the update
+	 * 
+	 * @param ctx the extractors, work queues and chart used for the sentence
+	 * @param data the score buffer, null for one of the pool of the pipe
+	 * @param l the lesson which is filled
+	 * @return the score buffer of the sentence
+	 */
+	private static DataFES learn(ParseContext ctx, Pipe pipe, F2SF params, Instances is, int n, DataFES data, 
+			Cluster cluster, boolean projective, Lesson l) throws InterruptedException {
+
+		short pos[] = is.pposs[n];
+
+		data = pipe.fillVector(ctx, params, is, n, data, cluster);
+
+		l.d = Decoder.decode(ctx, pos,  data, projective, Decoder.TRAINING);
+
+		l.e= pipe.errors(is, n ,l.d);
+
+		if (l.e<=0) return data;
+
+		l.pred.clear();
+		ctx.extractor[0].encodeCat(is,n,pos,is.forms[n],is.plemmas[n],l.d.heads, l.d.labels, is.feats[n],pipe.cl, l.pred);
+
+		l.act.clear();
+		ctx.extractor[0].encodeCat(is,n,pos,is.forms[n],is.plemmas[n],is.heads[n], is.labels[n], is.feats[n],pipe.cl, l.act);
+		return data;
+	}
+
+	/**
+	 * Decodes the sentences from start to end at the same time, each sentence in one thread with its own
+	 * extractor and chart and a score buffer of the pool of the pipe which fits the sentence. The weights 
+	 * are not changed while the batch is decoded, the updates are done afterwards in the order of the sentences.
+	 */
+	private static void learnBatch(ExecutorService trainService, final ThreadLocal<ParseContext> contexts, 
+			final Pipe pipe, final F2SF params, final Instances is, int start, int end,
+			final Cluster cluster, final OptionsSuper options, Lesson[] lessons) throws InterruptedException {
+
+		ArrayList<Callable<Object>> tasks = new ArrayList<Callable<Object>>(end-start);
+		for(int n = start; n < end; n++) {
+			if (is.labels[n].length>options.maxLen) continue;
+
+			final int i = n;
+			final Lesson l = lessons[n-start];
+			tasks.add(new Callable<Object>() {
+				@Override
+				public Object call() throws Exception {
+					pipe.release(learn(contexts.get(), pipe, params, is, i, null, cluster, options.decodeProjective, l));
+					return null;
+				}
+			});
+		}
+
+		try {
+			for(Future<Object> f : trainService.invokeAll(tasks)) f.get();
+		} catch (ExecutionException e) {
+			throw new RuntimeException(e.getCause());
+		}
+	}
+
 
 	/**
 	 * Do the parsing job
@@ -585,7 +675,7 @@ public class Parser implements Tool, Retrainable {
 		for(int k=0;k<iterations;k++) {
 			try {
 				// create the data structure
-				DataFES data = new DataFES(sentence.length(), pipe.mf.getFeatureCounter().get(PipeGen.REL).shortValue());
+				DataFES data = null;
 
 
 				Instances is = new Instances();
@@ -620,6 +710,7 @@ public class Parser implements Tool, Retrainable {
 
 				// parse the sentence
 				Parse d = Decoder.decode(pos,  data, options.decodeProjective, Decoder.TRAINING);
+				pipe.release(data);
 
 				// training successful?
 				double e= pipe.errors(is, 0 ,d);
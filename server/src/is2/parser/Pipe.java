@@ -160,8 +160,52 @@ final public class Pipe extends PipeGen {
 
 	 public static ExecutorService executerService =java.util.concurrent.Executors.newFixedThreadPool(Parser.THREADS);
 
+	// score buffers of the sentences up to a length of 64 are reused 
+	private final DataFESPool pool = new DataFESPool(64, Parser.THREADS*2);
+
+
+	/**
+	 * Creates the context for one concurrent parse with its own feature extractors. 
+	 */
+	public ParseContext newContext() {
+		return newContext(Parser.THREADS);
+	}
+
+	/**
+	 * Creates the context for one concurrent parse which is split to the given number of threads,
+	 * with 1 the whole parse runs in the calling thread.  
+	 */
+	public ParseContext newContext(int threads) {
+		Extractor[] ex = new Extractor[Math.max(1, threads)];
+		for(int t=0;t<ex.length;t++) {
+			ex[t]=new Extractor(extractor[0].li, extractor[0].s_stack, options.featureCreation);
+			ex[t].init();
+		}
+		return new ParseContext(ex, ex.length, parallelLength());
+	}
+
+	/**
+	 * Creates the context of the parses that share the extractors of the pipe, used by the training 
+	 */
+	public ParseContext newSharedContext() {
+		return new ParseContext(extractor, Parser.THREADS, parallelLength());
+	}
+
+	/**
+	 * @return the sentence length from which a sentence is split to the threads, see option -parallelLength
+	 */
+	private int parallelLength() {
+		return options.parallelLength>=0 ? options.parallelLength : ParseContext.DEFAULT_PARALLEL_LENGTH;
+	}
 
 	public DataFES fillVector(F2SF params, Instances is,int inst, DataFES d,  Cluster cluster) throws InterruptedException {
+		return fillVector(newSharedContext(), params, is, inst, d, cluster);
+	}
+
+	/**
+	 * Computes the edge scores of the instance, uses the extractors and the work queue of the context
+	 */
+	public DataFES fillVector(ParseContext ctx, F2SF params, Instances is,int inst, DataFES d,  Cluster cluster) throws InterruptedException {
 
 		long ts = System.nanoTime();
 
@@ -169,24 +213,42 @@ final public class Pipe extends PipeGen {
 		
 		
 		final int length = is.length(inst);
-		if (d ==null || d.len<length)d = new DataFES(length,mf.getFeatureCounter().get(PipeGen.REL).shortValue());
+		if (d ==null) d = pool.get(length, mf.getFeatureCounter().get(PipeGen.REL).shortValue());
+		else if (d.len<length) d = new DataFES(DataFESPool.bucket(length),mf.getFeatureCounter().get(PipeGen.REL).shortValue(), Edges.maxLabels());
+
+		short[] pos = is.pposs[inst];
+		for (int h = 0; h < length; h++) 
+			for (int m = 0; m < length; m++) d.edgeLabels[d.first(h,m)] = h==m ? 0 : Edges.get(pos[h], pos[m]).length;
+		d.layout(length);
+
+		int threads = ctx.getThreads(length);
+		if (threads==1) {
+
+			// short sentence, the edges are scored in this thread without the work queue
+			ParallelExtract e = new ParallelExtract(ctx.extractor[0],is, inst, d, (F2SF)params.clone(), cluster, null);
+			for (int w1 = 0; w1 < length; w1++) 
+				for (int w2 =w1+1; w2 < length; w2++) e.extract(w1, w2);
+
+			timeExtract += (System.nanoTime()-ts);
+			return d;
+		}
 
 		ArrayList<ParallelExtract> pe = new ArrayList<ParallelExtract>();
-		for(int i=0;i<Parser.THREADS;i++) pe.add(new ParallelExtract(extractor[i],is, inst, d, (F2SF)params.clone(), cluster));
+		for(int i=0;i<threads;i++) pe.add(new ParallelExtract(ctx.extractor[i],is, inst, d, (F2SF)params.clone(), cluster, ctx.extractSets));
 
 		for (int w1 = 0; w1 < length; w1++) {
 			for (int w2 =w1+1; w2 < length; w2++) {
 
 				if (w1==w2) continue;
 
-				ParallelExtract.add(w1, w2);
+				ParallelExtract.add(ctx.extractSets, w1, w2);
 
 
 			}
 		}
 //		for(int i=0;i<efp.length;i++) efp[i].start();					
 //		for(int i=0;i<efp.length;i++) efp[i].join();
-		executerService.invokeAll( pe);
+		ctx.invokeAll(executerService, pe);
 
 		timeExtract += (System.nanoTime()-ts);
 
@@ -198,6 +260,14 @@ final public class Pipe extends PipeGen {
 		return d;
 	}
 
+	/**
+	 * Returns the scores of a sentence to the pool when they are not used anymore
+	 * @param d the scores provided by fillVector
+	 */
+	public void release(DataFES d) {
+		pool.release(d);
+	}
+
 	public double errors( Instances is, int ic, Parse p) {
 		short[] act = is.heads[ic];
 		double correct = 0;
@@ -60,6 +60,12 @@ public class OptionsSuper {
 	public boolean useRelationalFeatures = false;
 	public int count = 10000000;
 	public int cores = Integer.MAX_VALUE;
+	// parse whole sentences in parallel, 0 parses one sentence after the other
+	public int sentenceThreads = 0;
+	// sentences shorter than this are scored and decoded in the calling thread, -1 keeps the default
+	public int parallelLength = -1;
+	// training sentences decoded at the same time with the weights of the start of the batch, 1 trains one sentence after the other
+	public int batch = 1;
 	public int start = 0;
 	public int minOccureForms = 0;
 	public int tt=30; // tagger averaging
@@ -148,6 +154,12 @@ public class OptionsSuper {
 				maxLen= Integer.parseInt(args[i+1]); i++;			
 			} else if (args[i].equals("-cores")) {
 				cores= Integer.parseInt(args[i+1]); i++;			
+			} else if (args[i].equals("-sentenceThreads")) {
+				sentenceThreads= Integer.parseInt(args[i+1]); i++;			
+			} else if (args[i].equals("-parallelLength")) {
+				parallelLength= Integer.parseInt(args[i+1]); i++;			
+			} else if (args[i].equals("-batch")) {
+				batch= Integer.parseInt(args[i+1]); i++;			
 			} else if (args[i].equals("-start")) {
 				start= Integer.parseInt(args[i+1]); i++;			
 			} else if (args[i].equals("-max")) {
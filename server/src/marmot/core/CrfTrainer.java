@@ -8,9 +8,26 @@ import java.util.Collection;
 import java.util.Collections;
 import java.util.List;
 import java.util.Random;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadFactory;
 
 import marmot.core.lattice.SumLattice;
 
+/**
+ * Stochastic gradient descent on the CRF likelihood.
+ *
+ * With a batch size above 1 the sentences are processed in mini-batches on
+ * several threads: the lattices and the updates of the sentences of a batch
+ * are computed in parallel with the weights of the start of the batch, the
+ * updates are then applied one sentence after the other with the step width,
+ * scaling and penalty of the sentence. The new features of a batch are staged
+ * (see WeightVector.setStageFeatures), so with the same seed the model doesn't
+ * depend on the number of threads.
+ */
 public class CrfTrainer implements Trainer {
 	private double penalty_;
 	private double step_width_ = .1;
@@ -20,10 +37,28 @@ public class CrfTrainer implements Trainer {
 	private boolean very_verbose_;
 	private double quadratic_penalty_;
 	private long seed_;
+	private int num_threads_;
+	private int batch_size_;
 
 	@Override
 	public void train(Tagger tagger, Collection<Sequence> in_sequences,
 			Evaluator evaluator) {
+		if (!tagger.getWeightVector().isTrainable()) {
+			throw new IllegalStateException("Read-only or quantized weights can not be trained");
+		}
+		ExecutorService executor = createExecutor();
+		try {
+			train(tagger, in_sequences, evaluator, executor);
+		} finally {
+			tagger.getWeightVector().setStageFeatures(false);
+			if (executor != null) {
+				executor.shutdown();
+			}
+		}
+	}
+
+	private void train(Tagger tagger, Collection<Sequence> in_sequences,
+			Evaluator evaluator, ExecutorService executor) {
 		
 		Random rng = null;
 		if (shuffle_) {
@@ -55,58 +90,80 @@ public class CrfTrainer implements Trainer {
 
 			int current_sentence = 0;
 			long train_time = System.currentTimeMillis();
-			for (Sequence sequence : sequences) {
-				
-				double step_width = step_width_
-						/ (1 + (number / (double) sequences.size()));
-
-				double scale_factor = 1 - 2. * step_width * quadratic_penalty_  / sequences.size(); 				
-				assert !Double.isNaN(scale_factor);
-				assert !Double.isInfinite(scale_factor);
-				assert scale_factor > 1e-10;
-				assert scale_factor < 1 + 1e-10;
-				
-				step_width /= scale_factor;
-				
-				if (Math.abs(penalty_) > 1e-10) {
-					accumalted_penalty += step_width * penalty_
-							/ sequences.size();
-					weights.setPenalty(true, accumalted_penalty);
+			for (int start = 0; start < sequences.size(); start += batch_size_) {
+				List<Sequence> batch = sequences.subList(start,
+						Math.min(start + batch_size_, sequences.size()));
+
+				// the step widths only depend on the number of the sentence
+				double[] step_widths = new double[batch.size()];
+				double[] scale_factors = new double[batch.size()];
+				for (int index = 0; index < batch.size(); index++) {
+					double step_width = step_width_
+							/ (1 + ((number + index) / (double) sequences.size()));
+
+					double scale_factor = 1 - 2. * step_width * quadratic_penalty_  / sequences.size(); 				
+					assert !Double.isNaN(scale_factor);
+					assert !Double.isInfinite(scale_factor);
+					assert scale_factor > 1e-10;
+					assert scale_factor < 1 + 1e-10;
+
+					step_widths[index] = step_width / scale_factor;
+					scale_factors[index] = scale_factor;
 				}
 
-				SumLattice lattice = tagger.getSumLattice(true, sequence);
-				
-				
-				if (very_verbose_) {
-					System.err.format("vv %d %d %d %d\n", number, lattice.getOrder() + lattice.getLevel() * (tagger.getModel().getOrder() + 1), lattice.getLevel(), lattice.getOrder() );
+				List<UpdateBuffer> updates = null;
+				if (batch.size() > 1) {
+					weights.setStageFeatures(true);
+					updates = getUpdates(tagger, batch, step_widths, executor);
 				}
+
+				for (int index = 0; index < batch.size(); index++) {
+					double step_width = step_widths[index];
+					double scale_factor = scale_factors[index];
 				
-				assert lattice != null;
-				
-				lattice.update(weights, step_width);		
-				weights.scaleBy(scale_factor);
-				current_sentence++;
-
-				if (current_sentence % fraction == 0) {
-					if (verbose_)
-						System.err
-								.format("Processed %d sentences at %g sentence/s \n",
-										current_sentence,
-										current_sentence
-												/ ((System.currentTimeMillis() - train_time) / 1000.));
-
-					if (small_factor < 100) {
-						small_factor *= 10;
-						smaller_fraction = Math.max(small_factor
-								* sequences.size() / 400, 1);
+					if (Math.abs(penalty_) > 1e-10) {
+						accumalted_penalty += step_width * penalty_
+								/ sequences.size();
+						weights.setPenalty(true, accumalted_penalty);
 					}
-				}
 
-				if (current_sentence % smaller_fraction == 0) {
-					tagger.setThresholds(false);
-				}
+					if (updates == null) {
+						SumLattice lattice = tagger.getSumLattice(true, batch.get(index));
+						assert lattice != null;
+						printLattice(number, tagger, lattice.getOrder(), lattice.getLevel());
+						lattice.update(weights, step_width);
+					} else {
+						UpdateBuffer update = updates.get(index);
+						printLattice(number, tagger, update.order_, update.level_);
+						update.apply(weights);
+					}
+					weights.scaleBy(scale_factor);
+					current_sentence++;
+
+					if (current_sentence % fraction == 0) {
+						if (verbose_)
+							System.err
+									.format("Processed %d sentences at %g sentence/s \n",
+											current_sentence,
+											current_sentence
+													/ ((System.currentTimeMillis() - train_time) / 1000.));
+
+						if (small_factor < 100) {
+							small_factor *= 10;
+							smaller_fraction = Math.max(small_factor
+									* sequences.size() / 400, 1);
+						}
+					}
+
+					if (current_sentence % smaller_fraction == 0) {
+						tagger.setThresholds(false);
+					}
 				
-				number++;
+					number++;
+				}
+				if (updates != null) {
+					weights.setStageFeatures(false);
+				}
 			}
 
 			if (evaluator != null && verbose_) {
@@ -121,10 +178,116 @@ public class CrfTrainer implements Trainer {
 		weights.setExtendFeatureSet(false);
 	}
 
+	private void printLattice(int number, Tagger tagger, int order, int level) {
+		if (very_verbose_) {
+			System.err.format("vv %d %d %d %d\n", number, order + level * (tagger.getModel().getOrder() + 1), level, order );
+		}
+	}
+
+	/**
+	 * @return the executor of the mini-batches, null if they are processed in
+	 *         the calling thread
+	 */
+	private ExecutorService createExecutor() {
+		int num_threads = num_threads_;
+		if (num_threads <= 0) {
+			num_threads = Runtime.getRuntime().availableProcessors();
+		}
+		if (batch_size_ <= 1 || num_threads <= 1) {
+			return null;
+		}
+		return Executors.newFixedThreadPool(num_threads, new ThreadFactory() {
+			@Override
+			public Thread newThread(Runnable r) {
+				Thread thread = new Thread(r, "marmot-trainer");
+				thread.setDaemon(true);
+				return thread;
+			}
+		});
+	}
+
+	/**
+	 * @return the updates of the sentences in the order of the batch
+	 */
+	private static List<UpdateBuffer> getUpdates(final Tagger tagger,
+			List<Sequence> batch, final double[] step_widths,
+			ExecutorService executor) {
+		List<UpdateBuffer> updates = new ArrayList<UpdateBuffer>(batch.size());
+
+		if (executor == null) {
+			for (int index = 0; index < batch.size(); index++) {
+				updates.add(new UpdateBuffer(tagger, batch.get(index),
+						step_widths[index]));
+			}
+			return updates;
+		}
+
+		List<Callable<UpdateBuffer>> tasks = new ArrayList<Callable<UpdateBuffer>>(
+				batch.size());
+		for (int index = 0; index < batch.size(); index++) {
+			final Sequence sequence = batch.get(index);
+			final double step_width = step_widths[index];
+			tasks.add(new Callable<UpdateBuffer>() {
+				@Override
+				public UpdateBuffer call() {
+					return new UpdateBuffer(tagger, sequence, step_width);
+				}
+			});
+		}
+
+		try {
+			for (Future<UpdateBuffer> future : executor.invokeAll(tasks)) {
+				updates.add(future.get());
+			}
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new RuntimeException(e);
+		} catch (ExecutionException e) {
+			throw new RuntimeException(e.getCause());
+		}
+		return updates;
+	}
+
+	/**
+	 * Keeps the updates of the lattice of a sentence until they are applied to
+	 * the weights.
+	 */
+	private static class UpdateBuffer implements WeightUpdater {
+		private final int order_;
+		private final int level_;
+		private final List<State> states_ = new ArrayList<State>();
+		private final List<Double> amounts_ = new ArrayList<Double>();
+		private final List<Boolean> transitions_ = new ArrayList<Boolean>();
+
+		public UpdateBuffer(Tagger tagger, Sequence sequence, double step_width) {
+			SumLattice lattice = tagger.getSumLattice(true, sequence);
+			assert lattice != null;
+			order_ = lattice.getOrder();
+			level_ = lattice.getLevel();
+			lattice.update(this, step_width);
+		}
+
+		@Override
+		public void updateWeights(State state, double amount, boolean transition) {
+			states_.add(state);
+			amounts_.add(amount);
+			transitions_.add(transition);
+		}
+
+		public void apply(WeightVector weights) {
+			for (int index = 0; index < states_.size(); index++) {
+				weights.updateWeights(states_.get(index), amounts_.get(index),
+						transitions_.get(index));
+			}
+		}
+	}
+
 	@Override
 	public void setOptions(Options options) {
 		setOptions(options.getPenalty(), options.getQuadraticPenalty(), options.getNumIterations(), options
-				.getShuffle(), options.getVerbose(), options.getVeryVerbose(), options.getSeed());	
+				.getShuffle(), options.getVerbose(), options.getVeryVerbose(), options.getSeed());
+		num_threads_ = options.getNumThreads();
+		batch_size_ = Math.max(1, options.getBatchSize());
 	}
 
 	private void setOptions(double penalty, double quadratic_penalty,
@@ -8,6 +8,11 @@ import java.util.Arrays;
 
 public class Feature implements Serializable {
 	private static final long serialVersionUID = 1L;
+
+	// features with more bits can't be packed to a long
+	public static final int MAX_PACKED_BITS = 58;
+	public static final long NOT_PACKED = -1L;
+
 	private int[] bytes_;
 	private short current_length_;
 	private short current_bit_index_;
@@ -57,5 +62,45 @@ public class Feature implements Serializable {
 	public short getCurrentLength() {
 		return current_length_;
 	}
+
+	/**
+	 * Packs the bits of the feature and the number of bits to a long, two
+	 * features are equal if and only if their packed keys are equal.
+	 * 
+	 * @return the packed key or NOT_PACKED if the feature has more than
+	 *         MAX_PACKED_BITS bits
+	 */
+	public long pack() {
+		return pack(bytes_, current_length_, current_bit_index_);
+	}
+
+	public static long pack(int[] bytes, int current_length, int current_bit_index) {
+		if (current_length == 0) {
+			return 0L;
+		}
+		int bits = (current_length - 1) * Integer.SIZE + current_bit_index;
+		if (bits > MAX_PACKED_BITS) {
+			return NOT_PACKED;
+		}
+		long key = bytes[0] & 0xffffffffL;
+		if (current_length > 1) {
+			key |= (bytes[1] & 0xffffffffL) << Integer.SIZE;
+		}
+		return key | ((long) bits << MAX_PACKED_BITS);
+	}
+
+	/**
+	 * @return a 64 bit hash of the feature, used for the features that can't
+	 *         be packed
+	 */
+	public static long hash64(int[] bytes, int current_length, int current_bit_index) {
+		long h = 0xcbf29ce484222325L ^ current_length ^ ((long) current_bit_index << 16);
+		for (int index = 0; index < current_length; index++) {
+			h = (h ^ (bytes[index] & 0xffffffffL)) * 0x100000001b3L;
+			h ^= h >>> 29;
+		}
+		h *= 0x9E3779B97F4A7C15L;
+		return h ^ (h >>> 32);
+	}
 	
 }
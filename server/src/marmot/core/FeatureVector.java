@@ -28,6 +28,21 @@ public class FeatureVector {
 		concat_ = concat;
 	}
 
+	/**
+	 * Reinitializes the vector as the constructor would, so that the vector can
+	 * be reused for another state.
+	 */
+	protected void reset(int capacity, FeatureVector vector, boolean concat) {
+		if (features_.length < capacity) {
+			features_ = new int[capacity];
+		}
+		length_ = 0;
+		is_state_ = false;
+		sub_vector_ = vector;
+		concat_ = concat;
+		float_vector_ = null;
+	}
+
 	public Integer get(int index) {
 		if (index < length_ || !concat_)
 			return features_[index];
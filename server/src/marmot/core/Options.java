@@ -43,6 +43,8 @@ public class Options extends java.util.Properties {
 	public static final String TRAINER = "trainer";
 	public static final String AVERAGING = "averaging";
 	public static final String SEED = "seed";
+	public static final String NUM_THREADS = "num-threads";
+	public static final String BATCH_SIZE = "batch-size";
 
 	private static final Map<String, String> DEFALUT_VALUES_ = new HashMap<String, String>();
 	private static final Map<String, String> COMMENTS_ = new HashMap<String, String>();
@@ -97,6 +99,10 @@ public class Options extends java.util.Properties {
 		COMMENTS_.put(AVERAGING, "Whether to use averaging. Perceptron only!");
 		DEFALUT_VALUES_.put(SEED, "0");
 		COMMENTS_.put(SEED, "Random seed to use for shuffling. 0 for nondeterministic seed");
+		DEFALUT_VALUES_.put(NUM_THREADS, "0");
+		COMMENTS_.put(NUM_THREADS, "Number of threads of the mini-batches. 0 for the number of cores. CRF trainer only!");
+		DEFALUT_VALUES_.put(BATCH_SIZE, "1");
+		COMMENTS_.put(BATCH_SIZE, "Number of sentences of a mini-batch, their lattices are computed on num-threads threads. 1 updates the weights after every sentence. CRF trainer only!");
 
 
 	}
@@ -350,4 +356,12 @@ public class Options extends java.util.Properties {
 		return Long.parseLong(getProperty(SEED));
 	}
 
+	public int getNumThreads() {
+		return Integer.parseInt(getProperty(NUM_THREADS));
+	}
+
+	public int getBatchSize() {
+		return Integer.parseInt(getProperty(BATCH_SIZE));
+	}
+
 }
@@ -27,6 +27,9 @@ public class PerceptronTrainer implements Trainer {
 	@Override
 	public void train(Tagger tagger, Collection<Sequence> in_sequences,
 			Evaluator evaluator) {
+		if (!tagger.getWeightVector().isTrainable()) {
+			throw new IllegalStateException("Read-only or quantized weights can not be trained");
+		}
 		
 		Random rng = null;
 		if (shuffle_) {
@@ -9,13 +9,12 @@ import java.util.Collections;
 import java.util.LinkedList;
 import java.util.List;
 
+import marmot.core.lattice.ArrayViterbiLattice;
 import marmot.core.lattice.Hypothesis;
 import marmot.core.lattice.SequenceSumLattice;
-import marmot.core.lattice.SequenceViterbiLattice;
 import marmot.core.lattice.SumLattice;
 import marmot.core.lattice.ViterbiLattice;
 import marmot.core.lattice.ZeroOrderSumLattice;
-import marmot.core.lattice.ZeroOrderViterbiLattice;
 
 public class SimpleTagger implements Tagger {
 	private static final long serialVersionUID = 1L;
@@ -304,8 +303,11 @@ public class SimpleTagger implements Tagger {
 
 		int length = candidates.size();
 
-		num_states_[level][order] += num_states;
-		length_[level][order] += length;
+		// the statistics of setThresholds are shared by the tagging threads
+		synchronized (num_states_) {
+			num_states_[level][order] += num_states;
+			length_[level][order] += length;
+		}
 	}
 
 	@Override
@@ -402,6 +404,10 @@ public class SimpleTagger implements Tagger {
 		return lattice;
 	}
 
+	/**
+	 * Keeps the candidates of the last sentence for printCandidateBuffer, the
+	 * tagger should then only be used by one thread.
+	 */
 	public void activateCandiateBuffer(boolean active) {
 		if (active) {
 			candidate_buffer_ = new LinkedList<List<List<State>>>();
@@ -592,13 +598,8 @@ public class SimpleTagger implements Tagger {
 
 		List<List<State>> candidates = sum_lattice.getCandidates();
 
-		ViterbiLattice lattice;
-		if (sum_lattice instanceof ZeroOrderSumLattice) {
-			lattice = new ZeroOrderViterbiLattice(candidates, beam_size_);
-		} else {
-			lattice = new SequenceViterbiLattice(candidates,
-					model_.getBoundaryState(getNumLevels() - 1), beam_size_);
-		}
+		ViterbiLattice lattice = new ArrayViterbiLattice(candidates,
+				sum_lattice instanceof ZeroOrderSumLattice, beam_size_);
 
 		Hypothesis h = lattice.getViterbiSequence();
 		List<Integer> actual = h.getStates();
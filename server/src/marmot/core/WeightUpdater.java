@@ -0,0 +1,8 @@
+package marmot.core;
+
+/**
+ * Receives the weight updates of a lattice, see SumLattice.update.
+ */
+public interface WeightUpdater {
+	void updateWeights(State state, double amount, boolean transition);
+}
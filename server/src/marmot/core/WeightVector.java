@@ -6,10 +6,9 @@ package marmot.core;
 import java.io.Serializable;
 import java.util.Collection;
 
-public interface WeightVector extends Serializable {
+public interface WeightVector extends Serializable, WeightUpdater {
 	static final long serialVersionUID = 1L;
 
-	void updateWeights(State state, double amount, boolean transition);
 	FeatureVector extractTransitionFeatures(State context);
 	FeatureVector extractStateFeatures(Sequence sentence, int index);
 	double dotProduct(State state, FeatureVector vector);
@@ -18,6 +17,8 @@ public interface WeightVector extends Serializable {
 	void setPenalty(boolean b, double accumalted_penalty);
 	void scaleBy(double scale_factor);
 	void setExtendFeatureSet(boolean extend);
+	void setStageFeatures(boolean stage);
 	double[] getWeights();
 	void setWeights(double[] weights);
+	boolean isTrainable();
 }
@@ -0,0 +1,327 @@
+package marmot.core.lattice;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.PriorityQueue;
+import java.util.Set;
+
+import marmot.core.State;
+import marmot.core.Transition;
+
+/**
+ * Viterbi lattice over flat arrays, decodes the candidates of a
+ * SequenceSumLattice or of a ZeroOrderSumLattice. Only SimpleTagger.tag uses
+ * it, marmot.morph.cmd.LatticeChecker compares it to SequenceViterbiLattice
+ * and ZeroOrderViterbiLattice.
+ *
+ * The states of all positions are numbered consecutively, the beam of a state
+ * is kept in a fixed slice of the score and back pointer arrays and filled by
+ * insertion. Entries of equal score are kept in the order of their previous
+ * states.
+ */
+public class ArrayViterbiLattice implements ViterbiLattice {
+	private List<List<State>> candidates_;
+	private boolean zero_order_;
+	private int beam_size_;
+	private boolean initilized_;
+
+	// first state of each position
+	private int[] offsets_;
+	// beam of state i: scores_[i * beam_size_ + rank], ranks below lengths_[i]
+	private double[] scores_;
+	private int[] previous_;
+	private int[] lengths_;
+
+	/**
+	 * @param zero_order true for the candidates of a ZeroOrderSumLattice
+	 */
+	public ArrayViterbiLattice(List<List<State>> candidates, boolean zero_order,
+			int beam_size) {
+		candidates_ = candidates;
+		zero_order_ = zero_order;
+		beam_size_ = beam_size;
+		initilized_ = false;
+	}
+
+	public void init() {
+		if (initilized_) {
+			return;
+		}
+		initilized_ = true;
+
+		int positions = candidates_.size();
+		offsets_ = new int[positions + 1];
+		for (int index = 0; index < positions; index++) {
+			offsets_[index + 1] = offsets_[index]
+					+ candidates_.get(index).size();
+		}
+
+		int num_states = offsets_[positions];
+		scores_ = new double[num_states * beam_size_];
+		previous_ = new int[num_states * beam_size_];
+		lengths_ = new int[num_states];
+
+		if (zero_order_) {
+			// the beam of a position is kept in the slice of its first state
+			for (int index = 0; index < positions; index++) {
+				int beam = offsets_[index];
+				List<State> states = candidates_.get(index);
+				for (int state_index = 0; state_index < states.size(); state_index++) {
+					insert(beam, states.get(state_index).getScore(),
+							state_index);
+				}
+				assert lengths_[beam] > 0;
+			}
+			return;
+		}
+
+		int num_previous_states = 1;
+		for (int index = 0; index < positions; index++) {
+			List<State> states = candidates_.get(index);
+			int previous_offset = (index > 0) ? offsets_[index - 1] : -1;
+
+			for (int state_index = 0; state_index < states.size(); state_index++) {
+				State state = states.get(state_index);
+				int beam = offsets_[index] + state_index;
+
+				for (int previous_state_index = 0; previous_state_index < num_previous_states; previous_state_index++) {
+					State transition = state.getTransition(previous_state_index);
+
+					if (transition == null) {
+						continue;
+					}
+
+					double score = state.getScore() + transition.getScore();
+
+					if (index > 0) {
+						score += scores_[(previous_offset + previous_state_index)
+								* beam_size_];
+					}
+
+					insert(beam, score, previous_state_index);
+				}
+				assert lengths_[beam] > 0;
+			}
+			num_previous_states = states.size();
+		}
+	}
+
+	/**
+	 * Inserts the entry into the beam of the state, behind the entries of
+	 * equal score.
+	 */
+	private void insert(int beam, double score, int previous_state_index) {
+		int start = beam * beam_size_;
+		int length = lengths_[beam];
+
+		int rank = length;
+		while (rank > 0 && scores_[start + rank - 1] < score) {
+			rank--;
+		}
+
+		if (rank >= beam_size_) {
+			return;
+		}
+
+		int last = Math.min(length, beam_size_ - 1);
+		for (int move = last; move > rank; move--) {
+			scores_[start + move] = scores_[start + move - 1];
+			previous_[start + move] = previous_[start + move - 1];
+		}
+		scores_[start + rank] = score;
+		previous_[start + rank] = previous_state_index;
+
+		if (length < beam_size_) {
+			lengths_[beam] = length + 1;
+		}
+	}
+
+	@Override
+	public Hypothesis getViterbiSequence() {
+		init();
+		return getSequenceBySignature(new int[getSignatureLength()]);
+	}
+
+	private int getSignatureLength() {
+		return zero_order_ ? candidates_.size() : candidates_.size() - 1;
+	}
+
+	public Hypothesis getSequenceBySignature(int[] signature) {
+		init();
+
+		if (zero_order_) {
+			List<Integer> list = new ArrayList<Integer>(signature.length);
+			double score = 0.;
+			for (int index = 0; index < signature.length; index++) {
+				int beam = offsets_[index];
+				int rank = signature[index];
+				if (rank >= lengths_[beam]) {
+					return null;
+				}
+				score += scores_[beam * beam_size_ + rank];
+				list.add(previous_[beam * beam_size_ + rank]);
+			}
+			return new Hypothesis(list, score, signature);
+		}
+
+		int index = candidates_.size() - 1;
+		int[] states = new int[candidates_.size()];
+		int state_index = 0;
+		double score = 0.;
+		boolean first = true;
+
+		while (index >= 1) {
+			int rank = signature[index - 1];
+			int beam = offsets_[index] + state_index;
+
+			if (rank >= lengths_[beam]) {
+				return null;
+			}
+
+			double entry_score = scores_[beam * beam_size_ + rank];
+			if (first) {
+				score = entry_score;
+				first = false;
+			}
+
+			if (rank != 0) {
+				score += entry_score - scores_[beam * beam_size_];
+			}
+
+			states[index] = state_index;
+			state_index = previous_[beam * beam_size_ + rank];
+			index--;
+		}
+		states[0] = state_index;
+
+		if (first) {
+			return null;
+		}
+
+		List<Integer> list = new ArrayList<Integer>(states.length);
+		for (int state : states) {
+			list.add(state);
+		}
+		return new Hypothesis(list, score, signature);
+	}
+
+	@Override
+	public List<Hypothesis> getNbestSequences() {
+		init();
+		List<Hypothesis> list = new LinkedList<Hypothesis>();
+
+		int[] signature = new int[getSignatureLength()];
+		PriorityQueue<Hypothesis> queue = new PriorityQueue<Hypothesis>();
+		queue.add(getSequenceBySignature(signature));
+
+		while (list.size() < beam_size_) {
+			Hypothesis h = queue.poll();
+
+			if (h == null) {
+				break;
+			}
+
+			list.add(h);
+			signature = h.getSignature();
+
+			// a signature can be reached twice, the path is then returned
+			// twice as by SequenceViterbiLattice
+			for (int index = 0; index < signature.length; index++) {
+				int[] new_signature = Arrays.copyOf(signature, signature.length);
+				new_signature[index]++;
+				h = getSequenceBySignature(new_signature);
+				if (h != null) {
+					queue.add(h);
+				}
+			}
+		}
+		return list;
+	}
+
+	public List<List<State>> prune() {
+		init();
+		List<List<State>> candidates = new ArrayList<List<State>>(
+				candidates_.size());
+
+		if (zero_order_) {
+			for (int index = 0; index < candidates_.size(); index++) {
+				int beam = offsets_[index];
+				List<State> states = new ArrayList<State>(lengths_[beam]);
+				for (int rank = 0; rank < lengths_[beam]; rank++) {
+					states.add(candidates_.get(index).get(
+							previous_[beam * beam_size_ + rank]));
+				}
+				candidates.add(states);
+			}
+			return candidates;
+		}
+
+		List<Set<Integer>> candidate_sets = new ArrayList<Set<Integer>>(
+				candidates_.size());
+		for (int index = 0; index < candidates_.size(); index++) {
+			candidate_sets.add(new HashSet<Integer>());
+		}
+
+		for (Hypothesis h : getNbestSequences()) {
+			int index = 0;
+			int previous_state_index = 0;
+			for (int state_index : h.getStates()) {
+				candidate_sets.get(index).add(
+						state_index * getNumPreviousStates(index)
+								+ previous_state_index);
+				previous_state_index = state_index;
+				index++;
+			}
+		}
+
+		int[] index_map = null;
+		for (int index = 0; index < candidates_.size(); index++) {
+			int previous_num_candidates = getNumPreviousStates(index);
+			int[] new_index_map = new int[candidates_.get(index).size()];
+			Arrays.fill(new_index_map, -1);
+
+			List<State> states = new ArrayList<State>(candidate_sets.get(index)
+					.size());
+			for (int encoded_indexes : candidate_sets.get(index)) {
+				int state_index = encoded_indexes / previous_num_candidates;
+				int previous_state_index = encoded_indexes
+						% previous_num_candidates;
+				State old_state = candidates_.get(index).get(state_index);
+
+				int new_state_index = new_index_map[state_index];
+				if (new_state_index < 0) {
+					new_state_index = states.size();
+					new_index_map[state_index] = new_state_index;
+					State state = old_state;
+					if (index > 0) {
+						state = state.copy();
+						state.setTransitions(new Transition[candidates.get(
+								index - 1).size()]);
+					}
+					states.add(state);
+				}
+
+				if (index > 0) {
+					states.get(new_state_index).getTransitions()[index_map[previous_state_index]] = old_state
+							.getTransitions()[previous_state_index];
+				}
+			}
+
+			candidates.add(states);
+			index_map = new_index_map;
+		}
+		return candidates;
+	}
+
+	private int getNumPreviousStates(int index) {
+		return (index > 0) ? candidates_.get(index - 1).size() : 1;
+	}
+
+	@Override
+	public List<List<State>> getCandidates() {
+		return candidates_;
+	}
+}
@@ -9,7 +9,7 @@ import java.util.List;
 
 import marmot.core.State;
 import marmot.core.Transition;
-import marmot.core.WeightVector;
+import marmot.core.WeightUpdater;
 import marmot.util.Numerics;
 
 
@@ -168,7 +168,7 @@ public class SequenceSumLattice implements SumLattice {
 	}
 
 	@Override
-	public double update(WeightVector weights, double step_width) {
+	public double update(WeightUpdater weights, double step_width) {
 		init();
 		double ll = 0;
 
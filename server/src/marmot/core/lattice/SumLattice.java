@@ -6,12 +6,12 @@ package marmot.core.lattice;
 import java.util.List;
 
 import marmot.core.State;
-import marmot.core.WeightVector;
+import marmot.core.WeightUpdater;
 
 
 
 public interface SumLattice extends Lattice {
-	double update(WeightVector weights_, double step_width);
+	double update(WeightUpdater weights_, double step_width);
 	int getOrder();
 	int getLevel();
 	void setGoldCandidates(List<Integer> candidates);
@@ -8,7 +8,7 @@ import java.util.Collection;
 import java.util.List;
 
 import marmot.core.State;
-import marmot.core.WeightVector;
+import marmot.core.WeightUpdater;
 import marmot.util.Check;
 import marmot.util.Numerics;
 
@@ -120,7 +120,7 @@ public class ZeroOrderSumLattice implements SumLattice {
 //	}
 
 	@Override
-	public double update(WeightVector weights, double step_width) {
+	public double update(WeightUpdater weights, double step_width) {
 		init();
 		double ll = 0;
 		
@@ -141,7 +141,7 @@ public class ZeroOrderSumLattice implements SumLattice {
 	}
 
 	private void update(List<State> states, int gold_candidate_index,
-			double score_sum, WeightVector weights, double step_width) {
+			double score_sum, WeightUpdater weights, double step_width) {
 		int candidate_index = 0;
 		for (State state : states) {
 			assert state.getZeroOrderState() == state;
@@ -122,6 +122,26 @@ public class EvalResult {
 		
 	}
 
+	public int getTotal() {
+		return total_;
+	}
+
+	public int getPosCorrect() {
+		return pos_correct_;
+	}
+
+	public int getMorphCorrect() {
+		return morph_correct_;
+	}
+
+	public double getPosAccuracy() {
+		return pos_correct_ * 100. / total_;
+	}
+
+	public double getMorphAccuracy() {
+		return morph_correct_ * 100. / total_;
+	}
+
 	public void report(boolean verbose) {
 		System.out.format("PoS: %d / %d = %g\n", pos_correct_, total_,
 				pos_correct_ * 100. / total_);
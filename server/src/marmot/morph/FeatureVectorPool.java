@@ -0,0 +1,50 @@
+package marmot.morph;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import marmot.core.FeatureVector;
+
+/**
+ * Feature vectors of the sentence that is tagged by one thread. The vectors
+ * are handed out between begin and end and reused by the next sentence.
+ */
+final class FeatureVectorPool {
+
+	// vectors kept after long sentences
+	private static final int MAX_KEPT_ = 1 << 14;
+
+	private final List<MorphFeatureVector> vectors_ = new ArrayList<MorphFeatureVector>();
+	private int used_;
+	private boolean active_;
+
+	void begin() {
+		used_ = 0;
+		active_ = true;
+	}
+
+	void end() {
+		active_ = false;
+		used_ = 0;
+		for (int index = vectors_.size() - 1; index >= MAX_KEPT_; index--) {
+			vectors_.remove(index);
+		}
+	}
+
+	boolean isActive() {
+		return active_;
+	}
+
+	MorphFeatureVector get(int capacity, FeatureVector vector, boolean concat) {
+		MorphFeatureVector new_vector;
+		if (used_ < vectors_.size()) {
+			new_vector = vectors_.get(used_);
+			new_vector.reset(capacity, vector, concat);
+		} else {
+			new_vector = new MorphFeatureVector(capacity, vector, concat);
+			vectors_.add(new_vector);
+		}
+		used_++;
+		return new_vector;
+	}
+}
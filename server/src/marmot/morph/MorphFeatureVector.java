@@ -22,6 +22,12 @@ public class MorphFeatureVector extends FeatureVector {
 		word_index_ = -1;
 	}
 	
+	@Override
+	protected void reset(int capacity, FeatureVector vector, boolean concat) {
+		super.reset(capacity, vector, concat);
+		word_index_ = -1;
+	}
+
 	public int getWordIndex() {
 		return word_index_;
 	}
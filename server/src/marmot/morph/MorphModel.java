@@ -50,6 +50,7 @@ public class MorphModel extends Model {
 
 	private Trie trie_;
 	private boolean verbose_;
+	private transient boolean read_only_;
 	private boolean shape_;
 	private boolean tag_morph_;
 	private int morph_index_;
@@ -430,13 +431,33 @@ public class MorphModel extends Model {
 	}
 
 	public void addIndexes(Word word, boolean insert) {
+		if (read_only_) {
+			// a read-only model is shared by the tagging threads
+			insert = false;
+		}
+		addFormIndexes(word, insert);
+		addTokenIndexes(word, insert);
+	}
+
+	/**
+	 * Sets the indexes of a word whose form has already been indexed in form,
+	 * the indexes that only depend on the form are shared with form.
+	 */
+	public void addIndexes(Word word, Word form) {
+		assert word.getWordForm().equals(form.getWordForm());
+		word.setWordIndex(form.getWordFormIndex());
+		word.setCharIndexes(form.getCharIndexes());
+		word.setWordSignature(form.getWordSignature());
+		word.setWordShapeIndex(form.getWordShapeIndex());
+		addTokenIndexes(word, false);
+	}
+
+	private void addFormIndexes(Word word, boolean insert) {
 		String word_form = word.getWordForm();
 
 		int word_index = word_table_.toIndex(word_form, -1, insert);
 		word.setWordIndex(word_index);
 
-		word.setTagIndexes(getTagIndexes(word, -1, insert));
-
 		short[] char_indexes = new short[word_form.length()];
 		for (int index = 0; index < word_form.length(); index++) {
 			char_indexes[index] = (short) char_table_.toIndex(
@@ -480,6 +501,12 @@ public class MorphModel extends Model {
 
 		word.setWordSignature(signature);
 
+		addShape(word, insert);
+	}
+
+	private void addTokenIndexes(Word word, boolean insert) {
+		word.setTagIndexes(getTagIndexes(word, -1, insert));
+
 		String[] token_features = word.getTokenFeatures();
 		if (token_features != null && token_feature_table_ != null) {
 			int[] indexes = new int[token_features.length];
@@ -503,8 +530,6 @@ public class MorphModel extends Model {
 			}
 			word.setWeightedTokenFeatureIndexes(indexes);
 		}
-		
-		addShape(word, insert);
 	}
 
 	private int[] getSubTags(String morph, int level, boolean insert, int offset) {
@@ -703,5 +728,17 @@ public class MorphModel extends Model {
 	public void setVerbose(boolean verbose) {
 		verbose_ = verbose;
 	}
+
+	/**
+	 * In read-only mode addIndexes doesn't insert into the tables, even if
+	 * asked to, unknown words, characters and features get the index -1.
+	 */
+	public void setReadOnly(boolean read_only) {
+		read_only_ = read_only;
+	}
+
+	public boolean isReadOnly() {
+		return read_only_;
+	}
 	
 }
@@ -3,7 +3,13 @@
 
 package marmot.morph;
 
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
 
 import marmot.core.Model;
 import marmot.core.Sequence;
@@ -16,6 +22,8 @@ public class MorphTagger extends SimpleTagger {
 
 	private static final long serialVersionUID = 1L;
 	private boolean normalize_forms_;
+	// decodes the sentences of tagBatch, created on first use
+	private transient volatile ForkJoinPool pool_;
 
 	public MorphTagger(Model model, int order, WeightVector weight_vector) {
 		super(model, order, weight_vector);
@@ -34,7 +42,124 @@ public class MorphTagger extends SimpleTagger {
 			model.addIndexes(word, false);
 		}
 		
-		return super.tag(sequence);
+		return decode(sequence);
+	}
+
+	private List<List<String>> decode(Sequence sequence) {
+		MorphWeightVector weights = (MorphWeightVector) getWeightVector();
+		weights.beginSentence();
+		try {
+			return super.tag(sequence);
+		} finally {
+			weights.endSentence();
+		}
+	}
+
+	/**
+	 * Tags the sentences of a document in the pool of the tagger, see
+	 * tagBatch(List, ForkJoinPool). The pool has one thread per core and is
+	 * shared by all callers, so concurrent batches don't add threads.
+	 */
+	public List<List<List<String>>> tagBatch(List<Sequence> sequences) {
+		return tagBatch(sequences, getPool());
+	}
+
+	private ForkJoinPool getPool() {
+		ForkJoinPool pool = pool_;
+		if (pool == null) {
+			synchronized (this) {
+				pool = pool_;
+				if (pool == null) {
+					pool = new ForkJoinPool(Runtime.getRuntime()
+							.availableProcessors());
+					pool_ = pool;
+				}
+			}
+		}
+		return pool;
+	}
+
+	/**
+	 * Tags the sentences of a document. Every distinct word form of the batch
+	 * is indexed once, the sentences are then decoded in parallel by the
+	 * pool. While the feature set is extended the sentences are decoded one
+	 * after the other.
+	 * 
+	 * @return the tags of the sentences, as tag(sequence) would return them
+	 */
+	public List<List<List<String>>> tagBatch(List<Sequence> sequences,
+			ForkJoinPool pool) {
+		Sequence[] prepared = new Sequence[sequences.size()];
+		MorphModel model = (MorphModel) getModel();
+		Map<String, Word> forms = new HashMap<String, Word>();
+
+		int index = 0;
+		for (Sequence sequence : sequences) {
+			if (normalize_forms_) {
+				sequence = SentenceNormalizer.normalizeSentence(sequence);
+			}
+
+			for (Token token : sequence) {
+				Word word = (Word) token;
+				Word form = forms.get(word.getWordForm());
+				if (form == null) {
+					model.addIndexes(word, false);
+					forms.put(word.getWordForm(), word);
+				} else {
+					model.addIndexes(word, form);
+				}
+			}
+			prepared[index++] = sequence;
+		}
+
+		List<List<List<String>>> tags = new ArrayList<List<List<String>>>(
+				Collections.<List<List<String>>> nCopies(prepared.length, null));
+
+		if (((MorphWeightVector) getWeightVector()).isExtendFeatureSet()) {
+			for (index = 0; index < prepared.length; index++) {
+				tags.set(index, decode(prepared[index]));
+			}
+		} else if (prepared.length > 0) {
+			pool.invoke(new DecodeTask(prepared, tags, 0, prepared.length));
+		}
+		return tags;
+	}
+
+	private class DecodeTask extends RecursiveAction {
+		private static final long serialVersionUID = 1L;
+		private final Sequence[] sequences_;
+		private final List<List<List<String>>> tags_;
+		private final int start_;
+		private final int end_;
+
+		DecodeTask(Sequence[] sequences, List<List<List<String>>> tags,
+				int start, int end) {
+			sequences_ = sequences;
+			tags_ = tags;
+			start_ = start;
+			end_ = end;
+		}
+
+		@Override
+		protected void compute() {
+			if (end_ - start_ == 1) {
+				tags_.set(start_, decode(sequences_[start_]));
+				return;
+			}
+			int middle = (start_ + end_) >>> 1;
+			invokeAll(new DecodeTask(sequences_, tags_, start_, middle),
+					new DecodeTask(sequences_, tags_, middle, end_));
+		}
+	}
+
+	/**
+	 * Puts the model and the weight vector in read-only mode for inference:
+	 * tagging doesn't change any table of the model, unknown features are not
+	 * added to the feature table.
+	 */
+	public void setReadOnly(boolean read_only) {
+		((MorphModel) getModel()).setReadOnly(read_only);
+		((MorphWeightVector) getWeightVector()).setReadOnly(read_only);
 	}
 	
 }
@@ -3,7 +3,11 @@
 
 package marmot.morph;
 
+import java.util.ArrayList;
 import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
 
 import marmot.core.ArrayFloatFeatureVector;
 import marmot.core.ConcatFloatFeatureVector;
@@ -18,6 +22,8 @@ import marmot.core.Token;
 import marmot.core.WeightVector;
 import marmot.core.ZeroFloatFeatureVector;
 import marmot.util.Encoder;
+import marmot.util.FeatureIndex;
+import marmot.util.QuantizedArray;
 import marmot.util.SymbolTable;
 
 public class MorphWeightVector implements WeightVector, FloatWeights {
@@ -28,14 +34,27 @@ public class MorphWeightVector implements WeightVector, FloatWeights {
 
 	private static final int ENCODER_CAPACITY_ = 10;
 
-	private transient Encoder encoder_;
+	// encoders of the threads that extract features
+	private transient volatile ThreadLocal<Encoder> encoders_;
 	private transient double[] accumulated_penalty_;
 	private boolean penalize_ = false;
 	private double linear_penalty_;
 
 	private double[] weights_;
+	// replaces weights_ after quantize
+	private QuantizedArray quantized_weights_;
 
 	private boolean extend_feature_set_;
+	// index of the first staged feature, above the indexes of the feature table
+	private static final int STAGED_INDEX_ = 1 << 30;
+	// new features of the current mini-batch, see setStageFeatures
+	private transient Map<Feature, Integer> staged_features_;
+	private transient List<Feature> staged_list_;
+	// immutable index of the features in read-only mode
+	private transient FeatureIndex feature_index_;
+	// feature vectors of the sentences tagged in read-only mode
+	private transient volatile ThreadLocal<FeatureVectorPool> vector_pools_;
+	private transient boolean read_only_;
 	private MorphModel model_;
 	private SymbolTable<Feature> feature_table_;
 
@@ -97,9 +116,94 @@ public class MorphWeightVector implements WeightVector, FloatWeights {
 
 	@Override
 	public void setExtendFeatureSet(boolean flag) {
+		if (flag && read_only_) {
+			throw new IllegalStateException("Weight vector is read-only");
+		}
 		extend_feature_set_ = flag;
 	}
 
+	public boolean isExtendFeatureSet() {
+		return extend_feature_set_;
+	}
+
+	/**
+	 * While staging, the feature table is only read and new features get a
+	 * temporary index above the indexes of the table, so that the sentences of
+	 * a mini-batch can be processed by several threads. A staged feature has
+	 * a weight of zero and is added to the table when its weight is first
+	 * updated, the indexes of the new features then depend on the order of the
+	 * updates only.
+	 */
+	@Override
+	public void setStageFeatures(boolean stage) {
+		if (stage) {
+			staged_features_ = new HashMap<Feature, Integer>();
+			staged_list_ = new ArrayList<Feature>();
+		} else {
+			staged_features_ = null;
+			staged_list_ = null;
+		}
+	}
+
+	/**
+	 * In read-only mode the feature table and the weights are never changed,
+	 * the features are looked up in an immutable FeatureIndex directly from
+	 * the bits of the encoder and the feature vectors of a sentence are reused
+	 * by the next sentence of the thread (see beginSentence). The weight vector
+	 * can then be shared by threads that only read.
+	 */
+	public void setReadOnly(boolean read_only) {
+		if (read_only) {
+			extend_feature_set_ = false;
+			feature_index_ = new FeatureIndex(feature_table_);
+			vector_pools_ = new ThreadLocal<FeatureVectorPool>() {
+				@Override
+				protected FeatureVectorPool initialValue() {
+					return new FeatureVectorPool();
+				}
+			};
+		} else {
+			feature_index_ = null;
+			vector_pools_ = null;
+		}
+		read_only_ = read_only;
+	}
+
+	public boolean isReadOnly() {
+		return read_only_;
+	}
+
+	/**
+	 * Starts the tagging of a sentence in the current thread, in read-only mode
+	 * the feature vectors of the sentence are taken from the pool of the thread
+	 * and must not be used after endSentence.
+	 */
+	public void beginSentence() {
+		ThreadLocal<FeatureVectorPool> pools = vector_pools_;
+		if (pools != null) {
+			pools.get().begin();
+		}
+	}
+
+	public void endSentence() {
+		ThreadLocal<FeatureVectorPool> pools = vector_pools_;
+		if (pools != null) {
+			pools.get().end();
+		}
+	}
+
+	private MorphFeatureVector newVector(int capacity, FeatureVector vector,
+			boolean concat) {
+		ThreadLocal<FeatureVectorPool> pools = vector_pools_;
+		if (pools != null) {
+			FeatureVectorPool pool = pools.get();
+			if (pool.isActive()) {
+				return pool.get(capacity, vector, concat);
+			}
+		}
+		return new MorphFeatureVector(capacity, vector, concat);
+	}
+
 	@Override
 	public void setPenalty(boolean penalize, double linear_penalty) {
 		if (!penalize) {
@@ -110,7 +214,7 @@ public class MorphWeightVector implements WeightVector, FloatWeights {
 			penalize_ = true;
 			linear_penalty_ = (double) (linear_penalty / scale_factor_);
 			if (accumulated_penalty_ == null) {
-				accumulated_penalty_ = new double[weights_.length];
+				accumulated_penalty_ = new double[getWeightsLength()];
 			}
 			// if (accumulated_float_penalty_ == null && float_weights_ != null)
 			// {
@@ -122,25 +226,24 @@ public class MorphWeightVector implements WeightVector, FloatWeights {
 
 	@Override
 	public FeatureVector extractStateFeatures(State state) {
-		prepareEncoder();
-		MorphFeatureVector new_vector = new MorphFeatureVector(
-				1 + state.getLevel(), state.getVector());
+		Encoder encoder = prepareEncoder();
+		MorphFeatureVector new_vector = newVector(1 + state.getLevel(),
+				state.getVector(), true);
 
 		int fc = 0;
 
-		encoder_.append(0, order_bits_);
-		encoder_.append(state.getLevel() + 1, level_bits_);
-		encoder_.append(fc, 2);
+		encoder.append(0, order_bits_);
+		encoder.append(state.getLevel() + 1, level_bits_);
+		encoder.append(fc, 2);
 
 		State run = state.getZeroOrderState();
 		while (run != null) {
-			encoder_.append(run.getLevel(), level_bits_);
-			encoder_.append(run.getIndex(), tag_bits_[run.getLevel()]);
-			new_vector.add(getFeatureIndex(encoder_
-					.getFeature(extend_feature_set_)));
+			encoder.append(run.getLevel(), level_bits_);
+			encoder.append(run.getIndex(), tag_bits_[run.getLevel()]);
+			new_vector.add(getFeatureIndex(encoder));
 			run = run.getSubLevelState();
 		}
-		encoder_.reset();
+		encoder.reset();
 		fc++;
 
 		new_vector.setIsState(true);
@@ -151,7 +254,7 @@ public class MorphWeightVector implements WeightVector, FloatWeights {
 
 	@Override
 	public FeatureVector extractStateFeatures(Sequence sentence, int token_index) {
-		prepareEncoder();
+		Encoder encoder = prepareEncoder();
 		Token word = sentence.get(token_index);
 		Word token = (Word) word;
 
@@ -164,34 +267,33 @@ public class MorphWeightVector implements WeightVector, FloatWeights {
 		assert chars != null;
 		int form_index = token.getWordFormIndex();
 		boolean is_rare = model_.isRare(form_index);
-		MorphFeatureVector features = new MorphFeatureVector(
+		MorphFeatureVector features = newVector(
 				NUM_STATE_FEATURES_
 						+ 2
 						+ ((token.getTokenFeatureIndexes() == null) ? 0
 								: token.getTokenFeatureIndexes().length)
-						+ ((mdict_indexes == null) ? 0 : mdict_indexes.length));
+						+ ((mdict_indexes == null) ? 0 : mdict_indexes.length),
+				null, false);
 		int fc = 0;
 
 		if (use_state_features_) {
 			if (form_index >= 0) {
-				encoder_.append(0, order_bits_);
-				encoder_.append(0, level_bits_);
-				encoder_.append(fc, state_feature_bits_);
-				encoder_.append(form_index, word_bits_);
-				features.add(getFeatureIndex(encoder_
-						.getFeature(extend_feature_set_)));
-				encoder_.reset();
+				encoder.append(0, order_bits_);
+				encoder.append(0, level_bits_);
+				encoder.append(fc, state_feature_bits_);
+				encoder.append(form_index, word_bits_);
+				features.add(getFeatureIndex(encoder));
+				encoder.reset();
 
 			}
 			fc++;
 
-			encoder_.append(0, order_bits_);
-			encoder_.append(0, level_bits_);
-			encoder_.append(fc, state_feature_bits_);
-			encoder_.append(is_rare);
-			features.add(getFeatureIndex(encoder_
-					.getFeature(extend_feature_set_)));
-			encoder_.reset();
+			encoder.append(0, order_bits_);
+			encoder.append(0, level_bits_);
+			encoder.append(fc, state_feature_bits_);
+			encoder.append(is_rare);
+			features.add(getFeatureIndex(encoder));
+			encoder.reset();
 
 			fc++;
 
@@ -199,19 +301,17 @@ public class MorphWeightVector implements WeightVector, FloatWeights {
 				int pform_index = ((Word) sentence.get(token_index - 1))
 						.getWordFormIndex();
 				if (pform_index >= 0) {
-					encoder_.append(0, order_bits_);
-					encoder_.append(0, level_bits_);
-					encoder_.append(fc, state_feature_bits_);
-					encoder_.append(pform_index, word_bits_);
-					features.add(getFeatureIndex(encoder_
-							.getFeature(extend_feature_set_)));
+					encoder.append(0, order_bits_);
+					encoder.append(0, level_bits_);
+					encoder.append(fc, state_feature_bits_);
+					encoder.append(pform_index, word_bits_);
+					features.add(getFeatureIndex(encoder));
 
 					if (form_index >= 0 && use_bigrams_) {
-						encoder_.append(form_index, word_bits_);
-						features.add(getFeatureIndex(encoder_
-								.getFeature(extend_feature_set_)));
+						encoder.append(form_index, word_bits_);
+						features.add(getFeatureIndex(encoder));
 					}
-					encoder_.reset();
+					encoder.reset();
 				}
 
 				int pshape_index = -1;
@@ -222,16 +322,15 @@ public class MorphWeightVector implements WeightVector, FloatWeights {
 				}
 
 				if (pshape_index >= 0) {
-					encoder_.append(0, order_bits_);
-					encoder_.append(0, level_bits_);
-					encoder_.append(fc + 1, state_feature_bits_);
-					encoder_.append(pshape_index, shape_bits_);
+					encoder.append(0, order_bits_);
+					encoder.append(0, level_bits_);
+					encoder.append(fc + 1, state_feature_bits_);
+					encoder.append(pshape_index, shape_bits_);
 
 					if (model_.isRare(pform_index)) {
-						features.add(getFeatureIndex(encoder_
-								.getFeature(extend_feature_set_)));
+						features.add(getFeatureIndex(encoder));
 					}
-					encoder_.reset();
+					encoder.reset();
 				}
 			}
 			fc++;
@@ -242,19 +341,17 @@ public class MorphWeightVector implements WeightVector, FloatWeights {
 						.getWordFormIndex();
 
 				if (nform_index >= 0) {
-					encoder_.append(0, order_bits_);
-					encoder_.append(0, level_bits_);
-					encoder_.append(fc, state_feature_bits_);
-					encoder_.append(nform_index, word_bits_);
-					features.add(getFeatureIndex(encoder_
-							.getFeature(extend_feature_set_)));
+					encoder.append(0, order_bits_);
+					encoder.append(0, level_bits_);
+					encoder.append(fc, state_feature_bits_);
+					encoder.append(nform_index, word_bits_);
+					features.add(getFeatureIndex(encoder));
 
 					if (form_index >= 0 && use_bigrams_) {
-						encoder_.append(form_index, word_bits_);
-						features.add(getFeatureIndex(encoder_
-								.getFeature(extend_feature_set_)));
+						encoder.append(form_index, word_bits_);
+						features.add(getFeatureIndex(encoder));
 					}
-					encoder_.reset();
+					encoder.reset();
 				}
 
 				int nshape_index = -1;
@@ -263,17 +360,16 @@ public class MorphWeightVector implements WeightVector, FloatWeights {
 							.getWordShapeIndex();
 				}
 				if (nshape_index >= 0) {
-					encoder_.append(0, order_bits_);
-					encoder_.append(0, level_bits_);
-					encoder_.append(fc + 1, state_feature_bits_);
-					encoder_.append(nshape_index, shape_bits_);
+					encoder.append(0, order_bits_);
+					encoder.append(0, level_bits_);
+					encoder.append(fc + 1, state_feature_bits_);
+					encoder.append(nshape_index, shape_bits_);
 
 					if (model_.isRare(nform_index)) {
-						features.add(getFeatureIndex(encoder_
-								.getFeature(extend_feature_set_)));
+						features.add(getFeatureIndex(encoder));
 					}
 
-					encoder_.reset();
+					encoder.reset();
 				}
 			}
 			fc++;
@@ -285,33 +381,31 @@ public class MorphWeightVector implements WeightVector, FloatWeights {
 			}
 
 			if (is_rare && shape_index >= 0) {
-				encoder_.append(0, order_bits_);
-				encoder_.append(0, level_bits_);
-				encoder_.append(fc, state_feature_bits_);
-				encoder_.append(shape_index, shape_bits_);
-				features.add(getFeatureIndex(encoder_
-						.getFeature(extend_feature_set_)));
-				encoder_.reset();
+				encoder.append(0, order_bits_);
+				encoder.append(0, level_bits_);
+				encoder.append(fc, state_feature_bits_);
+				encoder.append(shape_index, shape_bits_);
+				features.add(getFeatureIndex(encoder));
+				encoder.reset();
 			}
 			fc++;
 
 			if (is_rare) {
 				int signature = token.getWordSignature();
-				encoder_.append(0, order_bits_);
-				encoder_.append(0, level_bits_);
-				encoder_.append(fc, state_feature_bits_);
-				encoder_.append(signature, 4);
-				features.add(getFeatureIndex(encoder_
-						.getFeature(extend_feature_set_)));
-				encoder_.reset();
+				encoder.append(0, order_bits_);
+				encoder.append(0, level_bits_);
+				encoder.append(fc, state_feature_bits_);
+				encoder.append(signature, 4);
+				features.add(getFeatureIndex(encoder));
+				encoder.reset();
 			}
 			fc++;
 
 			// Prefix feature
 			if (is_rare) {
-				encoder_.append(0, order_bits_);
-				encoder_.append(0, level_bits_);
-				encoder_.append(fc, state_feature_bits_);
+				encoder.append(0, order_bits_);
+				encoder.append(0, level_bits_);
+				encoder.append(fc, state_feature_bits_);
 
 				for (int position = 0; position < Math.min(chars.length,
 						MAX_AFFIX_LENGTH_); position++) {
@@ -321,19 +415,18 @@ public class MorphWeightVector implements WeightVector, FloatWeights {
 						// Unknown character!
 						break;
 					}
-					encoder_.append(c, char_bits_);
-					features.add(getFeatureIndex(encoder_
-							.getFeature(extend_feature_set_)));
+					encoder.append(c, char_bits_);
+					features.add(getFeatureIndex(encoder));
 				}
-				encoder_.reset();
+				encoder.reset();
 			}
 			fc++;
 
 			// Suffix feature
 			if (is_rare) {
-				encoder_.append(0, order_bits_);
-				encoder_.append(0, level_bits_);
-				encoder_.append(fc, state_feature_bits_);
+				encoder.append(0, order_bits_);
+				encoder.append(0, level_bits_);
+				encoder.append(fc, state_feature_bits_);
 				for (int position = 0; position < Math.min(chars.length,
 						MAX_AFFIX_LENGTH_); position++) {
 					short c = chars[chars.length - position - 1];
@@ -341,12 +434,11 @@ public class MorphWeightVector implements WeightVector, FloatWeights {
 						// Unknown character!
 						break;
 					}
-					encoder_.append(c, char_bits_);
-					features.add(getFeatureIndex(encoder_
-							.getFeature(extend_feature_set_)));
+					encoder.append(c, char_bits_);
+					features.add(getFeatureIndex(encoder));
 
 				}
-				encoder_.reset();
+				encoder.reset();
 			}
 			fc++;
 		}
@@ -356,14 +448,13 @@ public class MorphWeightVector implements WeightVector, FloatWeights {
 			
 			for (int token_feature_index : token_feature_indexes) {
 				if (token_feature_index >= 0) {
-					encoder_.append(0, order_bits_);
-					encoder_.append(0, level_bits_);
-					encoder_.append(fc, state_feature_bits_);
-
-					encoder_.append(token_feature_index, token_feature_bits_);
-					features.add(getFeatureIndex(encoder_
-							.getFeature(extend_feature_set_)));
-					encoder_.reset();
+					encoder.append(0, order_bits_);
+					encoder.append(0, level_bits_);
+					encoder.append(fc, state_feature_bits_);
+
+					encoder.append(token_feature_index, token_feature_bits_);
+					features.add(getFeatureIndex(encoder));
+					encoder.reset();
 				}
 			}
 			fc++;
@@ -388,13 +479,12 @@ public class MorphWeightVector implements WeightVector, FloatWeights {
 		if (mdict_indexes != null) {
 			for (int index : mdict_indexes) {
 				if (index >= 0) {
-					encoder_.append(0, order_bits_);
-					encoder_.append(0, level_bits_);
-					encoder_.append(fc, state_feature_bits_);
-					encoder_.append(index, mdict_bits_);
-					features.add(getFeatureIndex(encoder_
-							.getFeature(extend_feature_set_)));
-					encoder_.reset();
+					encoder.append(0, order_bits_);
+					encoder.append(0, level_bits_);
+					encoder.append(fc, state_feature_bits_);
+					encoder.append(index, mdict_bits_);
+					features.add(getFeatureIndex(encoder));
+					encoder.reset();
 				}
 			}
 		}
@@ -437,19 +527,69 @@ public class MorphWeightVector implements WeightVector, FloatWeights {
 		return vector;
 	}
 
+	/**
+	 * @return the index of the current feature of the encoder
+	 */
+	private int getFeatureIndex(Encoder encoder) {
+		FeatureIndex feature_index = feature_index_;
+		if (feature_index != null) {
+			return feature_index.get(encoder);
+		}
+		return getFeatureIndex(encoder.getFeature(extend_feature_set_));
+	}
+
 	private int getFeatureIndex(Feature feature) {
-		int index = feature_table_.toIndex(feature, -1, extend_feature_set_);
+		Map<Feature, Integer> staged_features = staged_features_;
+		if (staged_features != null && extend_feature_set_) {
+			return getStagedIndex(staged_features, feature);
+		}
+		if (extend_feature_set_) {
+			// the tagging threads may extend the table concurrently
+			synchronized (feature_table_) {
+				return feature_table_.toIndex(feature, -1, true);
+			}
+		}
+		int index = feature_table_.toIndex(feature, -1, false);
 		return index;
 	}
 
+	private int getStagedIndex(Map<Feature, Integer> staged_features,
+			Feature feature) {
+		int index = feature_table_.toIndex(feature, -1, false);
+		if (index >= 0) {
+			return index;
+		}
+		synchronized (staged_features) {
+			Integer staged_index = staged_features.get(feature);
+			if (staged_index == null) {
+				staged_index = STAGED_INDEX_ + staged_list_.size();
+				staged_features.put(feature, staged_index);
+				staged_list_.add(feature);
+			}
+			return staged_index;
+		}
+	}
+
+	/**
+	 * @return the index of the feature in the feature table, staged features
+	 *         are added to the table
+	 */
+	private int commitFeature(int feature) {
+		if (feature < STAGED_INDEX_) {
+			return feature;
+		}
+		return feature_table_.toIndex(
+				staged_list_.get(feature - STAGED_INDEX_), true);
+	}
+
 	@Override
 	public FeatureVector extractTransitionFeatures(State state) {
-		prepareEncoder();
+		Encoder encoder = prepareEncoder();
 
 		int max_level = state.getLevel();
 		int order = state.getOrder();
-		FeatureVector features = new FeatureVector(max_level + 1
-				+ model_.getNumSubTags());
+		FeatureVector features = newVector(max_level + 1
+				+ model_.getNumSubTags(), null, false);
 		for (int depth = 0; depth <= max_level; depth++) {
 			int level = max_level - depth;
 
@@ -458,30 +598,39 @@ public class MorphWeightVector implements WeightVector, FloatWeights {
 				continue;
 			}
 
-			encoder_.append(order, order_bits_);
-			encoder_.append(level, level_bits_);
-			encoder_.append(0, 1);
+			encoder.append(order, order_bits_);
+			encoder.append(level, level_bits_);
+			encoder.append(0, 1);
 			State run = state;
 			while (run != null) {
 
 				State sub_state = run.getSubLevel(depth);
 				int index = sub_state.getIndex();
 
-				encoder_.append(index, tag_bits_[level]);
+				encoder.append(index, tag_bits_[level]);
 				run = run.getPreviousSubOrderState();
 			}
-			features.add(getFeatureIndex(encoder_
-					.getFeature(extend_feature_set_)));
-			encoder_.reset();
+			features.add(getFeatureIndex(encoder));
+			encoder.reset();
 
 		}
 		return features;
 	}
 
 	protected double getWeight(int index) {
+		if (quantized_weights_ != null) {
+			return quantized_weights_.get(index);
+		}
 		return weights_[index];
 	}
 
+	private int getWeightsLength() {
+		if (quantized_weights_ != null) {
+			return quantized_weights_.length();
+		}
+		return weights_.length;
+	}
+
 	@Override
 	public double dotProduct(State state, FeatureVector vector) {
 		assert vector != null;
@@ -492,6 +641,9 @@ public class MorphWeightVector implements WeightVector, FloatWeights {
 
 		for (int findex = 0; findex < vector.size(); findex++) {
 			int feature = vector.get(findex);
+			if (feature >= STAGED_INDEX_) {
+				continue;
+			}
 			int index = getIndex(feature, tag_index);
 			score += getWeight(index);
 		}
@@ -546,6 +698,9 @@ public class MorphWeightVector implements WeightVector, FloatWeights {
 
 			for (int findex = 0; findex < vector.size(); findex++) {
 				int feature = vector.get(findex);
+				if (feature >= STAGED_INDEX_) {
+					continue;
+				}
 				int f_index = getIndex(feature, simple_index);
 				score += getWeight(f_index);
 			}
@@ -585,7 +740,7 @@ public class MorphWeightVector implements WeightVector, FloatWeights {
 	private int getIndex(int feature, int tag_index) {
 		int index = feature * total_num_tags_ + tag_index;
 
-		int capacity = weights_.length - 2 * max_level_;
+		int capacity = getWeightsLength() - 2 * max_level_;
 		int h = index;
 
 		h ^= (h >>> 20) ^ (h >>> 12);
@@ -658,7 +813,7 @@ public class MorphWeightVector implements WeightVector, FloatWeights {
 
 				int tag_index = getUniversalIndex(run);
 				for (int findex = 0; findex < vector.size(); findex++) {
-					int feature = vector.get(findex);
+					int feature = commitFeature(vector.get(findex));
 					int index = getIndex(feature, tag_index);
 					updateWeight(index, value);
 				}
@@ -714,7 +869,7 @@ public class MorphWeightVector implements WeightVector, FloatWeights {
 		for (int index : indexes) {
 			int simple_index = getSimpleSubMorphIndex(index);
 			for (int findex = 0; findex < vector.size(); findex++) {
-				int feature = vector.get(findex);
+				int feature = commitFeature(vector.get(findex));
 				int f_index = getIndex(feature, simple_index);
 				updateWeight(f_index, value);
 			}
@@ -750,7 +905,7 @@ public class MorphWeightVector implements WeightVector, FloatWeights {
 		int feature = model_.hasBeenObserved(word_index, level, product_index) ? 0
 				: 1;
 
-		int start_index = weights_.length - max_level_ * 2;
+		int start_index = getWeightsLength() - max_level_ * 2;
 		int index = start_index + level * 2 + feature;
 		return index;
 	}
@@ -770,11 +925,28 @@ public class MorphWeightVector implements WeightVector, FloatWeights {
 		return weight;
 	}
 
-	protected void prepareEncoder() {
-		if (encoder_ == null) {
-			encoder_ = new Encoder(ENCODER_CAPACITY_);
+	/**
+	 * @return the reset encoder of the current thread
+	 */
+	protected Encoder prepareEncoder() {
+		ThreadLocal<Encoder> encoders = encoders_;
+		if (encoders == null) {
+			synchronized (this) {
+				encoders = encoders_;
+				if (encoders == null) {
+					encoders = new ThreadLocal<Encoder>() {
+						@Override
+						protected Encoder initialValue() {
+							return new Encoder(ENCODER_CAPACITY_);
+						}
+					};
+					encoders_ = encoders;
+				}
+			}
 		}
-		encoder_.reset();
+		Encoder encoder = encoders.get();
+		encoder.reset();
+		return encoder;
 	}
 
 	@Override
@@ -797,12 +969,38 @@ public class MorphWeightVector implements WeightVector, FloatWeights {
 
 	@Override
 	public double[] getWeights() {
+		if (quantized_weights_ != null) {
+			return quantized_weights_.toArray();
+		}
 		return weights_;
 	}
 
 	@Override
 	public void setWeights(double[] weights) {
 		weights_ = weights;
+		quantized_weights_ = null;
+	}
+
+	/**
+	 * Replaces the weights by read-only float16 or int8 weights with a scale
+	 * per block of weights, the weights can't be trained afterwards.
+	 * 
+	 * @param type QuantizedArray.FLOAT16 or QuantizedArray.INT8
+	 * @param block_size the number of weights of a block, a power of two
+	 */
+	public void quantize(int type, int block_size) {
+		quantized_weights_ = QuantizedArray.quantize(getWeights(), type,
+				block_size);
+		weights_ = null;
+	}
+
+	public boolean isQuantized() {
+		return quantized_weights_ != null;
+	}
+
+	@Override
+	public boolean isTrainable() {
+		return !read_only_ && quantized_weights_ == null;
 	}
 
 	public MorphDictionary getMorphDict() {
@@ -0,0 +1,124 @@
+package marmot.morph.cmd;
+
+import java.util.Iterator;
+import java.util.List;
+
+import marmot.core.Sequence;
+import marmot.core.State;
+import marmot.core.Token;
+import marmot.core.lattice.ArrayViterbiLattice;
+import marmot.core.lattice.Hypothesis;
+import marmot.core.lattice.SequenceViterbiLattice;
+import marmot.core.lattice.SumLattice;
+import marmot.core.lattice.ViterbiLattice;
+import marmot.core.lattice.ZeroOrderSumLattice;
+import marmot.core.lattice.ZeroOrderViterbiLattice;
+import marmot.morph.MorphModel;
+import marmot.morph.MorphTagger;
+import marmot.morph.MorphWeightVector;
+import marmot.morph.Word;
+import marmot.morph.io.SentenceReader;
+import marmot.util.FileUtils;
+
+/**
+ * Decodes the candidates of every sentence of a test file with
+ * ArrayViterbiLattice and with SequenceViterbiLattice or
+ * ZeroOrderViterbiLattice and compares the Viterbi sequences and the n-best
+ * lists, states and scores. Exits with 1 if a sentence differs.
+ *
+ * The test file is given as for the Annotator, e.g.
+ * form-index=1,tag-index=4,morph-index=6,test.conll09
+ */
+public class LatticeChecker {
+
+	private static final int[] DEFAULT_BEAM_SIZES_ = { 1, 2, 5 };
+
+	public static void main(String[] args) {
+		if (args.length < 2) {
+			System.err.println("Usage: LatticeChecker <model-file> <test-file> [beam-size...]");
+			System.exit(1);
+		}
+
+		int[] beam_sizes = DEFAULT_BEAM_SIZES_;
+		if (args.length > 2) {
+			beam_sizes = new int[args.length - 2];
+			for (int index = 2; index < args.length; index++) {
+				beam_sizes[index - 2] = Integer.parseInt(args[index]);
+			}
+		}
+
+		MorphTagger tagger = FileUtils.loadFromFile(args[0]);
+		tagger.setReadOnly(true);
+		MorphModel model = (MorphModel) tagger.getModel();
+		MorphWeightVector weights = (MorphWeightVector) tagger.getWeightVector();
+
+		int num_sentences = 0;
+		int[] viterbi_diffs = new int[beam_sizes.length];
+		int[] nbest_diffs = new int[beam_sizes.length];
+
+		for (Sequence sequence : new SentenceReader(args[1])) {
+			for (Token token : sequence) {
+				model.addIndexes((Word) token, false);
+			}
+
+			weights.beginSentence();
+			try {
+				SumLattice sum_lattice = tagger.getSumLattice(false, sequence);
+				List<List<State>> candidates = sum_lattice.getCandidates();
+				boolean zero_order = sum_lattice instanceof ZeroOrderSumLattice;
+
+				for (int index = 0; index < beam_sizes.length; index++) {
+					int beam_size = beam_sizes[index];
+					ViterbiLattice expected;
+					if (zero_order) {
+						expected = new ZeroOrderViterbiLattice(candidates, beam_size);
+					} else {
+						expected = new SequenceViterbiLattice(candidates,
+								model.getBoundaryState(tagger.getNumLevels() - 1), beam_size);
+					}
+					ViterbiLattice actual = new ArrayViterbiLattice(candidates, zero_order, beam_size);
+
+					if (!equals(expected.getViterbiSequence(), actual.getViterbiSequence())) {
+						viterbi_diffs[index]++;
+					}
+					if (!equals(expected.getNbestSequences(), actual.getNbestSequences())) {
+						nbest_diffs[index]++;
+					}
+				}
+			} finally {
+				weights.endSentence();
+			}
+			num_sentences++;
+		}
+
+		boolean same = true;
+		for (int index = 0; index < beam_sizes.length; index++) {
+			System.out.format("beam %d: %d sentences, %d Viterbi and %d n-best differences\n",
+					beam_sizes[index], num_sentences, viterbi_diffs[index], nbest_diffs[index]);
+			same &= viterbi_diffs[index] == 0 && nbest_diffs[index] == 0;
+		}
+
+		if (!same) {
+			System.exit(1);
+		}
+	}
+
+	private static boolean equals(List<Hypothesis> expected, List<Hypothesis> actual) {
+		if (expected.size() != actual.size()) {
+			return false;
+		}
+		Iterator<Hypothesis> iter = actual.iterator();
+		for (Hypothesis h : expected) {
+			if (!equals(h, iter.next())) {
+				return false;
+			}
+		}
+		return true;
+	}
+
+	private static boolean equals(Hypothesis expected, Hypothesis actual) {
+		return expected.getStates().equals(actual.getStates())
+				&& Double.compare(expected.getScore(), actual.getScore()) == 0;
+	}
+
+}
@@ -0,0 +1,44 @@
+package marmot.morph.cmd;
+
+import java.io.Serializable;
+
+import marmot.core.Tagger;
+import marmot.morph.MorphWeightVector;
+import marmot.util.BinaryModel;
+import marmot.util.FileUtils;
+import marmot.util.QuantizedArray;
+
+/**
+ * Converts a gzipped serialized model (e.g. fin_model.marmot) to the binary
+ * format of BinaryModel, which FileUtils.loadFromFile maps on load. The
+ * weights can be quantized to float16 or int8 with a scale per block of
+ * weights.
+ */
+public class ModelExporter {
+
+	private static final int DEFAULT_BLOCK_SIZE_ = 1024;
+
+	public static void main(String[] args) {
+		if (args.length < 2 || args.length > 4) {
+			System.err.println("Usage: ModelExporter <model-file> <binary-model-file> [float16|int8 [block-size]]");
+			System.exit(1);
+		}
+
+		long time = System.currentTimeMillis();
+		Serializable model = FileUtils.loadFromFile(args[0]);
+		System.err.format("Loaded %s in %dms\n", args[0], System.currentTimeMillis() - time);
+
+		if (args.length > 2) {
+			int type = QuantizedArray.parseType(args[2]);
+			int block_size = (args.length > 3) ? Integer.parseInt(args[3]) : DEFAULT_BLOCK_SIZE_;
+			((MorphWeightVector) ((Tagger) model).getWeightVector()).quantize(type, block_size);
+		}
+
+		BinaryModel.saveToFile(model, args[1]);
+
+		time = System.currentTimeMillis();
+		FileUtils.loadFromFile(args[1]);
+		System.err.format("Wrote %s, loads in %dms\n", args[1], System.currentTimeMillis() - time);
+	}
+
+}
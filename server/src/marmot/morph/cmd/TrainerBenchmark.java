@@ -0,0 +1,60 @@
+package marmot.morph.cmd;
+
+import marmot.core.CrfTrainer;
+import marmot.core.Options;
+import marmot.morph.MorphEvaluator;
+import marmot.morph.MorphOptions;
+import marmot.morph.MorphResult;
+import marmot.util.Copy;
+
+/**
+ * Trains a model with CrfTrainer sentence by sentence and in mini-batches and
+ * prints the wall-clock time and the accuracy on the test file of both. Takes
+ * the training options, num-threads and batch-size (at least 2) are the ones
+ * of the mini-batches. Without a seed 42 is used, so that both runs see the
+ * same sentence order.
+ */
+public class TrainerBenchmark {
+
+	public static void main(String[] args) {
+		MorphOptions options = new MorphOptions();
+		options.setPropertiesFromStrings(args);
+
+		options.dieIfPropertyIsEmpty(MorphOptions.TRAIN_FILE);
+		options.dieIfPropertyIsEmpty(MorphOptions.TEST_FILE);
+		options.setProperty(MorphOptions.MODEL_FILE, "");
+		options.setProperty(Options.TRAINER,
+				CrfTrainer.class.getCanonicalName());
+
+		if (options.getBatchSize() < 2) {
+			System.err.println("Error: batch-size must be at least 2");
+			System.exit(1);
+		}
+
+		int seed = (int) options.getSeed();
+		if (seed == 0) {
+			seed = 42;
+		}
+
+		MorphOptions sequential = (MorphOptions) Copy.clone(options);
+		sequential.setProperty(Options.BATCH_SIZE, "1");
+		MorphResult sequential_result = MorphEvaluator.eval(sequential, 1,
+				seed);
+
+		MorphOptions mini_batch = (MorphOptions) Copy.clone(options);
+		MorphResult mini_batch_result = MorphEvaluator.eval(mini_batch, 1,
+				seed);
+
+		System.out.format("%-40s %10s %10s\n", "trainer", "time (s)",
+				"accuracy");
+		print("sequential", sequential_result);
+		print(String.format("mini-batch (threads=%d, batch-size=%d)",
+				mini_batch.getNumThreads(), mini_batch.getBatchSize()),
+				mini_batch_result);
+	}
+
+	private static void print(String name, MorphResult result) {
+		System.out.format("%-40s %10.1f %9.2f%%\n", name, result.time / 1000.,
+				result.getTokenAccuracy());
+	}
+}
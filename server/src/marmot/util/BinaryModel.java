@@ -0,0 +1,332 @@
+package marmot.util;
+
+import java.io.ByteArrayOutputStream;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.io.OutputStream;
+import java.io.RandomAccessFile;
+import java.io.Serializable;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.util.Map;
+
+/**
+ * Binary model format that can be mapped with FileChannel.map.
+ *
+ * The object graph is written with Java serialization, but large primitive
+ * arrays and string symbol tables are replaced by references into a data
+ * section. Arrays are stored as raw little-endian values and copied with one
+ * bulk get on load, symbol tables are read-only StringIndexes directly on the
+ * mapped file.
+ *
+ * Layout: magic "MMB1", int version, long offset and long length of the
+ * serialized objects, the data section aligned to 8 bytes, the serialized
+ * objects.
+ */
+public class BinaryModel {
+
+	private static final byte[] MAGIC_ = { 'M', 'M', 'B', '1' };
+	private static final int VERSION_ = 1;
+	private static final int HEADER_ = 24;
+
+	// smaller arrays stay in the serialized objects
+	private static final int MIN_ARRAY_LENGTH_ = 256;
+
+	private static final class ArrayRef implements Serializable {
+		private static final long serialVersionUID = 1L;
+		private final char type_;
+		private final long offset_;
+		private final int length_;
+
+		ArrayRef(char type, long offset, int length) {
+			type_ = type;
+			offset_ = offset;
+			length_ = length;
+		}
+	}
+
+	private static final class TableRef implements Serializable {
+		private static final long serialVersionUID = 1L;
+		private final long offset_;
+		private final boolean bidirectional_;
+
+		TableRef(long offset, boolean bidirectional) {
+			offset_ = offset;
+			bidirectional_ = bidirectional;
+		}
+	}
+
+	private static final class Writer extends ObjectOutputStream {
+		private final OutputStream data_;
+		private long offset_;
+
+		Writer(OutputStream objects, OutputStream data) throws IOException {
+			super(objects);
+			data_ = data;
+			offset_ = HEADER_;
+			enableReplaceObject(true);
+		}
+
+		private long append(ByteBuffer buffer) throws IOException {
+			long offset = offset_;
+			data_.write(buffer.array(), 0, buffer.limit());
+			offset_ += buffer.limit();
+			int padding = (int) ((8 - offset_ % 8) % 8);
+			data_.write(new byte[padding]);
+			offset_ += padding;
+			return offset;
+		}
+
+		@Override
+		protected Object replaceObject(Object object) throws IOException {
+			if (object instanceof double[]) {
+				double[] array = (double[]) object;
+				if (array.length >= MIN_ARRAY_LENGTH_) {
+					ByteBuffer buffer = allocate(8 * array.length);
+					buffer.asDoubleBuffer().put(array);
+					return new ArrayRef('D', append(buffer), array.length);
+				}
+			} else if (object instanceof float[]) {
+				float[] array = (float[]) object;
+				if (array.length >= MIN_ARRAY_LENGTH_) {
+					ByteBuffer buffer = allocate(4 * array.length);
+					buffer.asFloatBuffer().put(array);
+					return new ArrayRef('F', append(buffer), array.length);
+				}
+			} else if (object instanceof int[]) {
+				int[] array = (int[]) object;
+				if (array.length >= MIN_ARRAY_LENGTH_) {
+					ByteBuffer buffer = allocate(4 * array.length);
+					buffer.asIntBuffer().put(array);
+					return new ArrayRef('I', append(buffer), array.length);
+				}
+			} else if (object instanceof short[]) {
+				short[] array = (short[]) object;
+				if (array.length >= MIN_ARRAY_LENGTH_) {
+					ByteBuffer buffer = allocate(2 * array.length);
+					buffer.asShortBuffer().put(array);
+					return new ArrayRef('S', append(buffer), array.length);
+				}
+			} else if (object instanceof byte[]) {
+				byte[] array = (byte[]) object;
+				if (array.length >= MIN_ARRAY_LENGTH_) {
+					return new ArrayRef('B', append(ByteBuffer.wrap(array)),
+							array.length);
+				}
+			} else if (object instanceof SymbolTable) {
+				SymbolTable<?> table = (SymbolTable<?>) object;
+				Map<String, Integer> symbols = stringSymbols(table);
+				if (symbols != null) {
+					byte[] index = StringIndex.build(symbols);
+					return new TableRef(append(ByteBuffer.wrap(index)),
+							table.isBidirectional());
+				}
+			}
+			return object;
+		}
+
+		private static ByteBuffer allocate(int size) {
+			return ByteBuffer.allocate(size).order(ByteOrder.LITTLE_ENDIAN);
+		}
+
+		/**
+		 * @return the symbols of the table or null if it is not a table of strings
+		 */
+		private static Map<String, Integer> stringSymbols(SymbolTable<?> table) {
+			Map<String, Integer> symbols = new java.util.HashMap<String, Integer>();
+			for (Map.Entry<?, Integer> entry : table.entrySet()) {
+				if (!(entry.getKey() instanceof String)) {
+					return null;
+				}
+				symbols.put((String) entry.getKey(), entry.getValue());
+			}
+			return symbols;
+		}
+	}
+
+	private static final class Reader extends ObjectInputStream {
+		private final ByteBuffer buffer_;
+
+		Reader(InputStream objects, ByteBuffer buffer) throws IOException {
+			super(objects);
+			buffer_ = buffer;
+			enableResolveObject(true);
+		}
+
+		@Override
+		protected Object resolveObject(Object object) throws IOException {
+			if (object instanceof ArrayRef) {
+				ArrayRef ref = (ArrayRef) object;
+				ByteBuffer buffer = buffer_.duplicate().order(ByteOrder.LITTLE_ENDIAN);
+				buffer.position((int) ref.offset_);
+				switch (ref.type_) {
+				case 'D':
+					double[] doubles = new double[ref.length_];
+					buffer.asDoubleBuffer().get(doubles);
+					return doubles;
+				case 'F':
+					float[] floats = new float[ref.length_];
+					buffer.asFloatBuffer().get(floats);
+					return floats;
+				case 'I':
+					int[] ints = new int[ref.length_];
+					buffer.asIntBuffer().get(ints);
+					return ints;
+				case 'S':
+					short[] shorts = new short[ref.length_];
+					buffer.asShortBuffer().get(shorts);
+					return shorts;
+				case 'B':
+					byte[] bytes = new byte[ref.length_];
+					buffer.get(bytes);
+					return bytes;
+				default:
+					throw new IOException("Unknown array type: " + ref.type_);
+				}
+			} else if (object instanceof TableRef) {
+				TableRef ref = (TableRef) object;
+				return new SymbolTable<String>(new StringIndex(buffer_,
+						(int) ref.offset_), ref.bidirectional_);
+			}
+			return object;
+		}
+	}
+
+	private static final class BufferInputStream extends InputStream {
+		private final ByteBuffer buffer_;
+
+		BufferInputStream(ByteBuffer buffer) {
+			buffer_ = buffer;
+		}
+
+		@Override
+		public int read() {
+			return buffer_.hasRemaining() ? buffer_.get() & 0xff : -1;
+		}
+
+		@Override
+		public int read(byte[] bytes, int offset, int length) {
+			if (!buffer_.hasRemaining()) {
+				return -1;
+			}
+			length = Math.min(length, buffer_.remaining());
+			buffer_.get(bytes, offset, length);
+			return length;
+		}
+
+		@Override
+		public int available() {
+			return buffer_.remaining();
+		}
+	}
+
+	public static void saveToFile(Serializable object, String filepath) {
+		try {
+			ByteArrayOutputStream objects = new ByteArrayOutputStream();
+			FileOutputStream file = new FileOutputStream(filepath);
+			try {
+				FileChannel channel = file.getChannel();
+				channel.position(HEADER_);
+				OutputStream data = new java.io.BufferedOutputStream(file, 1 << 16);
+
+				Writer writer = new Writer(objects, data);
+				writer.writeObject(object);
+				writer.close();
+				data.write(objects.toByteArray());
+				data.flush();
+
+				long length = objects.size();
+				long offset = channel.position() - length;
+
+				ByteBuffer header = ByteBuffer.allocate(HEADER_).order(
+						ByteOrder.LITTLE_ENDIAN);
+				header.put(MAGIC_).putInt(VERSION_).putLong(offset).putLong(length);
+				header.flip();
+				channel.write(header, 0);
+			} finally {
+				file.close();
+			}
+		} catch (IOException e) {
+			throw new RuntimeException(e);
+		}
+	}
+
+	/**
+	 * @return true if the file starts with the magic of the binary format
+	 */
+	public static boolean isBinaryModel(String filepath) {
+		try {
+			FileInputStream stream = new FileInputStream(filepath);
+			try {
+				byte[] magic = new byte[MAGIC_.length];
+				int read = 0;
+				while (read < magic.length) {
+					int count = stream.read(magic, read, magic.length - read);
+					if (count < 0) {
+						return false;
+					}
+					read += count;
+				}
+				return java.util.Arrays.equals(magic, MAGIC_);
+			} finally {
+				stream.close();
+			}
+		} catch (IOException e) {
+			throw new RuntimeException(e);
+		}
+	}
+
+	@SuppressWarnings("unchecked")
+	public static <E extends Serializable> E loadFromFile(String filepath) {
+		try {
+			RandomAccessFile file = new RandomAccessFile(filepath, "r");
+			ByteBuffer buffer;
+			try {
+				FileChannel channel = file.getChannel();
+				if (channel.size() > Integer.MAX_VALUE) {
+					throw new IOException("Model too large to be mapped: " + filepath);
+				}
+				// the mapping stays valid after the channel is closed
+				buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+			} finally {
+				file.close();
+			}
+			buffer.order(ByteOrder.LITTLE_ENDIAN);
+
+			byte[] magic = new byte[MAGIC_.length];
+			buffer.get(magic);
+			if (!java.util.Arrays.equals(magic, MAGIC_)) {
+				throw new IOException("Not a binary model: " + filepath);
+			}
+			int version = buffer.getInt();
+			if (version != VERSION_) {
+				throw new IOException("Unsupported model version: " + version);
+			}
+			long offset = buffer.getLong();
+			long length = buffer.getLong();
+
+			ByteBuffer objects = buffer.duplicate();
+			objects.position((int) offset);
+			objects.limit((int) (offset + length));
+
+			Reader reader = new Reader(new BufferInputStream(objects), buffer);
+			Object object = reader.readObject();
+			reader.close();
+
+			if (object == null) {
+				throw new RuntimeException("Object couldn't be deserialized: "
+						+ filepath);
+			}
+			return (E) object;
+		} catch (IOException e) {
+			throw new RuntimeException(e);
+		} catch (ClassNotFoundException e) {
+			throw new RuntimeException(e);
+		}
+	}
+}
@@ -85,6 +85,22 @@ public class Encoder {
 		return new Feature(bytes, current_array_length_, current_bit_index_);
 	}
 
+	/**
+	 * @return the bits of the current feature, valid until the next append or
+	 *         reset
+	 */
+	public int[] getBytes() {
+		return bytes_;
+	}
+
+	public short getCurrentLength() {
+		return current_array_length_;
+	}
+
+	public short getCurrentBitIndex() {
+		return current_bit_index_;
+	}
+
 	public void reset() {
 		current_array_length_ = 0;
 		current_bit_index_ = Integer.SIZE;
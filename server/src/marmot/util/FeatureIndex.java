@@ -0,0 +1,133 @@
+package marmot.util;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import marmot.core.Feature;
+
+/**
+ * Immutable index of the features of a feature table, the features are looked
+ * up directly from the bits of an Encoder without creating Feature objects.
+ *
+ * Features that can be packed to a long (see Feature.pack) are looked up by
+ * their packed key. Wider features are looked up by a 64 bit hash and compared
+ * to the feature of the table, features with colliding hashes are looked up in
+ * the table.
+ */
+public class FeatureIndex {
+
+	private static final int COLLISION_ = Integer.MAX_VALUE - 1;
+
+	private final SymbolTable<Feature> table_;
+	private final LongIntIndex packed_;
+	// hash -> position in wide_features_ or COLLISION_
+	private final LongIntIndex wide_;
+	private final Feature[] wide_features_;
+	private final int[] wide_indexes_;
+
+	/**
+	 * @param table the feature table, must not be changed afterwards
+	 */
+	public FeatureIndex(SymbolTable<Feature> table) {
+		table_ = table;
+
+		int size = table.size();
+		long[] keys = new long[size];
+		int[] values = new int[size];
+		int packed = 0;
+
+		Map<Long, Integer> hashes = new HashMap<Long, Integer>();
+		List<Feature> wide_features = new ArrayList<Feature>();
+		List<Integer> wide_indexes = new ArrayList<Integer>();
+
+		for (Map.Entry<Feature, Integer> entry : table.entrySet()) {
+			Feature feature = entry.getKey();
+			long key = feature.pack();
+			if (key != Feature.NOT_PACKED) {
+				keys[packed] = key;
+				values[packed] = entry.getValue();
+				packed++;
+			} else {
+				long hash = Feature.hash64(feature.getBytes(),
+						feature.getCurrentLength(),
+						feature.getCurrentBitIndex());
+				if (hashes.containsKey(hash)) {
+					hashes.put(hash, COLLISION_);
+				} else {
+					hashes.put(hash, wide_features.size());
+					wide_features.add(feature);
+					wide_indexes.add(entry.getValue());
+				}
+			}
+		}
+
+		packed_ = new LongIntIndex(keys, values, packed);
+
+		keys = new long[hashes.size()];
+		values = new int[hashes.size()];
+		int index = 0;
+		for (Map.Entry<Long, Integer> entry : hashes.entrySet()) {
+			keys[index] = entry.getKey();
+			values[index] = entry.getValue();
+			index++;
+		}
+		wide_ = new LongIntIndex(keys, values, index);
+
+		wide_features_ = wide_features.toArray(new Feature[wide_features
+				.size()]);
+		wide_indexes_ = new int[wide_indexes.size()];
+		for (index = 0; index < wide_indexes_.length; index++) {
+			wide_indexes_[index] = wide_indexes.get(index);
+		}
+	}
+
+	/**
+	 * @return the index of the current feature of the encoder or -1
+	 */
+	public int get(Encoder encoder) {
+		return get(encoder.getBytes(), encoder.getCurrentLength(),
+				encoder.getCurrentBitIndex());
+	}
+
+	/**
+	 * @return the index of the feature or -1
+	 */
+	public int get(Feature feature) {
+		return get(feature.getBytes(), feature.getCurrentLength(),
+				feature.getCurrentBitIndex());
+	}
+
+	private int get(int[] bytes, short current_length, short current_bit_index) {
+		long key = Feature.pack(bytes, current_length, current_bit_index);
+		if (key != Feature.NOT_PACKED) {
+			return packed_.get(key, -1);
+		}
+
+		int position = wide_.get(
+				Feature.hash64(bytes, current_length, current_bit_index), -1);
+		if (position < 0) {
+			return -1;
+		}
+		if (position == COLLISION_) {
+			Feature feature = new Feature(Arrays.copyOf(bytes, bytes.length),
+					current_length, current_bit_index);
+			return table_.toIndex(feature, -1, false);
+		}
+
+		Feature feature = wide_features_[position];
+		if (feature.getCurrentLength() != current_length
+				|| feature.getCurrentBitIndex() != current_bit_index) {
+			return -1;
+		}
+		int[] feature_bytes = feature.getBytes();
+		for (int index = 0; index < current_length; index++) {
+			if (feature_bytes[index] != bytes[index]) {
+				return -1;
+			}
+		}
+		return wide_indexes_[position];
+	}
+}
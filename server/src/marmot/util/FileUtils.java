@@ -42,6 +42,9 @@ public class FileUtils {
 
 	@SuppressWarnings("unchecked")
 	public static <E extends Serializable> E loadFromFile(String filepath) {
+		if (BinaryModel.isBinaryModel(filepath)) {
+			return BinaryModel.loadFromFile(filepath);
+		}
 		try {
 			ObjectInputStream stream = new ObjectInputStream(
 					new GZIPInputStream(new FileInputStream(filepath)));
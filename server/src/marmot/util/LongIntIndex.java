@@ -0,0 +1,72 @@
+package marmot.util;
+
+/**
+ * Immutable open addressing map from long keys to non-negative int values.
+ * The index can be read by any number of threads.
+ */
+public class LongIntIndex {
+
+	private final long[] keys_;
+	// value + 1 or 0 if the slot is empty
+	private final int[] values_;
+	private final int mask_;
+	private final int size_;
+
+	/**
+	 * @param keys the keys, must be distinct
+	 * @param values the values of the keys, must be non-negative
+	 * @param size the number of keys
+	 */
+	public LongIntIndex(long[] keys, int[] values, int size) {
+		int capacity = 2;
+		while (capacity < size * 2) {
+			capacity *= 2;
+		}
+
+		keys_ = new long[capacity];
+		values_ = new int[capacity];
+		mask_ = capacity - 1;
+		size_ = size;
+
+		for (int index = 0; index < size; index++) {
+			if (values[index] < 0) {
+				throw new IllegalArgumentException("Negative value: " + values[index]);
+			}
+			int slot = hash(keys[index]) & mask_;
+			while (values_[slot] != 0) {
+				if (keys_[slot] == keys[index]) {
+					throw new IllegalArgumentException("Duplicate key: " + keys[index]);
+				}
+				slot = (slot + 1) & mask_;
+			}
+			keys_[slot] = keys[index];
+			values_[slot] = values[index] + 1;
+		}
+	}
+
+	/**
+	 * @return the value of the key or default_value
+	 */
+	public int get(long key, int default_value) {
+		int slot = hash(key) & mask_;
+		while (true) {
+			int value = values_[slot];
+			if (value == 0) {
+				return default_value;
+			}
+			if (keys_[slot] == key) {
+				return value - 1;
+			}
+			slot = (slot + 1) & mask_;
+		}
+	}
+
+	public int size() {
+		return size_;
+	}
+
+	private static int hash(long key) {
+		key *= 0x9E3779B97F4A7C15L;
+		return (int) (key ^ (key >>> 32));
+	}
+}
@@ -0,0 +1,122 @@
+package marmot.util;
+
+import java.io.Serializable;
+
+/**
+ * Read-only array of weights stored as float16 or int8 values with a float
+ * scale per block of weights. The scale of a block is its largest absolute
+ * weight (divided by 127 for int8).
+ */
+public class QuantizedArray implements Serializable {
+	private static final long serialVersionUID = 1L;
+
+	public static final int FLOAT16 = Quantization.FLOAT16;
+	public static final int INT8 = Quantization.INT8;
+
+	private static final String[] NAMES_ = { "float64", "float16", "int8" };
+
+	private final int type_;
+	private final int length_;
+	private final int block_shift_;
+	private final float[] scales_;
+	private final byte[] bytes_;
+	private final short[] halfs_;
+
+	private QuantizedArray(int type, int length, int block_shift,
+			float[] scales, byte[] bytes, short[] halfs) {
+		type_ = type;
+		length_ = length;
+		block_shift_ = block_shift;
+		scales_ = scales;
+		bytes_ = bytes;
+		halfs_ = halfs;
+	}
+
+	/**
+	 * @param type FLOAT16 or INT8
+	 * @param block_size the number of weights of a block, a power of two
+	 */
+	public static QuantizedArray quantize(double[] array, int type,
+			int block_size) {
+		if (block_size <= 0 || Integer.bitCount(block_size) != 1) {
+			throw new IllegalArgumentException(
+					"Block size must be a power of two: " + block_size);
+		}
+		if (type != FLOAT16 && type != INT8) {
+			throw new IllegalArgumentException("Unknown type: " + type);
+		}
+		int block_shift = Integer.numberOfTrailingZeros(block_size);
+
+		float[] scales = new float[(array.length + block_size - 1)
+				>>> block_shift];
+		for (int block = 0; block < scales.length; block++) {
+			double max = 0.0;
+			int end = Math.min(array.length, (block + 1) << block_shift);
+			for (int index = block << block_shift; index < end; index++) {
+				max = Math.max(max, Math.abs(array[index]));
+			}
+			scales[block] = Quantization.scale(max, type);
+		}
+
+		byte[] bytes = null;
+		short[] halfs = null;
+		if (type == INT8) {
+			bytes = new byte[array.length];
+		} else {
+			halfs = new short[array.length];
+		}
+
+		for (int index = 0; index < array.length; index++) {
+			double value = array[index] / scales[index >>> block_shift];
+			if (type == INT8) {
+				bytes[index] = Quantization.toInt8(value);
+			} else {
+				halfs[index] = Quantization.floatToHalf((float) value);
+			}
+		}
+
+		return new QuantizedArray(type, array.length, block_shift, scales,
+				bytes, halfs);
+	}
+
+	public double get(int index) {
+		float scale = scales_[index >>> block_shift_];
+		if (halfs_ != null) {
+			return Quantization.fromHalf(halfs_[index]) * scale;
+		}
+		return bytes_[index] * scale;
+	}
+
+	public int length() {
+		return length_;
+	}
+
+	public int getType() {
+		return type_;
+	}
+
+	public double[] toArray() {
+		double[] array = new double[length_];
+		for (int index = 0; index < length_; index++) {
+			array[index] = get(index);
+		}
+		return array;
+	}
+
+	/**
+	 * @return the type of the name float16 or int8
+	 */
+	public static int parseType(String name) {
+		for (int type = FLOAT16; type < NAMES_.length; type++) {
+			if (NAMES_[type].equals(name)) {
+				return type;
+			}
+		}
+		throw new IllegalArgumentException("Unknown type: " + name
+				+ ", use float16 or int8");
+	}
+
+	public static String getName(int type) {
+		return NAMES_[type];
+	}
+}
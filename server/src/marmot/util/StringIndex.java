@@ -0,0 +1,163 @@
+package marmot.util;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Read-only symbol index over a buffer, used by SymbolTable for the tables
+ * of mapped models (see BinaryModel).
+ *
+ * Layout (little-endian, relative to the start of the index):
+ *
+ * int size, int capacity, int chars, int 0
+ * int[size + 1] char offsets of the sorted symbols
+ * int[size] symbol table index of each sorted symbol
+ * int[size] sorted position of each symbol table index
+ * int[capacity] open addressing slots, sorted position + 1 or 0 if empty
+ * char[chars] the sorted symbols
+ *
+ * All reads are absolute, so one index can be used by any number of threads.
+ */
+public class StringIndex {
+
+	private static final int HEADER_ = 16;
+
+	private final ByteBuffer buffer_;
+	private final int size_;
+	private final int mask_;
+	private final int offsets_;
+	private final int indexes_;
+	private final int positions_;
+	private final int slots_;
+	private final int chars_;
+
+	public StringIndex(ByteBuffer buffer, int offset) {
+		buffer_ = buffer.duplicate().order(ByteOrder.LITTLE_ENDIAN);
+		size_ = buffer_.getInt(offset);
+		int capacity = buffer_.getInt(offset + 4);
+		mask_ = capacity - 1;
+		offsets_ = offset + HEADER_;
+		indexes_ = offsets_ + 4 * (size_ + 1);
+		positions_ = indexes_ + 4 * size_;
+		slots_ = positions_ + 4 * size_;
+		chars_ = slots_ + 4 * capacity;
+	}
+
+	public int size() {
+		return size_;
+	}
+
+	/**
+	 * @return the symbol table index of the symbol or -1
+	 */
+	public int find(String symbol) {
+		int slot = hash(symbol) & mask_;
+		while (true) {
+			int position = buffer_.getInt(slots_ + 4 * slot) - 1;
+			if (position < 0) {
+				return -1;
+			}
+			if (equals(position, symbol)) {
+				return buffer_.getInt(indexes_ + 4 * position);
+			}
+			slot = (slot + 1) & mask_;
+		}
+	}
+
+	/**
+	 * @return the symbol of the symbol table index
+	 */
+	public String symbol(int index) {
+		if (index < 0 || index >= size_) {
+			return null;
+		}
+		int position = buffer_.getInt(positions_ + 4 * index);
+		int start = buffer_.getInt(offsets_ + 4 * position);
+		int end = buffer_.getInt(offsets_ + 4 * (position + 1));
+		char[] chars = new char[end - start];
+		for (int i = 0; i < chars.length; i++) {
+			chars[i] = buffer_.getChar(chars_ + 2 * (start + i));
+		}
+		return new String(chars);
+	}
+
+	private boolean equals(int position, String symbol) {
+		int start = buffer_.getInt(offsets_ + 4 * position);
+		int end = buffer_.getInt(offsets_ + 4 * (position + 1));
+		if (end - start != symbol.length()) {
+			return false;
+		}
+		for (int i = 0; i < symbol.length(); i++) {
+			if (buffer_.getChar(chars_ + 2 * (start + i)) != symbol.charAt(i)) {
+				return false;
+			}
+		}
+		return true;
+	}
+
+	private static int hash(String symbol) {
+		int h = symbol.hashCode() * 0x9E3779B9;
+		return h ^ (h >>> 16);
+	}
+
+	/**
+	 * Builds the index of the symbols, the indexes have to be 0 .. size - 1
+	 * as assigned by SymbolTable.
+	 */
+	public static byte[] build(Map<String, Integer> symbols) {
+		int size = symbols.size();
+		List<String> sorted = new ArrayList<String>(symbols.keySet());
+		Collections.sort(sorted);
+
+		int capacity = 2;
+		while (capacity < size * 2) {
+			capacity *= 2;
+		}
+
+		int chars = 0;
+		for (String symbol : sorted) {
+			chars += symbol.length();
+		}
+
+		ByteBuffer buffer = ByteBuffer.allocate(HEADER_ + 4 * (size + 1) + 8
+				* size + 4 * capacity + 2 * chars);
+		buffer.order(ByteOrder.LITTLE_ENDIAN);
+		buffer.putInt(size).putInt(capacity).putInt(chars).putInt(0);
+
+		int offsets = HEADER_;
+		int indexes = offsets + 4 * (size + 1);
+		int positions = indexes + 4 * size;
+		int slots = positions + 4 * size;
+		int pool = slots + 4 * capacity;
+
+		int offset = 0;
+		for (int position = 0; position < size; position++) {
+			String symbol = sorted.get(position);
+			int index = symbols.get(symbol);
+			if (index < 0 || index >= size) {
+				throw new IllegalArgumentException("Not a dense index: " + index);
+			}
+
+			buffer.putInt(offsets + 4 * position, offset);
+			buffer.putInt(indexes + 4 * position, index);
+			buffer.putInt(positions + 4 * index, position);
+			for (int i = 0; i < symbol.length(); i++) {
+				buffer.putChar(pool + 2 * (offset + i), symbol.charAt(i));
+			}
+			offset += symbol.length();
+
+			int slot = hash(symbol) & (capacity - 1);
+			while (buffer.getInt(slots + 4 * slot) != 0) {
+				slot = (slot + 1) & (capacity - 1);
+			}
+			buffer.putInt(slots + 4 * slot, position + 1);
+		}
+		buffer.putInt(offsets + 4 * size, offset);
+
+		return buffer.array();
+	}
+}
@@ -3,6 +3,8 @@
 
 package marmot.util;
 
+import java.io.IOException;
+import java.io.ObjectOutputStream;
 import java.io.Serializable;
 import java.util.ArrayList;
 import java.util.Collection;
@@ -19,6 +21,8 @@ public class SymbolTable<T> implements Serializable {
 	private Map<T, Integer> toIndex;
 	private Map<Integer, T> fromIndex;
 	private boolean bidirectional_;
+	// read-only symbols of a mapped model, replaced by the maps on the first insert
+	private transient volatile StringIndex index_;
 
 	public SymbolTable(boolean bidirectional, int capacity) {
 		toIndex = new HashMap<T, Integer>(capacity);
@@ -36,7 +40,13 @@ public class SymbolTable<T> implements Serializable {
 		this(false, 10);
 	}
 
+	SymbolTable(StringIndex index, boolean bidirectional) {
+		index_ = index;
+		bidirectional_ = bidirectional;
+	}
+
 	public SymbolTable(SymbolTable<T> symbol_table) {
+		symbol_table.thaw();
 		toIndex = new HashMap<T, Integer>(
 				(HashMap<T, Integer>) symbol_table.toIndex);
 		bidirectional_ = symbol_table.bidirectional_;
@@ -75,6 +85,18 @@ public class SymbolTable<T> implements Serializable {
 	}
 	
 	public int toIndex(T symbol, int default_index, boolean insert) {
+		StringIndex string_index = index_;
+		if (string_index != null) {
+			int index = (symbol instanceof String) ? string_index.find((String) symbol) : -1;
+			if (index >= 0) {
+				return index;
+			}
+			if (!insert) {
+				return default_index;
+			}
+			thaw();
+		}
+		
 		Integer index = toIndex.get(symbol);
 		if (index == null) {
 			if (insert) {
@@ -103,7 +125,9 @@ public class SymbolTable<T> implements Serializable {
 			throw new UnsupportedOperationException("Table is unidirectional!");
 		}
 		
-		T t = fromIndex.get(index);
+		StringIndex string_index = index_;
+		@SuppressWarnings("unchecked")
+		T t = (string_index != null) ? (T) string_index.symbol(index) : fromIndex.get(index);
 		if (t == null) {
 			throw new NoSuchElementException();
 		}
@@ -111,30 +135,44 @@ public class SymbolTable<T> implements Serializable {
 	}
 
 	public int size() {
+		StringIndex string_index = index_;
+		if (string_index != null) {
+			return string_index.size();
+		}
 		assert (!bidirectional_) || (toIndex.size() == fromIndex.size());
 		return toIndex.size();
 	}
 
 	public String toString() {
+		thaw();
 		return toIndex.toString();
 	}
 
 	public boolean hasSymbol(T object) {
+		StringIndex string_index = index_;
+		if (string_index != null) {
+			return (object instanceof String) && string_index.find((String) object) >= 0;
+		}
 		return toIndex.containsKey(object);
 	}
 
 	public Set<Entry<T, Integer>> entrySet() {
+		thaw();
 		return toIndex.entrySet();
 	}
 
 	public Collection<T> getSymbols() {
+		thaw();
 		return toIndex.keySet();
 	}
 
 	public void setBidirectional(boolean bidirectional) {
 		if (bidirectional_ != bidirectional) {
 			
-			if (!bidirectional_) {
+			if (index_ != null) {
+				// the index maps in both directions
+				bidirectional_ = bidirectional;
+			} else if (!bidirectional_) {
 				fromIndex = new HashMap<Integer, T>((int)(toIndex.size() * 1.25));
 				for (Map.Entry<T, Integer> entry : toIndex.entrySet()) {
 					fromIndex.put(entry.getValue(), entry.getKey());
@@ -157,4 +195,39 @@ public class SymbolTable<T> implements Serializable {
 		toIndex(symbol, true);
 	}
 
+	/**
+	 * @return true if the symbols are a read-only index of a mapped model
+	 */
+	public boolean isMapped() {
+		return index_ != null;
+	}
+
+	/**
+	 * Replaces the read-only index by hash maps, so that symbols can be inserted.
+	 */
+	@SuppressWarnings("unchecked")
+	private synchronized void thaw() {
+		if (index_ == null) {
+			return;
+		}
+		int size = index_.size();
+		toIndex = new HashMap<T, Integer>((int) (size * 1.25) + 1);
+		if (bidirectional_) {
+			fromIndex = new HashMap<Integer, T>((int) (size * 1.25) + 1);
+		}
+		for (int index = 0; index < size; index++) {
+			T symbol = (T) index_.symbol(index);
+			toIndex.put(symbol, index);
+			if (bidirectional_) {
+				fromIndex.put(index, symbol);
+			}
+		}
+		index_ = null;
+	}
+
+	private void writeObject(ObjectOutputStream out) throws IOException {
+		thaw();
+		out.defaultWriteObject();
+	}
+
 }
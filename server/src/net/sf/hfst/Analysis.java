@@ -0,0 +1,88 @@
+package net.sf.hfst;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * One analysis of a surface form, eg. hylätä&lt;V&gt;&lt;Act&gt;&lt;Ind&gt;
+ * parsed to the lemma, the list of tags and the weight.
+ */
+public class Analysis
+{
+    private final String analysis;
+    private final String lemma;
+    private final List<String> tags;
+    private final float weight;
+
+    public Analysis(String analysis, String lemma, String[] tags, float weight)
+    {
+	this(analysis, lemma, Arrays.asList(tags.clone()), weight);
+    }
+
+    private Analysis(String analysis, String lemma, List<String> tags, float weight)
+    {
+	this.analysis = analysis;
+	this.lemma = lemma;
+	this.tags = Collections.unmodifiableList(tags);
+	this.weight = weight;
+    }
+
+    /**
+     * Splits the tags from the analysis string. The lemma is what remains
+     * without tags and '+' characters, the same as TagImpl.parseLemma.
+     */
+    public static Analysis parse(String analysis, float weight)
+    {
+	StringBuilder lemma = new StringBuilder(analysis.length());
+	List<String> tags = new ArrayList<String>();
+	int i = 0;
+	while (i < analysis.length())
+	    {
+		char c = analysis.charAt(i);
+		if (c == '<')
+		    {
+			int end = analysis.indexOf('>', i);
+			if (end > i)
+			    {
+				tags.add(analysis.substring(i + 1, end));
+				i = end + 1;
+				continue;
+			    }
+		    }
+		if (c != '+')
+		    { lemma.append(c); }
+		i++;
+	    }
+	return new Analysis(analysis, lemma.toString(), tags, weight);
+    }
+
+    /**
+     * @return the analysis as the transducer gave it
+     */
+    public String getAnalysis()
+    { return analysis; }
+
+    public String getLemma()
+    { return lemma; }
+
+    /**
+     * @return the tags, the list can not be modified since the analyses
+     *         are shared through the cache
+     */
+    public List<String> getTags()
+    { return tags; }
+
+    /**
+     * @return the first tag, eg. the part of speech, or "" if there are no tags
+     */
+    public String getFirstTag()
+    { return tags.isEmpty() ? "" : tags.get(0); }
+
+    public float getWeight()
+    { return weight; }
+
+    public String toString()
+    { return analysis; }
+}
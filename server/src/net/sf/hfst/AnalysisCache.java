@@ -0,0 +1,117 @@
+package net.sf.hfst;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Size bounded cache of analyses keyed by surface form.
+ *
+ * The cache is split to segments by the hash of the surface form, each
+ * segment is an access ordered LinkedHashMap with its own lock, and the
+ * least recently used form of the segment is evicted when it is full.
+ */
+public class AnalysisCache
+{
+    private static final int SEGMENTS = 16;
+
+    private final Segment[] segments;
+    private final int capacity;
+
+    private final AtomicLong hits = new AtomicLong();
+    private final AtomicLong misses = new AtomicLong();
+
+    private static class Segment extends LinkedHashMap<String, Analysis[]>
+    {
+	private static final long serialVersionUID = 1L;
+	private final int maxSize;
+
+	Segment(int maxSize)
+	{
+	    super(16, 0.75f, true);
+	    this.maxSize = maxSize;
+	}
+
+	@Override
+	protected boolean removeEldestEntry(Map.Entry<String, Analysis[]> eldest)
+	{
+	    return size() > maxSize;
+	}
+    }
+
+    /**
+     * @param capacity
+     *            maximum number of surface forms, 0 disables the cache
+     */
+    public AnalysisCache(int capacity)
+    {
+	this.capacity = Math.max(0, capacity);
+	// small caches are not split, so the bound stays exact
+	int count = this.capacity >= SEGMENTS * 64 ? SEGMENTS : 1;
+	segments = new Segment[count];
+	int segmentSize = (this.capacity + count - 1) / count;
+	for (int i = 0; i < count; i++)
+	    { segments[i] = new Segment(segmentSize); }
+    }
+
+    private Segment segment(String surface)
+    {
+	int h = surface.hashCode();
+	h ^= (h >>> 16);
+	return segments[h & (segments.length - 1)];
+    }
+
+    /**
+     * @return the cached analyses or null if the form is not in the cache,
+     *         a disabled cache counts no hits or misses
+     */
+    public Analysis[] get(String surface)
+    {
+	if (capacity == 0)
+	    { return null; }
+	Analysis[] analyses;
+	Segment segment = segment(surface);
+	synchronized (segment)
+	    {
+		analyses = segment.get(surface);
+	    }
+	if (analyses == null)
+	    { misses.incrementAndGet(); }
+	else
+	    { hits.incrementAndGet(); }
+	return analyses;
+    }
+
+    public void put(String surface, Analysis[] analyses)
+    {
+	if (capacity == 0)
+	    { return; }
+	Segment segment = segment(surface);
+	synchronized (segment)
+	    {
+		segment.put(surface, analyses);
+	    }
+    }
+
+    public long getHits()
+    { return hits.get(); }
+
+    public long getMisses()
+    { return misses.get(); }
+
+    public int getCapacity()
+    { return capacity; }
+
+    public int size()
+    {
+	int size = 0;
+	for (Segment segment : segments)
+	    {
+		synchronized (segment)
+		    {
+			size += segment.size();
+		    }
+	    }
+	return size;
+    }
+}
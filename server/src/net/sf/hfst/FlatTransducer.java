@@ -0,0 +1,448 @@
+package net.sf.hfst;
+
+import java.io.DataInputStream;
+import java.io.FileInputStream;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.ArrayList;
+import java.util.Collection;
+
+/**
+ * Thread safe version of WeightedTransducer and UnweightedTransducer.
+ *
+ * The index and transition tables are kept as they are in the file, in
+ * little-endian buffers which are read with absolute gets at lookup time
+ * and never modified, so one instance can be shared by any number of
+ * threads. All state of a lookup lives in a LookupContext.
+ *
+ * The buffers are either read to the heap or memory mapped from the file,
+ * see map(String).
+ */
+public class FlatTransducer extends Transducer
+{
+    private static final int NO_SYMBOL = HfstOptimizedLookup.NO_SYMBOL_NUMBER;
+    // NO_TABLE_INDEX as it is stored in an int
+    private static final int NO_TABLE_INDEX = (int) HfstOptimizedLookup.NO_TABLE_INDEX;
+
+    private static final byte NO_FLAG = -1;
+    private static final HfstOptimizedLookup.FlagDiacriticOperator[] OPERATORS =
+	HfstOptimizedLookup.FlagDiacriticOperator.values();
+
+    // each index entry is a unsigned short followed by an unsigned int
+    private static final int INDEX_SIZE = 6;
+    // each transition entry is two unsigned shorts, an unsigned int
+    // and a float if the transducer is weighted
+    private static final int TRANSITION_SIZE = 8;
+    private static final int WEIGHTED_TRANSITION_SIZE = 12;
+
+    private final ByteBuffer indexTable;
+    private final ByteBuffer transitionTable;
+    private final int transitionCount;
+    private final int transitionSize;
+    private final boolean weighted;
+
+    private final String[] symbols;
+
+    // flag diacritic operation of each symbol, NO_FLAG if the symbol is not a flag
+    private final byte[] flagOperator;
+    private final int[] flagFeature;
+    private final int[] flagValue;
+    private final int features;
+
+    private final LetterTrie letterTrie;
+
+    /**
+     * Reads the tables from the stream to the heap.
+     */
+    public FlatTransducer(FileInputStream file, TransducerHeader header, TransducerAlphabet alphabet) throws java.io.IOException
+    {
+	this(read(file, tablesSize(header)), header, alphabet);
+    }
+
+    /**
+     * @param tables
+     *            the index table followed by the transition table
+     */
+    FlatTransducer(ByteBuffer tables, TransducerHeader header, TransducerAlphabet alphabet)
+    {
+	symbols = alphabet.keyTable.toArray(new String[alphabet.keyTable.size()]);
+	features = alphabet.features;
+
+	flagOperator = new byte[symbols.length];
+	flagFeature = new int[symbols.length];
+	flagValue = new int[symbols.length];
+	for (int i = 0; i < symbols.length; i++)
+	    {
+		FlagDiacriticOperation op = alphabet.operations.get(i);
+		if (op == null)
+		    {
+			flagOperator[i] = NO_FLAG;
+			continue;
+		    }
+		flagOperator[i] = (byte) op.op.ordinal();
+		flagFeature[i] = op.feature;
+		flagValue[i] = op.value;
+	    }
+
+	letterTrie = new LetterTrie();
+	for (int i = 0; i < header.getInputSymbolCount(); i++)
+	    { letterTrie.addString(symbols[i], i); }
+
+	weighted = header.isWeighted();
+	transitionSize = weighted ? WEIGHTED_TRANSITION_SIZE : TRANSITION_SIZE;
+	transitionCount = header.getTargetTableSize();
+
+	tables.order(ByteOrder.LITTLE_ENDIAN);
+	int indexBytes = header.getIndexTableSize() * INDEX_SIZE;
+	tables.limit(indexBytes);
+	indexTable = tables.slice().order(ByteOrder.LITTLE_ENDIAN);
+	tables.limit(indexBytes + transitionCount * transitionSize);
+	tables.position(indexBytes);
+	transitionTable = tables.slice().order(ByteOrder.LITTLE_ENDIAN);
+    }
+
+    /**
+     * Memory maps the transducer file. Only the header and the alphabet are
+     * read to the heap, the tables stay in the page cache and can be shared
+     * by all processes using the same file.
+     */
+    public static FlatTransducer map(String model) throws java.io.IOException, FormatException
+    {
+	FileInputStream file = new FileInputStream(model);
+	try
+	    {
+		TransducerHeader header = new TransducerHeader(file);
+		// alphabet is read byte by byte, the channel stays at its end
+		TransducerAlphabet alphabet = new TransducerAlphabet(new DataInputStream(file), header.getSymbolCount());
+		FileChannel channel = file.getChannel();
+		long start = channel.position();
+		long size = checkSize(tablesSize(header));
+		if (start + size > channel.size())
+		    { throw new FormatException(); }
+		MappedByteBuffer tables = channel.map(FileChannel.MapMode.READ_ONLY, start, size);
+		return new FlatTransducer(tables, header, alphabet);
+	    }
+	finally
+	    {
+		// the mapping stays valid after the channel is closed
+		file.close();
+	    }
+    }
+
+    private static long tablesSize(TransducerHeader header)
+    {
+	int transitionSize = header.isWeighted() ? WEIGHTED_TRANSITION_SIZE : TRANSITION_SIZE;
+	return (long) header.getIndexTableSize() * INDEX_SIZE + (long) header.getTargetTableSize() * transitionSize;
+    }
+
+    /**
+     * The tables are addressed by a single buffer, so they must fit in an int.
+     */
+    private static long checkSize(long size) throws java.io.IOException
+    {
+	if (size > Integer.MAX_VALUE)
+	    { throw new java.io.IOException("Transducer tables of " + size + " bytes are larger than 2 GB."); }
+	return size;
+    }
+
+    private static ByteBuffer read(FileInputStream file, long size) throws java.io.IOException
+    {
+	byte[] bytes = new byte[(int) checkSize(size)];
+	new DataInputStream(file).readFully(bytes);
+	return ByteBuffer.wrap(bytes);
+    }
+
+    /**
+     * @return a new context for lookups in this transducer
+     */
+    public LookupContext newContext()
+    {
+	return new LookupContext(features);
+    }
+
+    public boolean isWeighted()
+    {
+	return weighted;
+    }
+
+    /**
+     * Looks up the analyses of the input. The analyses are written to the
+     * context, see LookupContext.getAnalyses().
+     *
+     * @return false if the input could not be tokenized to the symbols of
+     *         the transducer
+     */
+    public boolean lookup(String input, LookupContext ctx)
+    {
+	ctx.reset(input);
+
+	int length = 0;
+	IndexString inputLine = new IndexString(input);
+	while (inputLine.index < input.length())
+	    {
+		int symbol = letterTrie.findKey(inputLine);
+		if (symbol == NO_SYMBOL)
+		    { return false; }
+		ctx.inputString[length++] = symbol;
+	    }
+	if (length == 0)
+	    { return false; }
+	ctx.inputString[length] = NO_SYMBOL;
+
+	getAnalyses(0, ctx);
+	return true;
+    }
+
+    Collection<String> analyze(String input) throws NoTokenizationException
+    {
+	LookupContext ctx = newContext();
+	if (!lookup(input, ctx))
+	    { throw new NoTokenizationException(input); }
+
+	// strip the surface form, analyze returns bare analyses
+	Collection<String> analyses = new ArrayList<String>(ctx.analysisCount);
+	StringBuilder out = ctx.out;
+	int start = 0;
+	for (int i = 0; i < out.length(); i++)
+	    {
+		if (out.charAt(i) == '\n')
+		    {
+			analyses.add(out.substring(start + input.length() + 1, i));
+			start = i + 1;
+		    }
+	    }
+	return analyses;
+    }
+
+    private static int pivot(int target)
+    {
+	// targets at or above TRANSITION_TARGET_TABLE_START point to the
+	// transition table, as ints they are negative
+	return target & 0x7FFFFFFF;
+    }
+
+    private int indexInput(int index)
+    { return indexTable.getShort(index * INDEX_SIZE) & 0xFFFF; }
+
+    private int indexTarget(int index)
+    { return indexTable.getInt(index * INDEX_SIZE + 2); }
+
+    private int transitionInput(int index)
+    { return transitionTable.getShort(index * transitionSize) & 0xFFFF; }
+
+    private int transitionOutput(int index)
+    { return transitionTable.getShort(index * transitionSize + 2) & 0xFFFF; }
+
+    private int transitionTarget(int index)
+    { return transitionTable.getInt(index * transitionSize + 4); }
+
+    private float transitionWeight(int index)
+    { return weighted ? transitionTable.getFloat(index * transitionSize + 8) : 0.0f; }
+
+    private boolean isFinalIndex(int index)
+    {
+	return indexInput(index) == NO_SYMBOL && indexTarget(index) != NO_TABLE_INDEX;
+    }
+
+    private boolean isFinalTransition(int index)
+    {
+	return transitionInput(index) == NO_SYMBOL
+	    && transitionOutput(index) == NO_SYMBOL
+	    && transitionTarget(index) == 1;
+    }
+
+    private void tryEpsilonIndices(int index, LookupContext ctx)
+    {
+	if (indexInput(index) == 0)
+	    {
+		tryEpsilonTransitions(pivot(indexTarget(index)), ctx);
+	    }
+    }
+
+    private void tryEpsilonTransitions(int index, LookupContext ctx)
+    {
+	while (true)
+	    {
+		int input = transitionInput(index);
+		// first test for flag
+		if (input < flagOperator.length && flagOperator[input] != NO_FLAG) {
+		    if (!pushState(input, ctx))
+			{
+			    ++index;
+			    continue;
+			}
+		    followTransition(index, ctx);
+		    ++index;
+		    ctx.popState();
+		    continue;
+		} else if (input == 0)
+		    { // epsilon transitions
+			followTransition(index, ctx);
+			++index;
+			continue;
+		    }
+		else
+		    {
+			break;
+		    }
+	    }
+    }
+
+    private void followTransition(int index, LookupContext ctx)
+    {
+	ctx.pushOutput(transitionOutput(index));
+	float weight = transitionWeight(index);
+	ctx.currentWeight += weight;
+	getAnalyses(transitionTarget(index), ctx);
+	ctx.currentWeight -= weight;
+	--ctx.outputPointer;
+    }
+
+    private void findIndex(int index, LookupContext ctx)
+    {
+	int symbol = ctx.inputString[ctx.inputPointer - 1];
+	if (indexInput(index + symbol) == symbol)
+	    {
+		findTransitions(pivot(indexTarget(index + symbol)), ctx);
+	    }
+    }
+
+    private void findTransitions(int index, LookupContext ctx)
+    {
+	int symbol = ctx.inputString[ctx.inputPointer - 1];
+	while (transitionInput(index) != NO_SYMBOL)
+	    {
+		if (transitionInput(index) == symbol)
+		    {
+			followTransition(index, ctx);
+		    } else
+		    {
+			return;
+		    }
+		++index;
+	    }
+    }
+
+    private void getAnalyses(int target, LookupContext ctx)
+    {
+	if (target < 0)
+	    {
+		int index = pivot(target);
+		tryEpsilonTransitions(index + 1, ctx);
+		if (ctx.inputString[ctx.inputPointer] == NO_SYMBOL)
+		    { // end of input string
+			ctx.outputString[ctx.outputPointer] = NO_SYMBOL;
+			if (transitionCount <= index)
+			    { return; }
+			if (isFinalTransition(index))
+			    {
+				float weight = transitionWeight(index);
+				ctx.currentWeight += weight;
+				noteAnalysis(ctx);
+				ctx.currentWeight -= weight;
+			    }
+			return;
+		    }
+		++ctx.inputPointer;
+		findTransitions(index + 1, ctx);
+	    } else
+	    {
+		int index = target;
+		tryEpsilonIndices(index + 1, ctx);
+		if (ctx.inputString[ctx.inputPointer] == NO_SYMBOL)
+		    { // end of input string
+			ctx.outputString[ctx.outputPointer] = NO_SYMBOL;
+			if (isFinalIndex(index))
+			    {
+				float weight = Float.intBitsToFloat(indexTarget(index));
+				ctx.currentWeight += weight;
+				noteAnalysis(ctx);
+				ctx.currentWeight -= weight;
+			    }
+			return;
+		    }
+		++ctx.inputPointer;
+		findIndex(index + 1, ctx);
+	    }
+	--ctx.inputPointer;
+	ctx.outputString[ctx.outputPointer] = NO_SYMBOL;
+    }
+
+    private void noteAnalysis(LookupContext ctx)
+    {
+	StringBuilder out = ctx.out;
+	out.append(ctx.surface).append('\t');
+	int[] output = ctx.outputString;
+	for (int i = 0; output[i] != NO_SYMBOL; ++i)
+	    {
+		out.append(symbols[output[i]]);
+	    }
+	if (weighted)
+	    {
+		out.append('\t').append(ctx.currentWeight);
+	    }
+	out.append('\n');
+	++ctx.analysisCount;
+    }
+
+    private boolean pushState(int symbol, LookupContext ctx)
+    {
+	int feature = flagFeature[symbol];
+	int value = flagValue[symbol];
+	int current = ctx.stateStack[ctx.topState() + feature];
+	int top;
+
+	// pushState may grow the stack, so it is read again after the push
+	switch (OPERATORS[flagOperator[symbol]]) {
+	case P: // positive set
+	    top = ctx.pushState();
+	    ctx.stateStack[top + feature] = value;
+	    return true;
+	case N: // negative set
+	    top = ctx.pushState();
+	    ctx.stateStack[top + feature] = -1 * value;
+	    return true;
+	case R: // require
+	    if (value == 0) // empty require
+		{
+		    if (current == 0)
+			{ return false; }
+		    ctx.pushState();
+		    return true;
+		}
+	    if (current == value)
+		{
+		    ctx.pushState();
+		    return true;
+		}
+	    return false;
+	case D: // disallow
+	    if (value == 0) // empty disallow
+		{
+		    if (current != 0)
+			{ return false; }
+		    ctx.pushState();
+		    return true;
+		}
+	    if (current == value)
+		{ return false; }
+	    ctx.pushState();
+	    return true;
+	case C: // clear
+	    top = ctx.pushState();
+	    ctx.stateStack[top + feature] = 0;
+	    return true;
+	case U: // unification
+	    if (current == 0 || current == value || current < 0)
+		{
+		    top = ctx.pushState();
+		    ctx.stateStack[top + feature] = value;
+		    return true;
+		}
+	    return false;
+	}
+	return false; // compiler sanity
+    }
+}
@@ -2,7 +2,6 @@ package net.sf.hfst;
 
 import java.io.DataInputStream;
 import java.io.FileInputStream;
-import java.util.Collection;
 
 /**
  * HfstRuntimeReader takes a transducer (the name of which should be the first
@@ -33,9 +32,43 @@ public class HfstOptimizedLookupObj {
 		P, N, R, D, C, U
 	};
 
-	private Transducer transducer = null;
+	// read-only, shared by all threads
+	private FlatTransducer transducer = null;
 
+	// number of surface forms kept in the analysis cache
+	public final static int DEFAULT_CACHE_SIZE = 100000;
+	private AnalysisCache cache = null;
+
+	// lookup state, one reusable context per thread
+	private final ThreadLocal<LookupContext> contexts = new ThreadLocal<LookupContext>() {
+		@Override
+		protected LookupContext initialValue() {
+			return transducer.newContext();
+		}
+	};
+
+	/**
+	 * Memory maps the transducer file, see FlatTransducer.map
+	 */
 	public HfstOptimizedLookupObj(String model) throws Exception {
+		this(model, true, DEFAULT_CACHE_SIZE);
+	}
+
+	/**
+	 * @param mapped
+	 *            true to memory map the tables, false to read them to the heap
+	 * @param cacheSize
+	 *            number of surface forms kept in the analysis cache, 0 for no
+	 *            cache
+	 */
+	public HfstOptimizedLookupObj(String model, boolean mapped, int cacheSize) throws Exception {
+		cache = new AnalysisCache(cacheSize);
+		if (mapped) {
+			System.out.println("Mapping " + model + "...");
+			transducer = FlatTransducer.map(model);
+			return;
+		}
+
 		FileInputStream transducerfile = null;
 		transducerfile = new FileInputStream(model);
 
@@ -48,40 +81,110 @@ public class HfstOptimizedLookupObj {
 		TransducerAlphabet a = new TransducerAlphabet(charstream, transducerHeader.getSymbolCount());
 		System.out.println("Reading transition and index tables...");
 
-		if (transducerHeader.isWeighted()) {
-			transducer = new WeightedTransducer(transducerfile, transducerHeader, a);
-		} else {
-			transducer = new UnweightedTransducer(transducerfile, transducerHeader, a);
-		}
+		// weighted and unweighted transducers are both read to flat tables
+		transducer = new FlatTransducer(transducerfile, transducerHeader, a);
+		transducerfile.close();
 	}
 
+	/**
+	 * Thread safe, uses the analysis cache and the context of the calling
+	 * thread.
+	 *
+	 * @return "str\tanalysis\n" for each analysis or "str\t+?\n" if the
+	 *         word is unknown
+	 */
 	public String runTransducer(String str) {
+		return format(str, analyze(str));
+	}
+
+	/**
+	 * @param analyses
+	 *            the analyses of str, see analyze(String)
+	 * @return the analyses in the format of runTransducer(String)
+	 */
+	public String format(String str, Analysis[] analyses) {
 		StringBuilder sb = new StringBuilder();
-		try {
-			Collection<String> analyses = transducer.analyze(str);
-			for (String analysis : analyses) {
-				sb.append(str);
+		for (Analysis analysis : analyses) {
+			sb.append(str);
+			sb.append("\t");
+			sb.append(analysis.getAnalysis());
+			if (transducer.isWeighted()) {
 				sb.append("\t");
-				sb.append(analysis);
-				sb.append("\n");
-				//System.out.println(str + "\t" + analysis);
-			}
-			if (analyses.isEmpty()) {
-				sb.append(str);
-				sb.append("\t+?");
-				sb.append("\n");
-				//System.out.println(str + "\t+?");
+				sb.append(analysis.getWeight());
 			}
-		} catch (NoTokenizationException e) {
+			sb.append("\n");
+		}
+		if (analyses.length == 0) {
 			sb.append(str);
 			sb.append("\t+?");
 			sb.append("\n");
-			// System.out.println(e.message());
-			//System.out.println(str + "\t+?");
 		}
-		
 		return sb.toString();
 	}
+
+	/**
+	 * Thread safe, uses the analysis cache and the context of the calling
+	 * thread.
+	 *
+	 * @return analyses of the word, empty if the word is unknown
+	 */
+	public Analysis[] analyze(String str) {
+		Analysis[] analyses = cache.get(str);
+		if (analyses == null) {
+			analyses = parseAnalyses(str, contexts.get());
+			cache.put(str, analyses);
+		}
+		return analyses;
+	}
+
+	private Analysis[] parseAnalyses(String str, LookupContext ctx) {
+		if (!transducer.lookup(str, ctx) || ctx.getAnalysisCount() == 0) {
+			return new Analysis[0];
+		}
+		// lines are "str\tanalysis[\tweight]\n"
+		Analysis[] analyses = new Analysis[ctx.getAnalysisCount()];
+		String out = ctx.getAnalyses().toString();
+		int start = 0;
+		for (int i = 0; i < analyses.length; i++) {
+			int end = out.indexOf('\n', start);
+			String line = out.substring(start + str.length() + 1, end);
+			float weight = 0.0f;
+			if (transducer.isWeighted()) {
+				int tab = line.lastIndexOf('\t');
+				weight = Float.parseFloat(line.substring(tab + 1));
+				line = line.substring(0, tab);
+			}
+			analyses[i] = Analysis.parse(line, weight);
+			start = end + 1;
+		}
+		return analyses;
+	}
+
+	public AnalysisCache getCache() {
+		return cache;
+	}
+
+	/**
+	 * Same as runTransducer(String) with a caller owned context, does not
+	 * use the cache.
+	 *
+	 * @return "str\tanalysis\n" for each analysis or "str\t+?\n" if the
+	 *         word is unknown
+	 */
+	public String runTransducer(String str, LookupContext ctx) {
+		if (!transducer.lookup(str, ctx) || ctx.getAnalysisCount() == 0) {
+			StringBuilder sb = new StringBuilder(str.length() + 4);
+			sb.append(str);
+			sb.append("\t+?");
+			sb.append("\n");
+			return sb.toString();
+		}
+		return ctx.getAnalyses().toString();
+	}
+
+	public LookupContext newContext() {
+		return transducer.newContext();
+	}
 /*
 	public void runTransducer(Transducer t) {
 		System.out.println("Ready for input.");
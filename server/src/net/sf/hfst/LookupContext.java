@@ -0,0 +1,104 @@
+package net.sf.hfst;
+
+import java.util.Arrays;
+
+/**
+ * Mutable state of one lookup in a FlatTransducer: the input and output
+ * symbol strings, the flag diacritic state stack and the result buffer.
+ *
+ * A context is used by one thread at a time and can be reused for any
+ * number of lookups, the transducer itself stays read-only.
+ */
+public class LookupContext
+{
+    int[] inputString;
+    int inputPointer;
+    int[] outputString;
+    int outputPointer;
+    float currentWeight;
+
+    // flag diacritic states, stack of features-sized frames in one array
+    int[] stateStack;
+    int stateDepth;
+    final int features;
+
+    // surface form written in front of each analysis
+    String surface;
+    int analysisCount;
+
+    // analyses of the last lookup, one "surface\tanalysis[\tweight]\n" per line
+    final StringBuilder out = new StringBuilder(256);
+
+    LookupContext(int features)
+    {
+	this.features = features;
+	inputString = new int[64];
+	outputString = new int[1000];
+	stateStack = new int[Math.max(1, features) * 16];
+    }
+
+    void reset(String input)
+    {
+	surface = input;
+	analysisCount = 0;
+	inputPointer = 0;
+	outputPointer = 0;
+	currentWeight = 0.0f;
+	outputString[0] = HfstOptimizedLookup.NO_SYMBOL_NUMBER;
+	// neutral flag state
+	stateDepth = 1;
+	Arrays.fill(stateStack, 0, features, 0);
+	out.setLength(0);
+	if (inputString.length < input.length() + 1)
+	    { inputString = new int[input.length() + 1]; }
+    }
+
+    void pushOutput(int symbol)
+    {
+	if (outputPointer + 1 >= outputString.length)
+	    { outputString = Arrays.copyOf(outputString, outputString.length * 2); }
+	outputString[outputPointer] = symbol;
+	++outputPointer;
+    }
+
+    /**
+     * Copies the top flag state to a new frame on the stack.
+     *
+     * @return offset of the new top frame
+     */
+    int pushState()
+    {
+	int top = (stateDepth - 1) * features;
+	if ((stateDepth + 1) * features > stateStack.length)
+	    { stateStack = Arrays.copyOf(stateStack, stateStack.length * 2); }
+	System.arraycopy(stateStack, top, stateStack, top + features, features);
+	++stateDepth;
+	return top + features;
+    }
+
+    void popState()
+    {
+	--stateDepth;
+    }
+
+    int topState()
+    {
+	return (stateDepth - 1) * features;
+    }
+
+    /**
+     * @return analyses of the last lookup
+     */
+    public CharSequence getAnalyses()
+    {
+	return out;
+    }
+
+    /**
+     * @return number of analyses found by the last lookup
+     */
+    public int getAnalysisCount()
+    {
+	return analysisCount;
+    }
+}